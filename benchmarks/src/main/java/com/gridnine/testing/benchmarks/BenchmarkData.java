@@ -0,0 +1,41 @@
+package com.gridnine.testing.benchmarks;
+
+import com.gridnine.testing.Flight;
+import com.gridnine.testing.FlightBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Детерминированные наборы перелётов для бенчмарков.
+// Одинаковый seed всегда даёт одинаковые данные, поэтому результаты прогонов сравнимы между собой.
+
+final class BenchmarkData {
+
+    // Фиксированный момент "сейчас" для правил, зависящих от текущего времени
+    static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private static final long SEED = 42L;
+
+    // Доля перелётов с вылетом в прошлом
+    private static final double PAST_DEPARTURE_RATE = 0.10;
+    // Доля перелётов с сегментом, где прилёт раньше вылета
+    private static final double INVALID_SEGMENT_RATE = 0.05;
+    // Максимальное время на земле между сегментами в минутах
+    private static final int MAX_GROUND_MINUTES = 240;
+
+    private BenchmarkData() {
+        // Utility class
+    }
+
+    // Создает список перелётов с заданным количеством сегментов в каждом.
+
+    static List<Flight> createFlights(int flightCount, int segmentCount) {
+        return FlightBuilder.generator(SEED)
+                .withBaseTime(NOW)
+                .withSegmentCount(segmentCount, segmentCount)
+                .withGroundTimeMinutes(0, MAX_GROUND_MINUTES)
+                .withPastDepartureRate(PAST_DEPARTURE_RATE)
+                .withInvalidSegmentRate(INVALID_SEGMENT_RATE)
+                .generate(flightCount);
+    }
+}
\ No newline at end of file
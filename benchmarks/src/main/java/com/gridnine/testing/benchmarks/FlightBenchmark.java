@@ -0,0 +1,57 @@
+package com.gridnine.testing.benchmarks;
+
+import com.gridnine.testing.Flight;
+import com.gridnine.testing.FlightPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарки вычисления времени на земле и форматирования вывода.
+// Одна операция = обработка всего набора из flightCount перелётов.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FlightBenchmark {
+
+    @Param({"1000", "100000"})
+    int flightCount;
+
+    @Param({"1", "2", "4"})
+    int segmentCount;
+
+    private List<Flight> flights;
+
+    @Setup
+    public void setUp() {
+        flights = BenchmarkData.createFlights(flightCount, segmentCount);
+    }
+
+    @Benchmark
+    public long totalGroundTime() {
+        long total = 0;
+        for (Flight flight : flights) {
+            total += flight.getTotalGroundTimeMinutes();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public String formatFlights() {
+        return FlightPrinter.formatFlights(flights);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.gridnine.testing.benchmarks;
+
+import com.gridnine.testing.ArrivalBeforeDepartureFilter;
+import com.gridnine.testing.DepartureBeforeCurrentTimeFilter;
+import com.gridnine.testing.ExcessiveGroundTimeFilter;
+import com.gridnine.testing.FilterRule;
+import com.gridnine.testing.FilterRules;
+import com.gridnine.testing.Flight;
+import com.gridnine.testing.FlightFilter;
+import com.gridnine.testing.RuleCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарки основного пути фильтрации: одно правило, цепочка and() и фабричные композиции.
+// Одна операция = фильтрация всего набора из flightCount перелётов.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FlightFilterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int flightCount;
+
+    @Param({"1", "2", "4"})
+    int segmentCount;
+
+    private List<Flight> flights;
+    private FlightFilter filter;
+    private FlightFilter parallelFilter;
+
+    private FilterRule departureRule;
+    private FilterRule arrivalRule;
+    private FilterRule groundTimeRule;
+    private FilterRule standardRule;
+    private FilterRule businessRule;
+    private FilterRule compiledStandardRule;
+    private FilterRule mixedRule;
+    private FilterRule compiledMixedRule;
+    private List<FilterRule> tierRules;
+
+    @Setup
+    public void setUp() {
+        flights = BenchmarkData.createFlights(flightCount, segmentCount);
+        filter = new FlightFilter();
+        parallelFilter = FlightFilter.parallel();
+
+        departureRule = new DepartureBeforeCurrentTimeFilter(BenchmarkData.NOW);
+        arrivalRule = new ArrivalBeforeDepartureFilter();
+        groundTimeRule = new ExcessiveGroundTimeFilter();
+        // Те же правила, что createStandardFilter()/createBusinessFilter(), но с фиксированным "сейчас",
+        // чтобы доля прошедших вылетов не зависела от даты запуска
+        standardRule = FilterRules.combineRules(departureRule, arrivalRule, groundTimeRule);
+        businessRule = FilterRules.combineRules(departureRule, arrivalRule, new ExcessiveGroundTimeFilter(60));
+        compiledStandardRule = RuleCompiler.compile(standardRule);
+        // OR, NOT и пользовательское условие не сливаются в FusedRule: компилируются в цепочку MethodHandle
+        FilterRule multiSegment = flight -> flight.getSegmentCount() > 1;
+        mixedRule = departureRule.and(groundTimeRule.or(arrivalRule.negate())).and(multiSegment.negate());
+        compiledMixedRule = RuleCompiler.compile(mixedRule);
+        tierRules = List.of(
+                FilterRules.createStandardFilter(BenchmarkData.NOW),
+                FilterRules.createBusinessFilter(BenchmarkData.NOW),
+                FilterRules.createBasicFilter(BenchmarkData.NOW),
+                FilterRules.createCustomFilter(30, BenchmarkData.NOW));
+    }
+
+    @Benchmark
+    public List<Flight> singleRule() {
+        return filter.filter(flights, departureRule);
+    }
+
+    @Benchmark
+    public List<Flight> varargsRules() {
+        return filter.filter(flights, departureRule, arrivalRule, groundTimeRule);
+    }
+
+    @Benchmark
+    public List<Flight> standardFilter() {
+        return filter.filter(flights, standardRule);
+    }
+
+    @Benchmark
+    public List<Flight> businessFilter() {
+        return filter.filter(flights, businessRule);
+    }
+
+    @Benchmark
+    public List<Flight> compiledStandardFilter() {
+        return filter.filter(flights, compiledStandardRule);
+    }
+
+    @Benchmark
+    public List<Flight> mixedFilter() {
+        return filter.filter(flights, mixedRule);
+    }
+
+    @Benchmark
+    public List<Flight> compiledMixedFilter() {
+        return filter.filter(flights, compiledMixedRule);
+    }
+
+    // Четыре правила FilterRules за один проход с общими условиями
+    @Benchmark
+    public List<List<Flight>> allTiersSinglePass() {
+        return filter.filterAll(flights, tierRules);
+    }
+
+    // Те же четыре правила отдельными проходами (для сравнения с allTiersSinglePass)
+    @Benchmark
+    public int allTiersSeparately() {
+        int matches = 0;
+        for (FilterRule rule : tierRules) {
+            matches += filter.filter(flights, rule).size();
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public List<Flight> parallelStandardFilter() {
+        return parallelFilter.filter(flights, standardRule);
+    }
+}
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.gridnine.testing;
 
+import java.util.BitSet;
+
 // Правило фильтрации: исключает перелёты с сегментами, где дата прилёта раньше даты вылета.
 
-public class ArrivalBeforeDepartureFilter implements FilterRule {
+public class ArrivalBeforeDepartureFilter implements BatchFilterRule {
 
     @Override
     public boolean test(Flight flight) {
@@ -10,6 +12,30 @@ public class ArrivalBeforeDepartureFilter implements FilterRule {
         return !flight.hasInvalidSegments();
     }
 
+    @Override
+    public void testBatch(FlightBatch batch, BitSet accepted) {
+        int[] offsets = batch.offsets;
+
+        for (int f = accepted.nextSetBit(0); f >= 0; f = accepted.nextSetBit(f + 1)) {
+            for (int s = offsets[f], end = offsets[f + 1]; s < end; s++) {
+                if (batch.arrivesBeforeDeparture(s)) {
+                    accepted.clear(f);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
+
+    @Override
+    public RuleKey getKey() {
+        return RuleKey.of("ArrivalBeforeDeparture");
+    }
+
     @Override
     public String toString() {
         return "ArrivalBeforeDepartureFilter{}";
@@ -0,0 +1,16 @@
+package com.gridnine.testing;
+
+import java.util.BitSet;
+
+// Правило фильтрации, умеющее проверять сразу весь колоночный пакет перелётов (FlightBatch).
+// Пакетная проверка должна давать тот же результат, что и test(Flight) для каждого перелёта пакета.
+
+public interface BatchFilterRule extends FilterRule {
+
+    // Проверяет перелёты пакета, отмеченные в accepted.
+    // @param batch пакет перелётов
+    // @param accepted битовая маска: на входе - перелёты, которые ещё нужно проверить,
+    //                 на выходе биты отклонённых перелётов сброшены
+
+    void testBatch(FlightBatch batch, BitSet accepted);
+}
\ No newline at end of file
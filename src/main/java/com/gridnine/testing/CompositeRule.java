@@ -0,0 +1,268 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Составное правило: AND или OR над списком дочерних правил.
+// В отличие от лямбд, дерево правил можно просматривать (getOperator, getChildren).
+// Дочерние правила проверяются в заданном порядке с досрочным завершением, поэтому правило
+// может рассчитывать на то, что предыдущие правила AND уже прошли. На выборке проверок
+// измеряются стоимость и доля отклонений каждого вызванного правила. Если все дочерние правила
+// объявлены без побочных эффектов (FilterRule.isSideEffectFree), правило само переставляет их так,
+// чтобы первыми шли дешёвые правила, которые чаще всего завершают вычисление досрочно.
+
+public final class CompositeRule implements BatchFilterRule {
+
+    // Логическая операция над дочерними правилами
+
+    public enum Operator {
+        AND,
+        OR
+    }
+
+    // Статистика собирается в среднем для одной проверки из SAMPLE_RATE
+    private static final int SAMPLE_RATE = 64;
+
+    // Счётчики выборки разбиты на SAMPLE_STRIPES полос по номеру потока (степень двойки).
+    // Между полосами STRIPE_STRIDE элементов, чтобы потоки не делили одну строку кэша.
+    private static final int SAMPLE_STRIPES = 8;
+    private static final int STRIPE_STRIDE = 16;
+
+    // Порядок пересчитывается каждые REORDER_INTERVAL проверок из выборки
+    private static final long REORDER_INTERVAL = 256;
+
+    // Нижняя граница вероятности досрочного завершения (чтобы не делить на ноль)
+    private static final double MIN_SHORT_CIRCUIT_RATE = 1e-6;
+
+    private final Operator operator;
+    // Можно ли менять порядок дочерних правил
+    private final boolean reorderable;
+    private final AtomicLong sampledEvaluations = new AtomicLong();
+    // Сколько проверок осталось до следующей проверки из выборки в каждой полосе.
+    // Счётчики обычные, не volatile: гонка между потоками одной полосы лишь сдвигает выборку.
+    private final int[] sampleCountdowns = new int[SAMPLE_STRIPES * STRIPE_STRIDE];
+
+    // Дочерние правила вместе со статистикой в текущем порядке проверки.
+    // Массив не изменяется, при перестановке публикуется новый.
+    private volatile RuleStatistics[] children;
+
+    private CompositeRule(Operator operator, List<FilterRule> rules) {
+        this.operator = operator;
+        RuleStatistics[] slots = new RuleStatistics[rules.size()];
+        boolean sideEffectFree = true;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new RuleStatistics(rules.get(i));
+            sideEffectFree &= rules.get(i).isSideEffectFree();
+        }
+        this.children = slots;
+        this.reorderable = sideEffectFree;
+    }
+
+    // Создает правило AND. Вложенные правила AND разворачиваются в один уровень.
+
+    public static CompositeRule and(FilterRule... rules) {
+        return create(Operator.AND, rules);
+    }
+
+    // Создает правило OR. Вложенные правила OR разворачиваются в один уровень.
+
+    public static CompositeRule or(FilterRule... rules) {
+        return create(Operator.OR, rules);
+    }
+
+    private static CompositeRule create(Operator operator, FilterRule... rules) {
+        Objects.requireNonNull(rules, "Список правил не может быть null");
+
+        List<FilterRule> flattened = new ArrayList<>(rules.length);
+        for (FilterRule rule : rules) {
+            Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+            if (rule instanceof CompositeRule && ((CompositeRule) rule).operator == operator) {
+                flattened.addAll(((CompositeRule) rule).getChildren());
+            } else {
+                flattened.add(rule);
+            }
+        }
+        return new CompositeRule(operator, flattened);
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    // Дочерние правила в текущем порядке проверки.
+
+    public List<FilterRule> getChildren() {
+        RuleStatistics[] current = children;
+        List<FilterRule> rules = new ArrayList<>(current.length);
+        for (RuleStatistics slot : current) {
+            rules.add(slot.getRule());
+        }
+        return Collections.unmodifiableList(rules);
+    }
+
+    // Переставляет ли правило дочерние правила по статистике.
+
+    public boolean isReorderable() {
+        return reorderable;
+    }
+
+    // Статистика дочерних правил в текущем порядке проверки.
+
+    public List<RuleStatistics> getStatistics() {
+        return List.of(children);
+    }
+
+    @Override
+    public boolean test(Flight flight) {
+        RuleStatistics[] current = children;
+
+        if (nextSampled()) {
+            return testSampled(flight, current);
+        }
+
+        // AND завершается на первом false, OR - на первом true
+        boolean shortCircuit = operator == Operator.OR;
+        for (RuleStatistics slot : current) {
+            if (slot.getRule().test(flight) == shortCircuit) {
+                return shortCircuit;
+            }
+        }
+        return !shortCircuit;
+    }
+
+    // Уменьшает счётчик полосы текущего потока и сообщает, попадает ли проверка в выборку.
+    // Случайное число берётся только при перезапуске счётчика, а не на каждой проверке:
+    // разброс интервала не даёт выборке совпасть по фазе с периодичными входными данными.
+
+    private boolean nextSampled() {
+        int index = ((int) Thread.currentThread().getId() & (SAMPLE_STRIPES - 1)) * STRIPE_STRIDE;
+        int remaining = sampleCountdowns[index];
+        if (remaining > 0) {
+            sampleCountdowns[index] = remaining - 1;
+            return false;
+        }
+        sampleCountdowns[index] = SAMPLE_RATE / 2 + ThreadLocalRandom.current().nextInt(SAMPLE_RATE);
+        return true;
+    }
+
+    // Проверка из выборки: те же вызовы с досрочным завершением, но с замером каждого вызванного
+    // правила. Доля отклонений правила оценивается среди перелётов, дошедших до него.
+
+    private boolean testSampled(Flight flight, RuleStatistics[] current) {
+        boolean shortCircuit = operator == Operator.OR;
+        boolean result = !shortCircuit;
+        for (RuleStatistics slot : current) {
+            long start = System.nanoTime();
+            boolean accepted = slot.getRule().test(flight);
+            slot.record(accepted, System.nanoTime() - start);
+            if (accepted == shortCircuit) {
+                result = shortCircuit;
+                break;
+            }
+        }
+
+        if (reorderable && current.length > 1 && sampledEvaluations.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        return result;
+    }
+
+    // Переставляет дочерние правила по возрастанию ожидаемой стоимости досрочного завершения:
+    // средняя стоимость, делённая на вероятность того, что правило завершит вычисление.
+    // Статистика продолжает обновляться другими потоками, поэтому оценки сначала фиксируются
+    // в массиве: сортировка должна видеть согласованные значения.
+
+    private synchronized void reorder() {
+        RuleStatistics[] current = children;
+        double[] ranks = new double[current.length];
+        Integer[] order = new Integer[current.length];
+        for (int i = 0; i < current.length; i++) {
+            ranks[i] = rank(current[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> ranks[i]));
+
+        RuleStatistics[] reordered = new RuleStatistics[current.length];
+        for (int i = 0; i < order.length; i++) {
+            reordered[i] = current[order[i]];
+        }
+        children = reordered;
+    }
+
+    private double rank(RuleStatistics slot) {
+        if (slot.getEvaluations() == 0) {
+            // До правила ещё не доходила очередь - предыдущие правила всегда завершали проверку.
+            // Оценка оптимистичная: правило переходит в начало и получает замеры на следующей
+            // выборке, иначе без статистики оно навсегда осталось бы в конце.
+            return 0.0;
+        }
+        double shortCircuitRate = operator == Operator.AND
+                ? slot.getRejectionRate()
+                : 1.0 - slot.getRejectionRate();
+        return slot.getAverageNanos() / Math.max(shortCircuitRate, MIN_SHORT_CIRCUIT_RATE);
+    }
+
+    @Override
+    public void testBatch(FlightBatch batch, BitSet accepted) {
+        RuleStatistics[] current = children;
+
+        if (operator == Operator.AND) {
+            for (RuleStatistics slot : current) {
+                if (accepted.isEmpty()) {
+                    return;
+                }
+                FlightBatch.apply(slot.getRule(), batch, accepted);
+            }
+            return;
+        }
+
+        // OR: каждое следующее правило проверяет только ещё не принятые перелёты
+        BitSet remaining = (BitSet) accepted.clone();
+        BitSet union = new BitSet(batch.size());
+        for (RuleStatistics slot : current) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            BitSet candidates = (BitSet) remaining.clone();
+            FlightBatch.apply(slot.getRule(), batch, candidates);
+            union.or(candidates);
+            remaining.andNot(candidates);
+        }
+        accepted.and(union);
+    }
+
+    @Override
+    public boolean isSideEffectFree() {
+        return reorderable;
+    }
+
+    @Override
+    public RuleKey getKey() {
+        RuleStatistics[] current = children;
+        List<RuleKey> keys = new ArrayList<>(current.length);
+        for (RuleStatistics slot : current) {
+            keys.add(slot.getRule().getKey());
+        }
+        return RuleKey.composite(operator.name(), keys);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(operator.name()).append('[');
+        RuleStatistics[] current = children;
+        for (int i = 0; i < current.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(current[i].getRule());
+        }
+        return sb.append(']').toString();
+    }
+}
\ No newline at end of file
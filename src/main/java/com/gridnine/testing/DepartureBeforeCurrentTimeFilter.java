@@ -1,37 +1,77 @@
 package com.gridnine.testing;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.Objects;
 
 // Правило фильтрации: исключает перелёты с вылетом до текущего момента времени.
+// Текущее время задаётся как время UTC и сравнивается с моментами вылета сегментов в UTC.
+// Время без зоны (LocalDateTime) всюду считается временем UTC, поэтому "сейчас" по умолчанию -
+// LocalDateTime.now(ZoneOffset.UTC), а не местное время системы, как было до перевода на UTC.
 
-public class DepartureBeforeCurrentTimeFilter implements FilterRule {
+public class DepartureBeforeCurrentTimeFilter implements BatchFilterRule {
 
     private final LocalDateTime currentTime;
 
-    // Создает фильтр с текущим временем по умолчанию (now())
+    // Создает фильтр с текущим временем UTC
 
     public DepartureBeforeCurrentTimeFilter() {
-        this.currentTime = LocalDateTime.now();
+        this.currentTime = LocalDateTime.now(ZoneOffset.UTC);
     }
 
-    // Создает фильтр с указанным временем (для тестирования)
+    // Создает фильтр с указанным временем UTC (для тестирования)
 
     public DepartureBeforeCurrentTimeFilter(LocalDateTime currentTime) {
         this.currentTime = currentTime;
     }
 
+    // Создает фильтр с указанным моментом, например Instant.now(), для сегментов во временных зонах.
+
+    public DepartureBeforeCurrentTimeFilter(Instant currentTime) {
+        this.currentTime = LocalDateTime.ofInstant(
+                Objects.requireNonNull(currentTime, "Текущее время не может быть null"), ZoneOffset.UTC);
+    }
+
     @Override
     public boolean test(Flight flight) {
-        // Проверяем, что все сегменты вылетают не раньше текущего времени
-        return flight.getSegments().stream()
-                .allMatch(segment ->
-                        !segment.getDepartureDate().isBefore(currentTime));
+        // Все сегменты вылетают не раньше текущего времени, если не раньше вылетает самый ранний
+        return !flight.hasDepartureInPast(currentTime);
+    }
+
+    @Override
+    public void testBatch(FlightBatch batch, BitSet accepted) {
+        long cutoff = currentTime.toEpochSecond(ZoneOffset.UTC);
+        int cutoffNano = currentTime.getNano();
+        int[] offsets = batch.offsets;
+
+        for (int f = accepted.nextSetBit(0); f >= 0; f = accepted.nextSetBit(f + 1)) {
+            for (int s = offsets[f], end = offsets[f + 1]; s < end; s++) {
+                if (batch.departsBefore(s, cutoff, cutoffNano)) {
+                    accepted.clear(f);
+                    break;
+                }
+            }
+        }
     }
 
     public LocalDateTime getCurrentTime() {
         return currentTime;
     }
 
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
+
+    // Текущее время входит в ключ точно: правила с разным "сейчас" могут дать разный результат.
+
+    @Override
+    public RuleKey getKey() {
+        return RuleKey.of("DepartureBeforeCurrentTime", currentTime);
+    }
+
     @Override
     public String toString() {
         return "DepartureBeforeCurrentTimeFilter{currentTime=" + currentTime + "}";
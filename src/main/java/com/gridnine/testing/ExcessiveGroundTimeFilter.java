@@ -1,10 +1,11 @@
 package com.gridnine.testing;
 
 import java.time.Duration;
+import java.util.BitSet;
 
 // Правило фильтрации: исключает перелёты, где общее время на земле превышает указанное значение.
 
-public class ExcessiveGroundTimeFilter implements FilterRule {
+public class ExcessiveGroundTimeFilter implements BatchFilterRule {
 
     private final long maxGroundTimeMinutes;
 
@@ -31,18 +32,38 @@ public class ExcessiveGroundTimeFilter implements FilterRule {
 
     @Override
     public boolean test(Flight flight) {
-        // Для перелётов с одним сегментом время на земле = 0
-        if (flight.getSegments().size() <= 1) {
-            return true;
-        }
-
         return flight.getTotalGroundTimeMinutes() <= maxGroundTimeMinutes;
     }
 
+    @Override
+    public void testBatch(FlightBatch batch, BitSet accepted) {
+        int[] offsets = batch.offsets;
+
+        for (int f = accepted.nextSetBit(0); f >= 0; f = accepted.nextSetBit(f + 1)) {
+            long groundTime = 0;
+            for (int s = offsets[f], end = offsets[f + 1] - 1; s < end; s++) {
+                groundTime += batch.groundTimeMinutes(s);
+            }
+            if (groundTime > maxGroundTimeMinutes) {
+                accepted.clear(f);
+            }
+        }
+    }
+
     public long getMaxGroundTimeMinutes() {
         return maxGroundTimeMinutes;
     }
 
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
+
+    @Override
+    public RuleKey getKey() {
+        return RuleKey.of("ExcessiveGroundTime", maxGroundTimeMinutes);
+    }
+
     @Override
     public String toString() {
         return "ExcessiveGroundTimeFilter{maxGroundTimeMinutes=" + maxGroundTimeMinutes + "}";
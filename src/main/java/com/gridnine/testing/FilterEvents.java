@@ -0,0 +1,64 @@
+package com.gridnine.testing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+// Пользовательские события JFR для инструментирования фильтрации.
+
+final class FilterEvents {
+
+    private FilterEvents() {
+        // Utility class
+    }
+
+    // Один вызов FlightFilter.filter (длительность события = время фильтрации).
+
+    @Name("com.gridnine.testing.FlightFilter")
+    @Label("Flight Filter")
+    @Category({"AeroFilter"})
+    @Description("Вызов FlightFilter.filter")
+    @StackTrace(false)
+    static final class FilterCallEvent extends Event {
+        @Label("Instrumentation")
+        String instrumentation;
+
+        @Label("Rule")
+        String rule;
+
+        @Label("Flights In")
+        int flightsIn;
+
+        @Label("Flights Out")
+        int flightsOut;
+    }
+
+    // Периодический снимок накопленной статистики одного правила.
+
+    @Name("com.gridnine.testing.RuleStatistics")
+    @Label("Filter Rule Statistics")
+    @Category({"AeroFilter"})
+    @Description("Накопленная статистика проверок правила фильтрации")
+    @Period("10 s")
+    @StackTrace(false)
+    static final class RuleStatisticsEvent extends Event {
+        @Label("Instrumentation")
+        String instrumentation;
+
+        @Label("Rule")
+        String rule;
+
+        @Label("Evaluations")
+        long evaluations;
+
+        @Label("Rejections")
+        long rejections;
+
+        @Label("Total Nanos")
+        long totalNanos;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package com.gridnine.testing;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import jdk.jfr.FlightRecorder;
+
+// Инструментирование фильтрации: статистика по каждому правилу и по каждому вызову FlightFilter.filter.
+// Статистика публикуется событиями JFR (FilterEvents) и через JMX (registerMBean).
+// Подключается к фильтру через FlightFilter.instrumented(instrumentation). Фильтр без инструментирования
+// и фильтр с выключенным инструментированием (setEnabled(false)) правила не оборачивают и время не замеряют.
+// Правила учитываются по устойчивому описанию (describe): обычно это toString(), например
+// "ExcessiveGroundTimeFilter{maxGroundTimeMinutes=60}", но без текущего времени у
+// DepartureBeforeCurrentTimeFilter и по имени класса у лямбд. Поэтому одинаковые правила
+// из разных запросов попадают в одну строку статистики. Строк не больше MAX_TRACKED_RULES,
+// остальные правила учитываются вместе в строке OTHER_RULES.
+
+public final class FilterInstrumentation implements FilterInstrumentationMXBean, AutoCloseable {
+
+    // Наибольшее количество правил с отдельной статистикой
+    static final int MAX_TRACKED_RULES = 1_024;
+    // Описание общей строки статистики правил сверх MAX_TRACKED_RULES
+    static final String OTHER_RULES = "(другие правила)";
+
+    private final String name;
+    private volatile boolean enabled = true;
+
+    private final Map<String, RuleStatistics> ruleStatistics = new ConcurrentHashMap<>();
+    private final LongAdder filterCalls = new LongAdder();
+    private final LongAdder flightsIn = new LongAdder();
+    private final LongAdder flightsOut = new LongAdder();
+    private final LongAdder filterNanos = new LongAdder();
+
+    // Уже инструментированные составные правила: повторные запросы с тем же объектом правила
+    // получают то же дерево, и составные правила сохраняют накопленный порядок проверки.
+    // Листовые правила не кэшируются - их обёртка ссылалась бы на ключ и не давала его собрать
+    private final Map<FilterRule, FilterRule> instrumentedRules = new WeakHashMap<>();
+
+    private final Runnable periodicHook = this::emitRuleStatistics;
+    private ObjectName objectName;
+
+    public FilterInstrumentation(String name) {
+        this.name = Objects.requireNonNull(name, "Имя инструментирования не может быть null");
+        FlightRecorder.addPeriodicEvent(FilterEvents.RuleStatisticsEvent.class, periodicHook);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Возвращает правило, которое учитывает проверки каждого листового правила дерева.
+    // Составные правила и отрицания пересобираются из инструментированных дочерних правил.
+    // @param rule исходное правило
+    // @return инструментированное правило с тем же результатом проверки
+
+    public FilterRule instrument(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (!(rule instanceof CompositeRule) && !(rule instanceof NotRule)) {
+            return wrap(rule);
+        }
+        synchronized (instrumentedRules) {
+            return instrumentedRules.computeIfAbsent(rule, this::wrap);
+        }
+    }
+
+    private FilterRule wrap(FilterRule rule) {
+        if (rule instanceof InstrumentedRule) {
+            return rule;
+        }
+        if (rule instanceof CompositeRule) {
+            CompositeRule composite = (CompositeRule) rule;
+            List<FilterRule> children = composite.getChildren();
+            FilterRule[] wrapped = new FilterRule[children.size()];
+            for (int i = 0; i < wrapped.length; i++) {
+                wrapped[i] = wrap(children.get(i));
+            }
+            return composite.getOperator() == CompositeRule.Operator.AND
+                    ? CompositeRule.and(wrapped)
+                    : CompositeRule.or(wrapped);
+        }
+        if (rule instanceof NotRule) {
+            return NotRule.of(wrap(((NotRule) rule).getRule()));
+        }
+        return new InstrumentedRule(rule, statisticsFor(rule));
+    }
+
+    // Статистика правила (создается при первом обращении).
+    // Сверх MAX_TRACKED_RULES описаний возвращается общая статистика OTHER_RULES без правила.
+
+    public RuleStatistics statisticsFor(FilterRule rule) {
+        String description = describe(rule);
+        RuleStatistics statistics = ruleStatistics.get(description);
+        if (statistics != null) {
+            return statistics;
+        }
+        if (ruleStatistics.size() >= MAX_TRACKED_RULES) {
+            return ruleStatistics.computeIfAbsent(OTHER_RULES, other -> new RuleStatistics(null));
+        }
+        return ruleStatistics.computeIfAbsent(description, d -> new RuleStatistics(rule));
+    }
+
+    // Описание правила без параметров, которые меняются от запроса к запросу.
+
+    static String describe(FilterRule rule) {
+        if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+            return rule.getClass().getSimpleName();
+        }
+        if (rule.getClass().isSynthetic()) {
+            // Лямбда: toString() содержит адрес объекта, имя класса одно на место создания
+            return rule.getClass().getName();
+        }
+        return rule.toString();
+    }
+
+    // Начинает учёт вызова фильтрации: событие JFR замеряет длительность от этого момента.
+
+    FilterEvents.FilterCallEvent beginFilterCall() {
+        FilterEvents.FilterCallEvent event = new FilterEvents.FilterCallEvent();
+        event.begin();
+        return event;
+    }
+
+    // Учитывает один вызов фильтрации и публикует событие JFR.
+    // @param event событие, полученное из beginFilterCall()
+    // @param rule исходное правило вызова
+    // @param in количество перелётов на входе
+    // @param out количество перелётов в результате
+    // @param elapsedNanos время вызова в наносекундах
+
+    void endFilterCall(FilterEvents.FilterCallEvent event, FilterRule rule, int in, int out, long elapsedNanos) {
+        filterCalls.increment();
+        flightsIn.add(in);
+        flightsOut.add(out);
+        filterNanos.add(elapsedNanos);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.instrumentation = name;
+            event.rule = rule.toString();
+            event.flightsIn = in;
+            event.flightsOut = out;
+            event.commit();
+        }
+    }
+
+    // Публикует снимок статистики всех правил (вызывается JFR периодически).
+
+    private void emitRuleStatistics() {
+        for (Map.Entry<String, RuleStatistics> entry : ruleStatistics.entrySet()) {
+            RuleStatistics statistics = entry.getValue();
+            FilterEvents.RuleStatisticsEvent event = new FilterEvents.RuleStatisticsEvent();
+            event.instrumentation = name;
+            event.rule = entry.getKey();
+            event.evaluations = statistics.getEvaluations();
+            event.rejections = statistics.getRejections();
+            event.totalNanos = statistics.getTotalNanos();
+            event.commit();
+        }
+    }
+
+    // Регистрирует MBean в платформенном MBeanServer под именем
+    // com.gridnine.testing:type=FilterInstrumentation,name=<name>.
+    // @return имя зарегистрированного MBean
+
+    public synchronized ObjectName registerMBean() {
+        if (objectName != null) {
+            return objectName;
+        }
+        try {
+            ObjectName candidate = new ObjectName("com.gridnine.testing:type=FilterInstrumentation,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+            objectName = candidate;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Не удалось зарегистрировать MBean " + name, e);
+        }
+    }
+
+    // Снимает регистрацию MBean и периодического события JFR.
+
+    @Override
+    public synchronized void close() {
+        FlightRecorder.removePeriodicEvent(periodicHook);
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                throw new IllegalStateException("Не удалось снять регистрацию MBean " + name, e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    @Override
+    public long getFilterCalls() {
+        return filterCalls.sum();
+    }
+
+    @Override
+    public long getFlightsIn() {
+        return flightsIn.sum();
+    }
+
+    @Override
+    public long getFlightsOut() {
+        return flightsOut.sum();
+    }
+
+    @Override
+    public long getFilterNanos() {
+        return filterNanos.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRuleEvaluations() {
+        return collect(RuleStatistics::getEvaluations);
+    }
+
+    @Override
+    public Map<String, Long> getRuleRejections() {
+        return collect(RuleStatistics::getRejections);
+    }
+
+    @Override
+    public Map<String, Long> getRuleNanos() {
+        return collect(RuleStatistics::getTotalNanos);
+    }
+
+    @Override
+    public void reset() {
+        ruleStatistics.clear();
+        synchronized (instrumentedRules) {
+            instrumentedRules.clear();
+        }
+        filterCalls.reset();
+        flightsIn.reset();
+        flightsOut.reset();
+        filterNanos.reset();
+    }
+
+    private Map<String, Long> collect(ToLongFunction<RuleStatistics> value) {
+        Map<String, Long> result = new TreeMap<>();
+        ruleStatistics.forEach((description, statistics) -> result.put(description, value.applyAsLong(statistics)));
+        return result;
+    }
+
+    // Листовое правило с учётом проверок.
+
+    private static final class InstrumentedRule implements FilterRule {
+        private final FilterRule rule;
+        private final RuleStatistics statistics;
+
+        InstrumentedRule(FilterRule rule, RuleStatistics statistics) {
+            this.rule = rule;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public boolean test(Flight flight) {
+            long start = System.nanoTime();
+            boolean accepted = rule.test(flight);
+            statistics.record(accepted, System.nanoTime() - start);
+            return accepted;
+        }
+
+        @Override
+        public boolean isSideEffectFree() {
+            return rule.isSideEffectFree();
+        }
+
+        @Override
+        public RuleKey getKey() {
+            return rule.getKey();
+        }
+
+        @Override
+        public String toString() {
+            return rule.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.gridnine.testing;
+
+import java.util.Map;
+
+// JMX-интерфейс статистики фильтрации.
+// Статистика правил возвращается как таблицы "описание правила -> значение",
+// например "ExcessiveGroundTimeFilter{maxGroundTimeMinutes=60}" -> 1000.
+
+public interface FilterInstrumentationMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    // Количество вызовов FlightFilter.filter
+
+    long getFilterCalls();
+
+    // Суммарное количество перелётов на входе всех вызовов
+
+    long getFlightsIn();
+
+    // Суммарное количество перелётов в результатах всех вызовов
+
+    long getFlightsOut();
+
+    // Суммарное время всех вызовов в наносекундах
+
+    long getFilterNanos();
+
+    Map<String, Long> getRuleEvaluations();
+
+    Map<String, Long> getRuleRejections();
+
+    Map<String, Long> getRuleNanos();
+
+    // Сбрасывает всю накопленную статистику
+
+    void reset();
+}
\ No newline at end of file
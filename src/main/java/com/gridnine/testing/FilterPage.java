@@ -0,0 +1,87 @@
+package com.gridnine.testing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+// Страница результата фильтрации.
+// Курсор продолжения - непрозрачная строка, по которой следующий вызов FlightFilter.filterPage
+// продолжает просмотр списка с места остановки, не проверяя заново уже просмотренные перелёты.
+// Курсор равен null, если список просмотрен до конца.
+
+public final class FilterPage {
+
+    // Версия формата курсора
+    private static final String CURSOR_PREFIX = "v1:";
+
+    private final List<Flight> flights;
+    private final String nextCursor;
+
+    FilterPage(List<Flight> flights, String nextCursor) {
+        this.flights = List.copyOf(flights);
+        this.nextCursor = nextCursor;
+    }
+
+    // Перелёты страницы в порядке исходного списка.
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    // Курсор следующей страницы или null, если перелётов больше нет.
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    // Кодирует позицию в списке перелётов, с которой продолжается просмотр.
+
+    static String encodeCursor(int position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + position).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Восстанавливает позицию из курсора (0 для null).
+    // @throws IllegalArgumentException если курсор повреждён или указывает за конец списка
+
+    static int decodeCursor(String cursor, int listSize) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (text.startsWith(CURSOR_PREFIX)) {
+                int position = Integer.parseInt(text.substring(CURSOR_PREFIX.length()));
+                if (position >= 0 && position <= listSize) {
+                    return position;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException и ошибки Base64 - то же, что и некорректный курсор
+        }
+        throw new IllegalArgumentException("Некорректный курсор страницы: " + cursor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FilterPage other = (FilterPage) o;
+        return flights.equals(other.flights) && Objects.equals(nextCursor, other.nextCursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(flights, nextCursor);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterPage{size=" + flights.size() + ", nextCursor=" + nextCursor + "}";
+    }
+}
\ No newline at end of file
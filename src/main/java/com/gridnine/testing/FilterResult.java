@@ -0,0 +1,65 @@
+package com.gridnine.testing;
+
+import java.util.List;
+
+// Результат асинхронной фильтрации (FlightFilter.filterAsync).
+// Если срок истёк раньше, чем просмотрен весь список, результат содержит перелёты, найденные
+// среди первых getScannedCount() перелётов, и признак isTruncated(). Просмотр можно продолжить
+// с этой позиции курсором getNextCursor(): FlightFilter.filterPage(flights, rule, limit, cursor).
+
+public final class FilterResult {
+
+    private final List<Flight> flights;
+    private final boolean truncated;
+    private final int scannedCount;
+
+    FilterResult(List<Flight> flights, boolean truncated, int scannedCount) {
+        this.flights = List.copyOf(flights);
+        this.truncated = truncated;
+        this.scannedCount = scannedCount;
+    }
+
+    // Подходящие перелёты в порядке исходного списка.
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    // true, если фильтрация остановлена по сроку и список просмотрен не полностью.
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    // Количество просмотренных перелётов с начала списка.
+
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    // Курсор для FlightFilter.filterPage, указывающий на первый непросмотренный перелёт,
+    // или null, если список просмотрен полностью.
+
+    public String getNextCursor() {
+        return truncated ? FilterPage.encodeCursor(scannedCount) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FilterResult other = (FilterResult) o;
+        return truncated == other.truncated && scannedCount == other.scannedCount && flights.equals(other.flights);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * flights.hashCode() + Boolean.hashCode(truncated)) + scannedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "FilterResult{size=" + flights.size() + ", truncated=" + truncated
+                + ", scannedCount=" + scannedCount + "}";
+    }
+}
\ No newline at end of file
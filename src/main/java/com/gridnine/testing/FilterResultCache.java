@@ -0,0 +1,300 @@
+package com.gridnine.testing;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Кэш результатов фильтрации повторяющихся запросов.
+// Ключ записи - идентификатор набора, его версия и канонический ключ правила (RuleKey),
+// поэтому FilterRules.createStandardFilter(), созданный заново для каждого запроса,
+// находит результат предыдущего. Кэш ограничен и количеством записей, и суммарным числом
+// перелётов в результатах; при переполнении вытесняются давно не использованные записи (LRU).
+// Когда встречается более новая версия набора, все записи старых версий удаляются.
+// Правила без ключа (getKey() == null) не кэшируются. Класс потокобезопасен.
+// Ключ правила содержит точное "сейчас" правил DepartureBeforeCurrentTimeFilter, поэтому правила,
+// созданные через now() в разные моменты, по умолчанию не совпадают. Кэш с интервалом округления
+// (timeBucket) перед вычислением округляет "сейчас" вверх до границы интервала: все запросы внутри
+// интервала получают один результат, вычисленный для его конца, то есть без уже вылетевших перелётов,
+// но и без вылетающих до конца интервала.
+
+public final class FilterResultCache {
+
+    private final FlightFilter filter;
+    private final int maxEntries;
+    private final long maxTotalFlights;
+    // Интервал округления "сейчас" в секундах (0 - без округления)
+    private final long timeBucketSeconds;
+
+    private final LinkedHashMap<CacheKey, List<Flight>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Последняя известная версия каждого набора
+    private final Map<String, Long> datasetVersions = new HashMap<>();
+    private long totalFlights;
+    private long hits;
+    private long misses;
+
+    // Создает кэш с последовательной фильтрацией.
+
+    public FilterResultCache(int maxEntries, long maxTotalFlights) {
+        this(new FlightFilter(), maxEntries, maxTotalFlights);
+    }
+
+    // Создает кэш, который вычисляет промахи указанным фильтром.
+
+    public FilterResultCache(FlightFilter filter, int maxEntries, long maxTotalFlights) {
+        this(filter, maxEntries, maxTotalFlights, Duration.ZERO);
+    }
+
+    // Создает кэш, который округляет "сейчас" правил вверх до границы интервала timeBucket
+    // (Duration.ZERO - без округления).
+
+    public FilterResultCache(FlightFilter filter, int maxEntries, long maxTotalFlights, Duration timeBucket) {
+        Objects.requireNonNull(timeBucket, "Интервал округления времени не может быть null");
+        if (timeBucket.isNegative() || timeBucket.getNano() != 0) {
+            throw new IllegalArgumentException("Интервал округления времени должен быть целым числом секунд");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Максимальное количество записей должно быть положительным");
+        }
+        if (maxTotalFlights < 0) {
+            throw new IllegalArgumentException("Максимальное количество перелётов не может быть отрицательным");
+        }
+        this.filter = Objects.requireNonNull(filter, "Фильтр не может быть null");
+        this.maxEntries = maxEntries;
+        this.maxTotalFlights = maxTotalFlights;
+        this.timeBucketSeconds = timeBucket.getSeconds();
+    }
+
+    // Фильтрует набор, используя сохранённый результат, если он есть.
+    // @param dataset набор перелётов
+    // @param rule правило фильтрации
+    // @return неизменяемый список перелётов, удовлетворяющих правилу
+
+    public List<Flight> filter(FlightDataset dataset, FilterRule rule) {
+        Objects.requireNonNull(dataset, "Набор перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        FlightDataset.Snapshot snapshot = dataset.getSnapshot();
+        FilterRule effectiveRule = timeBucketSeconds > 0 ? roundCurrentTime(rule) : rule;
+        CacheKey key = keyOf(dataset, snapshot, effectiveRule);
+        List<Flight> cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Вычисляем вне блокировки, чтобы не задерживать другие запросы
+        List<Flight> result = List.copyOf(filter.filter(snapshot.getFlights(), effectiveRule));
+        store(key, result);
+        return result;
+    }
+
+    // Фильтрует набор со сроком timeout, используя сохранённый результат, если он есть.
+    // Промах вычисляется через FlightFilter.filterAsync, который проверяет срок во время просмотра;
+    // усечённый по сроку результат возвращается, но не сохраняется.
+    // @param dataset набор перелётов
+    // @param rule правило фильтрации
+    // @param timeout наибольшее время фильтрации (null - без ограничения)
+    // @return результат фильтрации; сохранённый результат всегда полный
+
+    public FilterResult filter(FlightDataset dataset, FilterRule rule, Duration timeout) {
+        Objects.requireNonNull(dataset, "Набор перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        FlightDataset.Snapshot snapshot = dataset.getSnapshot();
+        FilterRule effectiveRule = timeBucketSeconds > 0 ? roundCurrentTime(rule) : rule;
+        CacheKey key = keyOf(dataset, snapshot, effectiveRule);
+        List<Flight> cached = lookup(key);
+        if (cached != null) {
+            return new FilterResult(cached, false, snapshot.getFlights().size());
+        }
+
+        FilterResult result = filter.filterAsync(snapshot.getFlights(), effectiveRule, timeout).join();
+        if (!result.isTruncated()) {
+            store(key, result.getFlights());
+        }
+        return result;
+    }
+
+    // Удаляет все записи указанного набора.
+
+    public synchronized void invalidate(FlightDataset dataset) {
+        removeDataset(dataset.getId());
+    }
+
+    // Удаляет все записи.
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        datasetVersions.clear();
+        totalFlights = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Суммарное количество перелётов во всех сохранённых результатах.
+
+    public synchronized long getTotalFlights() {
+        return totalFlights;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Ключ записи или null, если правило не кэшируется.
+
+    private static CacheKey keyOf(FlightDataset dataset, FlightDataset.Snapshot snapshot, FilterRule rule) {
+        RuleKey ruleKey = rule.getKey();
+        return ruleKey == null ? null : new CacheKey(dataset.getId(), snapshot.getVersion(), ruleKey);
+    }
+
+    // Сохранённый результат или null; учитывает попадание или промах.
+
+    private synchronized List<Flight> lookup(CacheKey key) {
+        if (key == null) {
+            return null;
+        }
+        onVersionSeen(key.datasetId, key.version);
+        List<Flight> cached = entries.get(key);
+        if (cached != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return cached;
+    }
+
+    // Сохраняет неизменяемый результат, если версия набора всё ещё текущая и результат помещается в кэш.
+
+    private synchronized void store(CacheKey key, List<Flight> result) {
+        if (key == null || !isCurrentVersion(key.datasetId, key.version) || weight(result) > maxTotalFlights) {
+            return;
+        }
+        List<Flight> previous = entries.put(key, result);
+        if (previous != null) {
+            totalFlights -= weight(previous);
+        }
+        totalFlights += weight(result);
+        evict();
+    }
+
+    // Заменяет в дереве правил DepartureBeforeCurrentTimeFilter на правило с "сейчас",
+    // округлённым вверх до границы интервала. Неизменённые поддеревья остаются прежними.
+
+    private FilterRule roundCurrentTime(FilterRule rule) {
+        if (rule.getClass() == DepartureBeforeCurrentTimeFilter.class) {
+            LocalDateTime time = ((DepartureBeforeCurrentTimeFilter) rule).getCurrentTime();
+            long second = time.toEpochSecond(ZoneOffset.UTC);
+            long bucket = Math.floorDiv(second, timeBucketSeconds) * timeBucketSeconds;
+            if (bucket == second && time.getNano() == 0) {
+                return rule;
+            }
+            return new DepartureBeforeCurrentTimeFilter(
+                    LocalDateTime.ofEpochSecond(bucket + timeBucketSeconds, 0, ZoneOffset.UTC));
+        }
+        if (rule instanceof NotRule) {
+            FilterRule inner = ((NotRule) rule).getRule();
+            FilterRule rounded = roundCurrentTime(inner);
+            return rounded == inner ? rule : NotRule.of(rounded);
+        }
+        if (rule instanceof CompositeRule) {
+            CompositeRule composite = (CompositeRule) rule;
+            List<FilterRule> children = composite.getChildren();
+            FilterRule[] rounded = new FilterRule[children.size()];
+            boolean changed = false;
+            for (int i = 0; i < rounded.length; i++) {
+                rounded[i] = roundCurrentTime(children.get(i));
+                changed |= rounded[i] != children.get(i);
+            }
+            if (!changed) {
+                return rule;
+            }
+            return composite.getOperator() == CompositeRule.Operator.AND
+                    ? CompositeRule.and(rounded)
+                    : CompositeRule.or(rounded);
+        }
+        return rule;
+    }
+
+    // Запоминает версию набора; при появлении новой версии удаляет записи старых.
+
+    private void onVersionSeen(String datasetId, long version) {
+        Long known = datasetVersions.get(datasetId);
+        if (known == null || known < version) {
+            if (known != null) {
+                removeDataset(datasetId);
+            }
+            datasetVersions.put(datasetId, version);
+        }
+    }
+
+    private boolean isCurrentVersion(String datasetId, long version) {
+        Long known = datasetVersions.get(datasetId);
+        return known != null && known == version;
+    }
+
+    private void removeDataset(String datasetId) {
+        for (Iterator<Map.Entry<CacheKey, List<Flight>>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<CacheKey, List<Flight>> entry = it.next();
+            if (entry.getKey().datasetId.equals(datasetId)) {
+                totalFlights -= weight(entry.getValue());
+                it.remove();
+            }
+        }
+        datasetVersions.remove(datasetId);
+    }
+
+    // Вытесняет самые давно использованные записи, пока кэш не уложится в ограничения.
+
+    private void evict() {
+        Iterator<Map.Entry<CacheKey, List<Flight>>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalFlights > maxTotalFlights) && it.hasNext()) {
+            totalFlights -= weight(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    // Вес записи: количество перелётов плюс один, чтобы пустые результаты тоже учитывались.
+
+    private static long weight(List<Flight> result) {
+        return result.size() + 1L;
+    }
+
+    private static final class CacheKey {
+        private final String datasetId;
+        private final long version;
+        private final RuleKey ruleKey;
+
+        CacheKey(String datasetId, long version, RuleKey ruleKey) {
+            this.datasetId = datasetId;
+            this.version = version;
+            this.ruleKey = ruleKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CacheKey other = (CacheKey) o;
+            return version == other.version &&
+                    datasetId.equals(other.datasetId) &&
+                    ruleKey.equals(other.ruleKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(datasetId, version, ruleKey);
+        }
+    }
+}
\ No newline at end of file
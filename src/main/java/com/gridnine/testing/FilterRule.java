@@ -15,22 +15,41 @@ public interface FilterRule extends Predicate<Flight> {
 
     boolean test(Flight flight);
 
-    // Композиция правил через AND (логическое И)
+    // Композиция правил через AND (логическое И).
+    // Возвращает узел дерева правил; правила проверяются слева направо, а порядок
+    // подбирается по статистике, только если все они isSideEffectFree().
 
     default FilterRule and(FilterRule other) {
-        return flight -> this.test(flight) && other.test(flight);
+        return CompositeRule.and(this, other);
     }
 
-    // Композиция правил через OR (логическое ИЛИ)
+    // Композиция правил через OR (логическое ИЛИ).
+    // Возвращает узел дерева правил; правила проверяются слева направо, а порядок
+    // подбирается по статистике, только если все они isSideEffectFree().
 
     default FilterRule or(FilterRule other) {
-        return flight -> this.test(flight) || other.test(flight);
+        return CompositeRule.or(this, other);
     }
 
     // Отрицание правила (логическое НЕ)
 
     default FilterRule negate() {
-        return flight -> !this.test(flight);
+        return NotRule.of(this);
+    }
+
+    // Каноническое представление правила (класс и параметры) для кэширования результатов.
+    // @return ключ или null, если у правила нет канонического представления (например, у лямбды)
+
+    default RuleKey getKey() {
+        return null;
+    }
+
+    // Правило без побочных эффектов, не выбрасывающее исключений и не рассчитывающее на то,
+    // что перед ним проверены другие правила. Такие правила можно проверять в любом порядке.
+    // Наследник, переопределяющий test, должен переопределить и этот метод.
+
+    default boolean isSideEffectFree() {
+        return false;
     }
 
     // Статический метод для создания правила из Predicate
@@ -1,8 +1,11 @@
 package com.gridnine.testing;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 // Фабрика для создания комбинированных правил фильтрации.
+// Текущее время задаётся временем UTC; методы без него берут LocalDateTime.now(ZoneOffset.UTC).
 
 public final class FilterRules {
 
@@ -13,40 +16,64 @@ public final class FilterRules {
     // Создает комбинированное правило для всех стандартных фильтров.
 
     public static FilterRule createStandardFilter() {
-        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter();
+        return createStandardFilter(LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Стандартное правило с заданным текущим временем.
+
+    public static FilterRule createStandardFilter(LocalDateTime currentTime) {
+        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter(currentTime);
         FilterRule rule2 = new ArrivalBeforeDepartureFilter();
         FilterRule rule3 = new ExcessiveGroundTimeFilter();
 
-        return flight -> rule1.test(flight) && rule2.test(flight) && rule3.test(flight);
+        return combineRules(rule1, rule2, rule3);
     }
 
     // Создает правило для бизнес-рейсов (без долгих ожиданий).
 
     public static FilterRule createBusinessFilter() {
-        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter();
+        return createBusinessFilter(LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Правило для бизнес-рейсов с заданным текущим временем.
+
+    public static FilterRule createBusinessFilter(LocalDateTime currentTime) {
+        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter(currentTime);
         FilterRule rule2 = new ArrivalBeforeDepartureFilter();
         FilterRule rule3 = new ExcessiveGroundTimeFilter(60); // Максимум 1 час на земле
 
-        return flight -> rule1.test(flight) && rule2.test(flight) && rule3.test(flight);
+        return combineRules(rule1, rule2, rule3);
     }
 
     // Создает правило только для базовых проверок.
 
     public static FilterRule createBasicFilter() {
-        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter();
+        return createBasicFilter(LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Правило базовых проверок с заданным текущим временем.
+
+    public static FilterRule createBasicFilter(LocalDateTime currentTime) {
+        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter(currentTime);
         FilterRule rule2 = new ArrivalBeforeDepartureFilter();
 
-        return flight -> rule1.test(flight) && rule2.test(flight);
+        return combineRules(rule1, rule2);
     }
 
     // Создает правило с кастомным временем на земле.
 
     public static FilterRule createCustomFilter(long maxGroundTimeMinutes) {
-        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter();
+        return createCustomFilter(maxGroundTimeMinutes, LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Правило с кастомным временем на земле и заданным текущим временем.
+
+    public static FilterRule createCustomFilter(long maxGroundTimeMinutes, LocalDateTime currentTime) {
+        FilterRule rule1 = new DepartureBeforeCurrentTimeFilter(currentTime);
         FilterRule rule2 = new ArrivalBeforeDepartureFilter();
         FilterRule rule3 = new ExcessiveGroundTimeFilter(maxGroundTimeMinutes);
 
-        return flight -> rule1.test(flight) && rule2.test(flight) && rule3.test(flight);
+        return combineRules(rule1, rule2, rule3);
     }
 
     // Создает правило с кастомным временем на земле.
@@ -56,28 +83,16 @@ public final class FilterRules {
     }
 
     // Комбинирует несколько правил в одно через AND.
+    // Пустой список правил пропускает любой перелёт.
 
     public static FilterRule combineRules(FilterRule... rules) {
-        return flight -> {
-            for (FilterRule rule : rules) {
-                if (!rule.test(flight)) {
-                    return false;
-                }
-            }
-            return true;
-        };
+        return CompositeRule.and(rules);
     }
 
     // Комбинирует несколько правил в одно через OR.
+    // Пустой список правил не пропускает ни одного перелёта.
 
     public static FilterRule combineRulesOr(FilterRule... rules) {
-        return flight -> {
-            for (FilterRule rule : rules) {
-                if (rule.test(flight)) {
-                    return true;
-                }
-            }
-            return false;
-        };
+        return CompositeRule.or(rules);
     }
 }
\ No newline at end of file
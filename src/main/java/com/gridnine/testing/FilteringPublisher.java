@@ -0,0 +1,102 @@
+package com.gridnine.testing;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+// Издатель Flow, пропускающий дальше только перелёты, удовлетворяющие правилу.
+// Обратное давление сохраняется: запрос подписчика передаётся источнику как есть,
+// а вместо каждого отклонённого перелёта у источника запрашивается ещё один.
+// Таким образом, в обработке никогда не бывает больше перелётов, чем запросил подписчик.
+
+final class FilteringPublisher implements Flow.Publisher<Flight> {
+
+    private final Flow.Publisher<Flight> source;
+    private final FilterRule rule;
+
+    FilteringPublisher(Flow.Publisher<Flight> source, FilterRule rule) {
+        this.source = source;
+        this.rule = rule;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Flight> subscriber) {
+        Objects.requireNonNull(subscriber, "Подписчик не может быть null");
+        source.subscribe(new FilteringSubscriber(subscriber, rule));
+    }
+
+    // Подписчик на источник и одновременно подписка для конечного подписчика.
+
+    private static final class FilteringSubscriber implements Flow.Subscriber<Flight>, Flow.Subscription {
+        private final Flow.Subscriber<? super Flight> downstream;
+        private final FilterRule rule;
+        private Flow.Subscription upstream;
+        private boolean done;
+
+        FilteringSubscriber(Flow.Subscriber<? super Flight> downstream, FilterRule rule) {
+            this.downstream = downstream;
+            this.rule = rule;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream != null) {
+                // Повторная подписка запрещена спецификацией Reactive Streams
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(Flight flight) {
+            if (done) {
+                return;
+            }
+
+            boolean accepted;
+            try {
+                accepted = rule.test(flight);
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                onError(e);
+                return;
+            }
+
+            if (accepted) {
+                downstream.onNext(flight);
+            } else {
+                // Отклонённый перелёт не расходует запрос подписчика
+                upstream.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (done) {
+                return;
+            }
+            done = true;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+    }
+}
\ No newline at end of file
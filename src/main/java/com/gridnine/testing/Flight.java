@@ -1,7 +1,7 @@
 package com.gridnine.testing;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -12,45 +12,124 @@ import java.util.stream.Collectors;
 public class Flight {
     private final List<Segment> segments;
 
+    // Сводка по перелёту, вычисляется один раз в конструкторе за один проход по сегментам.
+    // Это безопасно, так как список сегментов и сами сегменты неизменяемы.
+    // Сравнения и время на земле считаются по моментам в UTC, поэтому корректны для сегментов
+    // в разных временных зонах.
+    private final LocalDateTime earliestDeparture;
+    private final LocalDateTime latestArrival;
+    private final long earliestDepartureEpochSecond;
+    private final int earliestDepartureNano;
+    private final long latestArrivalEpochSecond;
+    private final long totalGroundTimeMinutes;
+    private final boolean invalidSegments;
+    private final int hash;
+
     public Flight(final List<Segment> segments) {
-        this.segments = Objects.requireNonNull(segments, "segments не может быть null");
+        this.segments = List.copyOf(Objects.requireNonNull(segments, "segments не может быть null"));
+
+        Segment earliest = null;
+        Segment latest = null;
+        long groundTime = 0;
+        boolean invalid = false;
+        Segment previous = null;
+        for (Segment segment : this.segments) {
+            long departure = segment.getDepartureEpochSecond();
+            int departureNano = segment.getDepartureDate().getNano();
+            long arrival = segment.getArrivalEpochSecond();
+            int arrivalNano = segment.getArrivalDate().getNano();
+
+            if (earliest == null || Segment.isBefore(departure, departureNano,
+                    earliest.getDepartureEpochSecond(), earliest.getDepartureDate().getNano())) {
+                earliest = segment;
+            }
+            if (latest == null || Segment.isBefore(latest.getArrivalEpochSecond(),
+                    latest.getArrivalDate().getNano(), arrival, arrivalNano)) {
+                latest = segment;
+            }
+            if (Segment.isBefore(arrival, arrivalNano, departure, departureNano)) {
+                invalid = true;
+            }
+            // Учитываем только положительное время на земле (целые минуты, как ChronoUnit.MINUTES)
+            if (previous != null) {
+                long previousArrival = previous.getArrivalEpochSecond();
+                int previousArrivalNano = previous.getArrivalDate().getNano();
+                if (Segment.isBefore(previousArrival, previousArrivalNano, departure, departureNano)) {
+                    long seconds = departure - previousArrival;
+                    if (departureNano < previousArrivalNano) {
+                        seconds--;
+                    }
+                    groundTime += seconds / 60;
+                }
+            }
+            previous = segment;
+        }
+
+        this.earliestDeparture = earliest != null ? earliest.getDepartureDate() : null;
+        this.latestArrival = latest != null ? latest.getArrivalDate() : null;
+        this.earliestDepartureEpochSecond = earliest != null ? earliest.getDepartureEpochSecond() : Long.MAX_VALUE;
+        this.earliestDepartureNano = earliest != null ? earliest.getDepartureDate().getNano() : 0;
+        this.latestArrivalEpochSecond = latest != null ? latest.getArrivalEpochSecond() : Long.MIN_VALUE;
+        this.totalGroundTimeMinutes = groundTime;
+        this.invalidSegments = invalid;
+        this.hash = this.segments.hashCode();
     }
 
+    // Неизменяемый список сегментов перелёта.
+
     public List<Segment> getSegments() {
         return segments;
     }
 
-    // Вычисляет общее время на земле между сегментами (в минутах)
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Местное время самого раннего (в UTC) вылета среди сегментов (null для перелёта без сегментов).
+
+    public LocalDateTime getEarliestDeparture() {
+        return earliestDeparture;
+    }
+
+    // Местное время самого позднего (в UTC) прилёта среди сегментов (null для перелёта без сегментов).
+
+    public LocalDateTime getLatestArrival() {
+        return latestArrival;
+    }
+
+    // Самый ранний вылет в секундах от эпохи UTC (Long.MAX_VALUE для перелёта без сегментов).
+
+    public long getEarliestDepartureEpochSecond() {
+        return earliestDepartureEpochSecond;
+    }
+
+    int getEarliestDepartureNano() {
+        return earliestDepartureNano;
+    }
+
+    // Самый поздний прилёт в секундах от эпохи UTC (Long.MIN_VALUE для перелёта без сегментов).
+
+    public long getLatestArrivalEpochSecond() {
+        return latestArrivalEpochSecond;
+    }
+
+    // Общее время на земле между сегментами (в минутах)
 
     public long getTotalGroundTimeMinutes() {
-        long totalGroundTime = 0;
-        for (int i = 0; i < segments.size() - 1; i++) {
-            Segment current = segments.get(i);
-            Segment next = segments.get(i + 1);
-
-            // Учитываем только положительное время на земле
-            if (next.getDepartureDate().isAfter(current.getArrivalDate())) {
-                totalGroundTime += Duration.between(
-                        current.getArrivalDate(),
-                        next.getDepartureDate()
-                ).toMinutes();
-            }
-        }
-        return totalGroundTime;
+        return totalGroundTimeMinutes;
     }
 
     // Проверяет, есть ли в перелёте сегменты с прилётом раньше вылета.
 
     public boolean hasInvalidSegments() {
-        return segments.stream().anyMatch(segment ->
-                segment.getArrivalDate().isBefore(segment.getDepartureDate()));
+        return invalidSegments;
     }
 
-    // Проверяет, есть ли сегменты с вылетом в прошлом относительно заданного времени.
+    // Проверяет, есть ли сегменты с вылетом в прошлом относительно заданного времени (время UTC).
 
     public boolean hasDepartureInPast(LocalDateTime referenceTime) {
-        return segments.stream().anyMatch(segment ->
-                segment.getDepartureDate().isBefore(referenceTime));
+        return earliestDeparture != null && Segment.isBefore(earliestDepartureEpochSecond, earliestDepartureNano,
+                referenceTime.toEpochSecond(ZoneOffset.UTC), referenceTime.getNano());
     }
 
     @Override
@@ -65,11 +144,11 @@ public class Flight {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Flight flight = (Flight) o;
-        return segments.equals(flight.segments);
+        return hash == flight.hash && segments.equals(flight.segments);
     }
 
     @Override
     public int hashCode() {
-        return segments.hashCode();
+        return hash;
     }
 }
\ No newline at end of file
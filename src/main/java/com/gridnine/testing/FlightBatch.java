@@ -0,0 +1,233 @@
+package com.gridnine.testing;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+// Колоночное хранилище перелётов для пакетной фильтрации больших наборов данных.
+// Моменты вылета и прилёта всех сегментов лежат в массивах long[] (секунды от эпохи UTC,
+// см. Segment.getDepartureEpochSecond), сегменты перелёта i занимают диапазон
+// [offsets[i], offsets[i + 1]). Доли секунды хранятся в отдельных колонках, которые создаются,
+// только если в пакете есть времена с долями секунды, поэтому пакетная проверка точно совпадает
+// с проверкой объектов Flight, а getFlight восстанавливает исходный перелёт.
+
+public final class FlightBatch {
+
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    // Границы перелётов в массивах сегментов, длина = size() + 1
+    final int[] offsets;
+    // Время вылета сегментов в секундах от эпохи UTC
+    final long[] departures;
+    // Время прилёта сегментов в секундах от эпохи UTC
+    final long[] arrivals;
+    // Наносекунды вылета и прилёта (null, если у всех времён пакета они нулевые)
+    private final int[] departureNanos;
+    private final int[] arrivalNanos;
+    // Временные зоны и местное время сегментов в секундах от эпохи без учёта зоны
+    // для восстановления исходных сегментов (null, если зон в пакете нет)
+    private final ZoneId[] departureZones;
+    private final ZoneId[] arrivalZones;
+    private final long[] localDepartures;
+    private final long[] localArrivals;
+
+    private FlightBatch(int[] offsets, long[] departures, long[] arrivals, int[] departureNanos, int[] arrivalNanos,
+                        ZoneId[] departureZones, ZoneId[] arrivalZones, long[] localDepartures, long[] localArrivals) {
+        this.offsets = offsets;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.departureNanos = departureNanos;
+        this.arrivalNanos = arrivalNanos;
+        this.departureZones = departureZones;
+        this.arrivalZones = arrivalZones;
+        this.localDepartures = localDepartures;
+        this.localArrivals = localArrivals;
+    }
+
+    // Создает пакет из списка перелётов.
+
+    public static FlightBatch of(List<Flight> flights) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+
+        int segmentCount = 0;
+        for (Flight flight : flights) {
+            segmentCount += flight.getSegments().size();
+        }
+
+        int[] offsets = new int[flights.size() + 1];
+        long[] departures = new long[segmentCount];
+        long[] arrivals = new long[segmentCount];
+        int[] departureNanos = null;
+        int[] arrivalNanos = null;
+        ZoneId[] departureZones = null;
+        ZoneId[] arrivalZones = null;
+        long[] localDepartures = null;
+        long[] localArrivals = null;
+
+        int position = 0;
+        for (int i = 0; i < flights.size(); i++) {
+            offsets[i] = position;
+            for (Segment segment : flights.get(i).getSegments()) {
+                LocalDateTime departure = segment.getDepartureDate();
+                LocalDateTime arrival = segment.getArrivalDate();
+                departures[position] = segment.getDepartureEpochSecond();
+                arrivals[position] = segment.getArrivalEpochSecond();
+                if (departureNanos == null && (departure.getNano() != 0 || arrival.getNano() != 0)) {
+                    departureNanos = new int[segmentCount];
+                    arrivalNanos = new int[segmentCount];
+                }
+                if (departureNanos != null) {
+                    departureNanos[position] = departure.getNano();
+                    arrivalNanos[position] = arrival.getNano();
+                }
+                if (departureZones == null && (segment.getDepartureZone() != null || segment.getArrivalZone() != null)) {
+                    departureZones = new ZoneId[segmentCount];
+                    arrivalZones = new ZoneId[segmentCount];
+                    // Для сегментов до первого сегмента с зоной местное время совпадает с UTC
+                    localDepartures = Arrays.copyOf(departures, segmentCount);
+                    localArrivals = Arrays.copyOf(arrivals, segmentCount);
+                }
+                if (departureZones != null) {
+                    departureZones[position] = segment.getDepartureZone();
+                    arrivalZones[position] = segment.getArrivalZone();
+                    localDepartures[position] = departure.toEpochSecond(ZoneOffset.UTC);
+                    localArrivals[position] = arrival.toEpochSecond(ZoneOffset.UTC);
+                }
+                position++;
+            }
+        }
+        offsets[flights.size()] = position;
+
+        return new FlightBatch(offsets, departures, arrivals, departureNanos, arrivalNanos,
+                departureZones, arrivalZones, localDepartures, localArrivals);
+    }
+
+    // Количество перелётов в пакете.
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    // Количество сегментов у перелёта с указанным номером.
+
+    public int getSegmentCount(int flightIndex) {
+        Objects.checkIndex(flightIndex, size());
+        return offsets[flightIndex + 1] - offsets[flightIndex];
+    }
+
+    // Общее количество сегментов во всех перелётах пакета.
+
+    public int getTotalSegmentCount() {
+        return departures.length;
+    }
+
+    // Восстанавливает объект Flight для перелёта с указанным номером.
+
+    public Flight getFlight(int flightIndex) {
+        Objects.checkIndex(flightIndex, size());
+
+        int start = offsets[flightIndex];
+        int end = offsets[flightIndex + 1];
+        List<Segment> segments = new ArrayList<>(end - start);
+        for (int s = start; s < end; s++) {
+            if (departureZones == null) {
+                segments.add(new Segment(
+                        LocalDateTime.ofEpochSecond(departures[s], departureNano(s), ZoneOffset.UTC),
+                        LocalDateTime.ofEpochSecond(arrivals[s], arrivalNano(s), ZoneOffset.UTC)));
+            } else {
+                segments.add(new Segment(
+                        LocalDateTime.ofEpochSecond(localDepartures[s], departureNano(s), ZoneOffset.UTC),
+                        LocalDateTime.ofEpochSecond(localArrivals[s], arrivalNano(s), ZoneOffset.UTC),
+                        departureZones[s], arrivalZones[s]));
+            }
+        }
+        return new Flight(segments);
+    }
+
+    int departureNano(int segment) {
+        return departureNanos == null ? 0 : departureNanos[segment];
+    }
+
+    int arrivalNano(int segment) {
+        return arrivalNanos == null ? 0 : arrivalNanos[segment];
+    }
+
+    // Вылет сегмента раньше момента, заданного секундами от эпохи UTC и наносекундами.
+
+    boolean departsBefore(int segment, long second, int nano) {
+        return Segment.isBefore(departures[segment], departureNano(segment), second, nano);
+    }
+
+    // Прилёт сегмента раньше его вылета.
+
+    boolean arrivesBeforeDeparture(int segment) {
+        return Segment.isBefore(arrivals[segment], arrivalNano(segment), departures[segment], departureNano(segment));
+    }
+
+    // Время на земле между прилётом сегмента и вылетом следующего в целых минутах, как в Flight
+    // (0, если следующий вылет не позже прилёта).
+
+    long groundTimeMinutes(int segment) {
+        long arrival = arrivals[segment];
+        int arrivalNano = arrivalNano(segment);
+        long departure = departures[segment + 1];
+        int departureNano = departureNano(segment + 1);
+        if (!Segment.isBefore(arrival, arrivalNano, departure, departureNano)) {
+            return 0;
+        }
+        long seconds = departure - arrival;
+        if (departureNano < arrivalNano) {
+            seconds--;
+        }
+        return seconds / SECONDS_PER_MINUTE;
+    }
+
+    // Вычисляет битовую маску перелётов, удовлетворяющих правилу.
+    // Правила BatchFilterRule проверяются пакетно, остальные - по одному перелёту.
+
+    public BitSet evaluate(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        BitSet accepted = new BitSet(size());
+        accepted.set(0, size());
+        apply(rule, this, accepted);
+        return accepted;
+    }
+
+    // Сбрасывает в accepted биты перелётов пакета, не удовлетворяющих правилу.
+
+    static void apply(FilterRule rule, FlightBatch batch, BitSet accepted) {
+        if (rule instanceof BatchFilterRule) {
+            ((BatchFilterRule) rule).testBatch(batch, accepted);
+            return;
+        }
+        for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+            if (!rule.test(batch.getFlight(i))) {
+                accepted.clear(i);
+            }
+        }
+    }
+
+    // Фильтрует пакет и восстанавливает объекты Flight только для прошедших перелётов.
+
+    public List<Flight> filter(FilterRule rule) {
+        BitSet accepted = evaluate(rule);
+
+        List<Flight> result = new ArrayList<>(accepted.cardinality());
+        for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+            result.add(getFlight(i));
+        }
+        return result;
+    }
+
+    // Переводит дату и время в минуты от эпохи (с округлением вниз).
+
+    static long toEpochMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), SECONDS_PER_MINUTE);
+    }
+}
\ No newline at end of file
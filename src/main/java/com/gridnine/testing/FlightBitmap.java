@@ -0,0 +1,470 @@
+package com.gridnine.testing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+// Сжатое неизменяемое множество номеров перелётов (в стиле Roaring bitmap).
+// Номера делятся на блоки по 65536 по старшим 16 битам. Блок с небольшим числом номеров
+// хранится отсортированным массивом char[], плотный блок - битовой картой из 1024 слов long.
+// Операции and/or/andNot над плотными блоками выполняются по словам, т.е. по 64 перелёта за раз.
+
+public final class FlightBitmap {
+
+    // Максимальное количество номеров в блоке-массиве; при большем количестве блок хранится битовой картой
+    static final int ARRAY_LIMIT = 4096;
+
+    private static final int BLOCK_WORDS = 1 << 10;
+
+    private static final FlightBitmap EMPTY = new FlightBitmap(new char[0], new Container[0]);
+
+    // Старшие 16 бит номеров по возрастанию и соответствующие блоки
+    private final char[] keys;
+    private final Container[] containers;
+
+    private FlightBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    public static FlightBitmap empty() {
+        return EMPTY;
+    }
+
+    // Создает множество номеров from (включительно) .. to (не включительно).
+
+    public static FlightBitmap range(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Некорректный диапазон номеров: " + from + ".." + to);
+        }
+        BitSet bits = new BitSet(to);
+        bits.set(from, to);
+        return fromBitSet(bits);
+    }
+
+    // Создает множество из указанных номеров (в любом порядке, повторы допускаются).
+
+    public static FlightBitmap of(int... values) {
+        Objects.requireNonNull(values, "Список номеров не может быть null");
+        BitSet bits = new BitSet();
+        for (int value : values) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Номер перелёта не может быть отрицательным: " + value);
+            }
+            bits.set(value);
+        }
+        return fromBitSet(bits);
+    }
+
+    // Создает множество из установленных битов BitSet.
+
+    public static FlightBitmap fromBitSet(BitSet bits) {
+        Objects.requireNonNull(bits, "Битовая маска не может быть null");
+
+        long[] words = bits.toLongArray();
+        int blockCount = (words.length + BLOCK_WORDS - 1) / BLOCK_WORDS;
+        char[] keys = new char[blockCount];
+        Container[] containers = new Container[blockCount];
+        int size = 0;
+        for (int block = 0; block < blockCount; block++) {
+            long[] blockWords = Arrays.copyOfRange(words, block * BLOCK_WORDS, (block + 1) * BLOCK_WORDS);
+            Container container = BitmapContainer.normalize(blockWords);
+            if (container != null) {
+                keys[size] = (char) block;
+                containers[size] = container;
+                size++;
+            }
+        }
+        return create(keys, containers, size);
+    }
+
+    private static FlightBitmap create(char[] keys, Container[] containers, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        if (size < keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            containers = Arrays.copyOf(containers, size);
+        }
+        return new FlightBitmap(keys, containers);
+    }
+
+    // Количество номеров в множестве.
+
+    public int cardinality() {
+        int total = 0;
+        for (Container container : containers) {
+            total += container.cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return containers.length == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    // Пересечение множеств.
+
+    public FlightBitmap and(FlightBitmap other) {
+        Objects.requireNonNull(other, "Множество не может быть null");
+
+        int capacity = Math.min(keys.length, other.keys.length);
+        char[] resultKeys = new char[capacity];
+        Container[] resultContainers = new Container[capacity];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container != null) {
+                    resultKeys[size] = keys[i];
+                    resultContainers[size] = container;
+                    size++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    // Объединение множеств.
+
+    public FlightBitmap or(FlightBitmap other) {
+        Objects.requireNonNull(other, "Множество не может быть null");
+
+        int capacity = keys.length + other.keys.length;
+        char[] resultKeys = new char[capacity];
+        Container[] resultContainers = new Container[capacity];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[size] = other.keys[j];
+                resultContainers[size++] = other.containers[j++];
+            } else {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    // Разность множеств: номера этого множества, которых нет в other.
+
+    public FlightBitmap andNot(FlightBitmap other) {
+        Objects.requireNonNull(other, "Множество не может быть null");
+
+        char[] resultKeys = new char[keys.length];
+        Container[] resultContainers = new Container[keys.length];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.keys.length && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i];
+            if (container != null) {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = container;
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    // Дополнение множества до диапазона 0 .. universeSize.
+
+    public FlightBitmap negate(int universeSize) {
+        return range(0, universeSize).andNot(this);
+    }
+
+    // Вызывает action для каждого номера по возрастанию.
+
+    public void forEach(IntConsumer action) {
+        Objects.requireNonNull(action, "Обработчик не может быть null");
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public BitSet toBitSet() {
+        BitSet bits = new BitSet();
+        forEach(bits::set);
+        return bits;
+    }
+
+    // Количество блоков, хранящихся битовой картой (для тестов и диагностики).
+
+    int getBitmapContainerCount() {
+        int count = 0;
+        for (Container container : containers) {
+            if (container instanceof BitmapContainer) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FlightBitmap other = (FlightBitmap) o;
+        return toBitSet().equals(other.toBitSet());
+    }
+
+    @Override
+    public int hashCode() {
+        return toBitSet().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FlightBitmap{cardinality=" + cardinality() + ", blocks=" + keys.length + "}";
+    }
+
+    // Блок номеров с общими старшими 16 битами. Блоки не изменяются после создания;
+    // операции возвращают новый блок или null, если результат пуст.
+
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract long[] toWords();
+    }
+
+    // Разреженный блок: отсортированный массив младших 16 бит номеров.
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            if (other instanceof BitmapContainer) {
+                BitmapContainer bitmap = (BitmapContainer) other;
+                for (char value : values) {
+                    if (bitmap.contains(value)) {
+                        result[size++] = value;
+                    }
+                }
+            } else {
+                char[] others = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < others.length) {
+                    if (values[i] < others[j]) {
+                        i++;
+                    } else if (values[i] > others[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return size == 0 ? null : new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            char[] others = ((ArrayContainer) other).values;
+            char[] result = new char[values.length + others.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length || j < others.length) {
+                if (j == others.length || (i < values.length && values[i] < others[j])) {
+                    result[size++] = values[i++];
+                } else if (i == values.length || values[i] > others[j]) {
+                    result[size++] = others[j++];
+                } else {
+                    result[size++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            if (size > ARRAY_LIMIT) {
+                return BitmapContainer.normalize(new ArrayContainer(Arrays.copyOf(result, size)).toWords());
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[size++] = value;
+                }
+            }
+            return size == 0 ? null : new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (char value : values) {
+                action.accept(high | value);
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[BLOCK_WORDS];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return words;
+        }
+    }
+
+    // Плотный блок: битовая карта на 65536 номеров.
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        // Выбирает представление блока по количеству номеров (null для пустого блока).
+
+        static Container normalize(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new BitmapContainer(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[size++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] others = ((BitmapContainer) other).words;
+            long[] result = new long[BLOCK_WORDS];
+            for (int w = 0; w < BLOCK_WORDS; w++) {
+                result[w] = words[w] & others[w];
+            }
+            return normalize(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] others = other.toWords();
+            long[] result = new long[BLOCK_WORDS];
+            for (int w = 0; w < BLOCK_WORDS; w++) {
+                result[w] = words[w] | others[w];
+            }
+            return normalize(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ((ArrayContainer) other).forEach(0, value -> result[value >>> 6] &= ~(1L << value));
+            } else {
+                long[] others = ((BitmapContainer) other).words;
+                for (int w = 0; w < BLOCK_WORDS; w++) {
+                    result[w] &= ~others[w];
+                }
+            }
+            return normalize(result);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BLOCK_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            return words;
+        }
+    }
+}
\ No newline at end of file
@@ -1,18 +1,218 @@
 package com.gridnine.testing;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 // Фабрика для создания тестовых перелётов.
+// Помимо шести демонстрационных перелётов умеет генерировать синтетические наборы любого размера
+// для нагрузочного тестирования: FlightBuilder.generator(seed) с настройками распределений.
+// Перелёт с номером i зависит только от seed, настроек и i (свой SplittableRandom на каждый номер),
+// поэтому результат одинаков при любом порядке и параллельности генерации.
+// Генератор неизменяем: методы with... возвращают копию с изменённой настройкой.
 
 public class FlightBuilder {
 
+    // Базовый момент по умолчанию (UTC): фиксирован, чтобы один seed давал одни и те же перелёты
+    // при любом запуске
+    public static final LocalDateTime DEFAULT_BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    // Размер порции перелётов, генерируемых параллельно при записи в файл
+    private static final int FILE_CHUNK_SIZE = 1 << 16;
+
+    private final long seed;
+    // Момент, относительно которого строятся вылеты (по умолчанию DEFAULT_BASE_TIME)
+    private final LocalDateTime baseTime;
+    // Количество сегментов: равномерно от minSegments до maxSegments
+    private final int minSegments;
+    private final int maxSegments;
+    // Время на земле между сегментами в минутах: равномерно от minGroundMinutes до maxGroundMinutes
+    private final int minGroundMinutes;
+    private final int maxGroundMinutes;
+    // Длительность сегмента в минутах: равномерно от minFlightMinutes до maxFlightMinutes
+    private final int minFlightMinutes;
+    private final int maxFlightMinutes;
+    // Доля перелётов с вылетом в прошлом (до 7 дней назад), остальные вылетают в ближайшие 30 дней
+    private final double pastDepartureRate;
+    // Доля перелётов с одним сегментом, где прилёт раньше вылета
+    private final double invalidSegmentRate;
+
+    // Конструктор по умолчанию оставлен для совместимости; настройки генератора как у generator(0).
+
+    public FlightBuilder() {
+        this(0, DEFAULT_BASE_TIME, 1, 4, 0, 240, 30, 360, 0.10, 0.05);
+    }
+
+    private FlightBuilder(long seed, LocalDateTime baseTime, int minSegments, int maxSegments,
+                          int minGroundMinutes, int maxGroundMinutes, int minFlightMinutes, int maxFlightMinutes,
+                          double pastDepartureRate, double invalidSegmentRate) {
+        this.seed = seed;
+        this.baseTime = baseTime;
+        this.minSegments = minSegments;
+        this.maxSegments = maxSegments;
+        this.minGroundMinutes = minGroundMinutes;
+        this.maxGroundMinutes = maxGroundMinutes;
+        this.minFlightMinutes = minFlightMinutes;
+        this.maxFlightMinutes = maxFlightMinutes;
+        this.pastDepartureRate = pastDepartureRate;
+        this.invalidSegmentRate = invalidSegmentRate;
+    }
+
+    // Генератор синтетических перелётов с настройками по умолчанию:
+    // 1-4 сегмента, 30-360 минут в воздухе, 0-240 минут на земле,
+    // 10% вылетов в прошлом, 5% перелётов с некорректным сегментом.
+
+    public static FlightBuilder generator(long seed) {
+        return new FlightBuilder().withSeed(seed);
+    }
+
+    public FlightBuilder withSeed(long seed) {
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, minGroundMinutes, maxGroundMinutes,
+                minFlightMinutes, maxFlightMinutes, pastDepartureRate, invalidSegmentRate);
+    }
+
+    // Момент "сейчас" для вылетов (по умолчанию DEFAULT_BASE_TIME), например текущая минута UTC
+    // для данных, которые фильтруются правилами с текущим временем.
+
+    public FlightBuilder withBaseTime(LocalDateTime baseTime) {
+        Objects.requireNonNull(baseTime, "Базовое время не может быть null");
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, minGroundMinutes, maxGroundMinutes,
+                minFlightMinutes, maxFlightMinutes, pastDepartureRate, invalidSegmentRate);
+    }
+
+    public FlightBuilder withSegmentCount(int min, int max) {
+        checkRange(min, max, 1, "Количество сегментов");
+        return new FlightBuilder(seed, baseTime, min, max, minGroundMinutes, maxGroundMinutes,
+                minFlightMinutes, maxFlightMinutes, pastDepartureRate, invalidSegmentRate);
+    }
+
+    public FlightBuilder withGroundTimeMinutes(int min, int max) {
+        checkRange(min, max, 0, "Время на земле");
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, min, max,
+                minFlightMinutes, maxFlightMinutes, pastDepartureRate, invalidSegmentRate);
+    }
+
+    public FlightBuilder withFlightMinutes(int min, int max) {
+        checkRange(min, max, 1, "Длительность сегмента");
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, minGroundMinutes, maxGroundMinutes,
+                min, max, pastDepartureRate, invalidSegmentRate);
+    }
+
+    public FlightBuilder withPastDepartureRate(double rate) {
+        checkRate(rate, "Доля вылетов в прошлом");
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, minGroundMinutes, maxGroundMinutes,
+                minFlightMinutes, maxFlightMinutes, rate, invalidSegmentRate);
+    }
+
+    public FlightBuilder withInvalidSegmentRate(double rate) {
+        checkRate(rate, "Доля некорректных перелётов");
+        return new FlightBuilder(seed, baseTime, minSegments, maxSegments, minGroundMinutes, maxGroundMinutes,
+                minFlightMinutes, maxFlightMinutes, pastDepartureRate, rate);
+    }
+
+    public LocalDateTime getBaseTime() {
+        return baseTime;
+    }
+
+    // Перелёт с указанным номером.
+
+    public Flight generateFlight(long index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Номер перелёта не может быть отрицательным");
+        }
+        SplittableRandom random = new SplittableRandom(mix(seed + mix(index)));
+
+        LocalDateTime departure = random.nextDouble() < pastDepartureRate
+                ? baseTime.minusMinutes(1 + random.nextInt(7 * 24 * 60))
+                : baseTime.plusMinutes(1 + random.nextInt(30 * 24 * 60));
+        int segmentCount = random.nextInt(minSegments, maxSegments + 1);
+        int invalidSegment = random.nextDouble() < invalidSegmentRate ? random.nextInt(segmentCount) : -1;
+
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            long flightMinutes = random.nextInt(minFlightMinutes, maxFlightMinutes + 1);
+            LocalDateTime arrival = s == invalidSegment
+                    ? departure.minusMinutes(flightMinutes)
+                    : departure.plusMinutes(flightMinutes);
+            segments.add(new Segment(departure, arrival));
+            departure = arrival.plusMinutes(random.nextInt(minGroundMinutes, maxGroundMinutes + 1));
+        }
+        return new Flight(segments);
+    }
+
+    // Генерирует перелёты с номерами 0..count-1 в память, параллельно.
+
+    public List<Flight> generate(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Количество перелётов не может быть отрицательным");
+        }
+        Flight[] flights = new Flight[count];
+        Arrays.parallelSetAll(flights, this::generateFlight);
+        return Arrays.asList(flights);
+    }
+
+    // Ленивый поток перелётов с номерами 0..count-1 без хранения всего набора в памяти.
+    // Поток можно сделать параллельным (parallel()), порядок перелётов при этом сохраняется.
+
+    public Stream<Flight> stream(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Количество перелётов не может быть отрицательным");
+        }
+        return LongStream.range(0, count).mapToObj(this::generateFlight);
+    }
+
+    // Записывает перелёты с номерами 0..count-1 в бинарный файл (MappedFlightFile).
+    // Перелёты генерируются параллельно порциями, в памяти хранится только текущая порция.
+
+    public void writeTo(Path path, long count) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Количество перелётов не может быть отрицательным");
+        }
+        try (FlightFileWriter writer = FlightFileWriter.create(path)) {
+            Flight[] chunk = new Flight[(int) Math.min(count, FILE_CHUNK_SIZE)];
+            for (long start = 0; start < count; start += chunk.length) {
+                int size = (int) Math.min(chunk.length, count - start);
+                long first = start;
+                Arrays.parallelSetAll(chunk, i -> i < size ? generateFlight(first + i) : null);
+                for (int i = 0; i < size; i++) {
+                    writer.write(chunk[i]);
+                }
+            }
+        }
+    }
+
+    private static void checkRange(int min, int max, int lowest, String name) {
+        if (min < lowest || max < min) {
+            throw new IllegalArgumentException(name + ": некорректный диапазон " + min + ".." + max);
+        }
+    }
+
+    private static void checkRate(double rate, String name) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException(name + " должна быть от 0 до 1: " + rate);
+        }
+    }
+
+    // Перемешивание битов (финализатор MurmurHash3): соседние номера дают независимые seed.
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
     // Создает список тестовых перелётов для демонстрации работы фильтров.
 
     public static List<Flight> createFlights() {
-        LocalDateTime threeDaysFromNow = LocalDateTime.now().plusDays(3);
+        LocalDateTime threeDaysFromNow = LocalDateTime.now(ZoneOffset.UTC).plusDays(3);
 
         return Arrays.asList(
                 // Нормальный перелёт длительностью 2 часа
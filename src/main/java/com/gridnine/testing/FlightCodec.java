@@ -0,0 +1,466 @@
+package com.gridnine.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Компактный потоковый двоичный формат списков перелётов (снимки на диск и передача между процессами).
+// В отличие от MappedFlightFile формат без потерь: сохраняются местное время, доли секунды и зоны.
+//
+// Формат:
+//   заголовок: int magic "AFLC", байт версии, varint-zigzag базовый момент (секунды от эпохи)
+//   перелёт:   varint ((количество сегментов + 1) << 3 | флаги), затем времена сегментов
+//              (вылет, прилёт, вылет, ...) как varint-zigzag разности: первый вылет - от базового
+//              момента, каждое следующее время - от предыдущего. Флаги:
+//                FLAG_MINUTES - все времена кратны минуте и записаны в минутах;
+//                FLAG_NANOS   - после каждого времени varint наносекунд;
+//                FLAG_ZONES   - после каждого сегмента ссылки на зоны вылета и прилёта:
+//                               0 - без зоны, 1..n - зона из словаря потока, n + 1 - новая зона,
+//                               за ней varint длины и идентификатор в UTF-8
+//   конец:     varint 0
+// Времена - местные дата и время в секундах от эпохи без учёта зоны (как в Segment).
+
+public final class FlightCodec {
+
+    static final int MAGIC = 0x41464C43; // "AFLC"
+    static final int VERSION = 1;
+
+    private static final int FLAG_MINUTES = 1;
+    private static final int FLAG_NANOS = 2;
+    private static final int FLAG_ZONES = 4;
+    private static final int FLAG_BITS = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private FlightCodec() {
+        // Utility class
+    }
+
+    // Кодировщик с базовым моментом - текущей минутой (разности для ближайших вылетов малы).
+
+    public static Encoder newEncoder(OutputStream out) throws IOException {
+        return newEncoder(out, LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MINUTES).toEpochSecond(ZoneOffset.UTC));
+    }
+
+    // Кодировщик с заданным базовым моментом; заголовок записывается сразу.
+
+    public static Encoder newEncoder(OutputStream out, long baseEpochSecond) throws IOException {
+        Objects.requireNonNull(out, "Поток не может быть null");
+        return new Encoder(out, baseEpochSecond);
+    }
+
+    // Декодировщик; заголовок читается и проверяется сразу.
+
+    public static Decoder newDecoder(InputStream in) throws IOException {
+        Objects.requireNonNull(in, "Поток не может быть null");
+        return new Decoder(in);
+    }
+
+    // Кодирует перелёты в массив байт.
+
+    public static byte[] encode(Iterable<Flight> flights) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Encoder encoder = newEncoder(out)) {
+            encoder.writeAll(flights);
+        } catch (IOException e) {
+            throw new IllegalStateException("Ошибка записи в память", e);
+        }
+        return out.toByteArray();
+    }
+
+    // Декодирует перелёты из массива байт.
+    // @throws IllegalArgumentException если данные повреждены
+
+    public static List<Flight> decode(byte[] data) {
+        try (Decoder decoder = newDecoder(new ByteArrayInputStream(data))) {
+            return decoder.readAll();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Повреждённые данные перелётов: " + e.getMessage(), e);
+        }
+    }
+
+    // Записывает снимок перелётов в файл. Снимок пишется во временный файл рядом и затем
+    // переименовывается, поэтому при сбое остаётся предыдущий снимок, а не обрезанный.
+
+    public static void writeSnapshot(Path path, Iterable<Flight> flights) throws IOException {
+        Objects.requireNonNull(path, "Путь к файлу не может быть null");
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Encoder encoder = newEncoder(Files.newOutputStream(temporary))) {
+            encoder.writeAll(flights);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Читает снимок перелётов из файла.
+
+    public static List<Flight> readSnapshot(Path path) throws IOException {
+        Objects.requireNonNull(path, "Путь к файлу не может быть null");
+        try (Decoder decoder = newDecoder(Files.newInputStream(path))) {
+            return decoder.readAll();
+        }
+    }
+
+    // Читает снимок, сразу заменяя перелёты каноническими экземплярами.
+
+    public static List<Flight> readSnapshot(Path path, FlightInterner interner) throws IOException {
+        Objects.requireNonNull(interner, "Пул канонических перелётов не может быть null");
+        List<Flight> flights = readSnapshot(path);
+        flights.replaceAll(interner::intern);
+        return flights;
+    }
+
+    // Потоковая запись перелётов. finish() дописывает признак конца, не закрывая поток;
+    // close() дописывает признак конца (если он ещё не записан) и закрывает поток.
+
+    public static final class Encoder implements Closeable, Flushable {
+        private final OutputStream out;
+        private final long baseEpochSecond;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final Map<ZoneId, Integer> zones = new HashMap<>();
+        private int position;
+        private long flightCount;
+        private boolean finished;
+
+        private Encoder(OutputStream out, long baseEpochSecond) throws IOException {
+            this.out = out;
+            this.baseEpochSecond = baseEpochSecond;
+            writeInt(MAGIC);
+            ensure(1);
+            buffer[position++] = (byte) VERSION;
+            writeSigned(baseEpochSecond);
+        }
+
+        public void write(Flight flight) throws IOException {
+            Objects.requireNonNull(flight, "Перелёт не может быть null");
+            if (finished) {
+                throw new IOException("Запись перелётов уже завершена");
+            }
+
+            List<Segment> segments = flight.getSegments();
+            boolean minutes = true;
+            boolean nanos = false;
+            boolean zoned = false;
+            for (Segment segment : segments) {
+                LocalDateTime departure = segment.getDepartureDate();
+                LocalDateTime arrival = segment.getArrivalDate();
+                minutes &= departure.getSecond() == 0 && arrival.getSecond() == 0;
+                nanos |= departure.getNano() != 0 || arrival.getNano() != 0;
+                zoned |= segment.getDepartureZone() != null || segment.getArrivalZone() != null;
+            }
+            minutes &= !nanos;
+            int flags = (minutes ? FLAG_MINUTES : 0) | (nanos ? FLAG_NANOS : 0) | (zoned ? FLAG_ZONES : 0);
+            writeUnsigned(((long) segments.size() + 1) << FLAG_BITS | flags);
+
+            int unit = minutes ? SECONDS_PER_MINUTE : 1;
+            // Базовый момент может быть не кратен минуте: первая разность всегда в секундах
+            long previous = baseEpochSecond;
+            boolean first = true;
+            for (Segment segment : segments) {
+                long departure = segment.getDepartureDate().toEpochSecond(ZoneOffset.UTC);
+                long arrival = segment.getArrivalDate().toEpochSecond(ZoneOffset.UTC);
+                writeSigned(first ? departure - previous : (departure - previous) / unit);
+                if (nanos) {
+                    writeUnsigned(segment.getDepartureDate().getNano());
+                }
+                writeSigned((arrival - departure) / unit);
+                if (nanos) {
+                    writeUnsigned(segment.getArrivalDate().getNano());
+                }
+                if (zoned) {
+                    writeZone(segment.getDepartureZone());
+                    writeZone(segment.getArrivalZone());
+                }
+                previous = arrival;
+                first = false;
+            }
+            flightCount++;
+        }
+
+        public void writeAll(Iterable<Flight> flights) throws IOException {
+            for (Flight flight : flights) {
+                write(flight);
+            }
+        }
+
+        public long getFlightCount() {
+            return flightCount;
+        }
+
+        // Дописывает признак конца списка и сбрасывает буфер в поток.
+
+        public void finish() throws IOException {
+            if (!finished) {
+                writeUnsigned(0);
+                finished = true;
+            }
+            flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeZone(ZoneId zone) throws IOException {
+            if (zone == null) {
+                writeUnsigned(0);
+                return;
+            }
+            Integer index = zones.get(zone);
+            if (index != null) {
+                writeUnsigned(index);
+                return;
+            }
+            zones.put(zone, zones.size() + 1);
+            writeUnsigned(zones.size());
+            byte[] id = zone.getId().getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(id.length);
+            ensure(id.length);
+            System.arraycopy(id, 0, buffer, position, id.length);
+            position += id.length;
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeSigned(long value) throws IOException {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+                if (bytes > buffer.length) {
+                    throw new IOException("Запись не помещается в буфер: " + bytes + " байт");
+                }
+            }
+        }
+    }
+
+    // Потоковое чтение перелётов.
+
+    public static final class Decoder implements Closeable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final List<ZoneId> zones = new ArrayList<>();
+        private long baseEpochSecond;
+        private int position;
+        private int limit;
+        private boolean finished;
+
+        private Decoder(InputStream in) throws IOException {
+            this.in = in;
+            readHeader();
+        }
+
+        public long getBaseEpochSecond() {
+            return baseEpochSecond;
+        }
+
+        // Читает следующий перелёт.
+        // @return перелёт или null, если список закончился
+
+        public Flight read() throws IOException {
+            if (finished) {
+                return null;
+            }
+            long head = readUnsigned();
+            if (head == 0) {
+                finished = true;
+                return null;
+            }
+            long segmentCount = (head >>> FLAG_BITS) - 1;
+            if (segmentCount < 0 || segmentCount > Integer.MAX_VALUE) {
+                throw new IOException("Повреждённая запись перелёта: " + segmentCount + " сегментов");
+            }
+            int flags = (int) (head & ((1 << FLAG_BITS) - 1));
+            int unit = (flags & FLAG_MINUTES) != 0 ? SECONDS_PER_MINUTE : 1;
+            boolean nanos = (flags & FLAG_NANOS) != 0;
+            boolean zoned = (flags & FLAG_ZONES) != 0;
+
+            List<Segment> segments = new ArrayList<>((int) Math.min(segmentCount, 64));
+            long previous = baseEpochSecond;
+            for (int s = 0; s < segmentCount; s++) {
+                long departure = previous + (s == 0 ? readSigned() : readSigned() * unit);
+                int departureNano = nanos ? readNano() : 0;
+                long arrival = departure + readSigned() * unit;
+                int arrivalNano = nanos ? readNano() : 0;
+                LocalDateTime departureDate = LocalDateTime.ofEpochSecond(departure, departureNano, ZoneOffset.UTC);
+                LocalDateTime arrivalDate = LocalDateTime.ofEpochSecond(arrival, arrivalNano, ZoneOffset.UTC);
+                segments.add(zoned
+                        ? new Segment(departureDate, arrivalDate, readZone(), readZone())
+                        : new Segment(departureDate, arrivalDate));
+                previous = arrival;
+            }
+            return new Flight(segments);
+        }
+
+        // Читает все перелёты до признака конца.
+
+        public List<Flight> readAll() throws IOException {
+            List<Flight> flights = new ArrayList<>();
+            Flight flight;
+            while ((flight = read()) != null) {
+                flights.add(flight);
+            }
+            return flights;
+        }
+
+        // Переходит к следующему пакету того же потока (оставшиеся перелёты текущего пропускаются).
+        // Декодировщик читает поток с упреждением, поэтому все пакеты потока читаются одним декодировщиком.
+        // @return false, если поток закончился
+
+        public boolean nextBatch() throws IOException {
+            while (read() != null) {
+                // Пропуск непрочитанных перелётов
+            }
+            if (position == limit && !fill()) {
+                return false;
+            }
+            readHeader();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void readHeader() throws IOException {
+            int magic = 0;
+            for (int i = 0; i < Integer.BYTES; i++) {
+                magic = magic << 8 | readByte();
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Данные не являются списком перелётов");
+            }
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия формата перелётов: " + version);
+            }
+            baseEpochSecond = readSigned();
+            zones.clear();
+            finished = false;
+        }
+
+        private ZoneId readZone() throws IOException {
+            long reference = readUnsigned();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference <= zones.size()) {
+                return zones.get((int) reference - 1);
+            }
+            if (reference != zones.size() + 1) {
+                throw new IOException("Повреждённая ссылка на временную зону: " + reference);
+            }
+            long length = readUnsigned();
+            if (length > 256) {
+                throw new IOException("Слишком длинный идентификатор временной зоны: " + length);
+            }
+            byte[] id = new byte[(int) length];
+            for (int i = 0; i < id.length; i++) {
+                id[i] = (byte) readByte();
+            }
+            ZoneId zone;
+            try {
+                zone = ZoneId.of(new String(id, StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                throw new IOException("Некорректная временная зона в данных перелётов", e);
+            }
+            zones.add(zone);
+            return zone;
+        }
+
+        private int readNano() throws IOException {
+            long nano = readUnsigned();
+            if (nano >= 1_000_000_000L) {
+                throw new IOException("Повреждённые доли секунды: " + nano);
+            }
+            return (int) nano;
+        }
+
+        private long readSigned() throws IOException {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Повреждённое число в данных перелётов");
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit && !fill()) {
+                throw new EOFException("Неожиданный конец данных перелётов");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            int read;
+            do {
+                read = in.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.gridnine.testing;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+// Именованный набор перелётов с номером версии.
+// Набор неизменяем между обновлениями: update() подменяет весь список и увеличивает версию,
+// по которой кэш результатов понимает, что сохранённые результаты устарели.
+
+public final class FlightDataset {
+
+    private final String id;
+    private volatile Snapshot snapshot;
+
+    public FlightDataset(String id, Collection<Flight> flights) {
+        this.id = Objects.requireNonNull(id, "Идентификатор набора не может быть null");
+        this.snapshot = new Snapshot(List.copyOf(flights), 1);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // Текущее согласованное состояние набора: список перелётов и его версия.
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<Flight> getFlights() {
+        return snapshot.getFlights();
+    }
+
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    // Заменяет содержимое набора и увеличивает версию.
+    // @return новая версия набора
+
+    public synchronized long update(Collection<Flight> flights) {
+        Snapshot updated = new Snapshot(List.copyOf(flights), snapshot.getVersion() + 1);
+        snapshot = updated;
+        return updated.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        Snapshot current = snapshot;
+        return "FlightDataset{id=" + id + ", version=" + current.getVersion() +
+                ", size=" + current.getFlights().size() + "}";
+    }
+
+    // Неизменяемое состояние набора на момент чтения.
+
+    public static final class Snapshot {
+        private final List<Flight> flights;
+        private final long version;
+
+        private Snapshot(List<Flight> flights, long version) {
+            this.flights = flights;
+            this.version = version;
+        }
+
+        public List<Flight> getFlights() {
+            return flights;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.gridnine.testing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+// Потоковая запись перелётов в бинарный файл формата MappedFlightFile.
+// Перелёты пишутся по одному, количество перелётов в заголовке дописывается при закрытии,
+// поэтому заранее знать размер набора не нужно.
+
+public final class FlightFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long flightCount;
+    private boolean closed;
+
+    private FlightFileWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Создает (или перезаписывает) файл и пишет заголовок.
+
+    public static FlightFileWriter create(Path path) throws IOException {
+        Objects.requireNonNull(path, "Путь к файлу не может быть null");
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        FlightFileWriter writer = new FlightFileWriter(channel);
+        writer.buffer.putInt(MappedFlightFile.MAGIC)
+                .putInt(MappedFlightFile.VERSION)
+                .putLong(0); // количество перелётов, дописывается в close()
+        return writer;
+    }
+
+    // Записывает все перелёты в файл.
+
+    public static void write(Path path, Iterable<Flight> flights) throws IOException {
+        try (FlightFileWriter writer = create(path)) {
+            for (Flight flight : flights) {
+                writer.write(flight);
+            }
+        }
+    }
+
+    // Дописывает перелёт в конец файла.
+
+    public void write(Flight flight) throws IOException {
+        Objects.requireNonNull(flight, "Перелёт не может быть null");
+        if (closed) {
+            throw new IOException("Файл уже закрыт");
+        }
+
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(flight.getSegmentCount());
+        for (Segment segment : flight.getSegments()) {
+            ensureCapacity(MappedFlightFile.SEGMENT_BYTES);
+            buffer.putLong(segment.getDepartureEpochSecond())
+                    .putLong(segment.getArrivalEpochSecond());
+        }
+        flightCount++;
+    }
+
+    public long getFlightCount() {
+        return flightCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES).putLong(0, flightCount);
+            while (count.hasRemaining()) {
+                channel.write(count, MappedFlightFile.FLIGHT_COUNT_OFFSET + count.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Время UTC в секундах от эпохи (доли секунды отбрасываются).
+
+    static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
\ No newline at end of file
@@ -1,15 +1,95 @@
 package com.gridnine.testing;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // Класс для фильтрации перелётов по различным правилам.
 // Для поддержания эффективного комбинирование правил.
 
 public class FlightFilter {
 
+    // Размер списка по умолчанию, начиная с которого включается параллельная фильтрация
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+    // Минимальный размер куска при параллельной фильтрации
+    private static final int MIN_CHUNK_SIZE = 1_024;
+
+    // Количество кусков на один поток пула (для балансировки нагрузки)
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Размер порции асинхронной фильтрации, между порциями проверяются срок и отмена
+    private static final int ASYNC_PORTION_SIZE = 1_024;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    // Инструментирование (null - без инструментирования)
+    private final FilterInstrumentation instrumentation;
+
+    // Создает последовательный фильтр.
+
+    public FlightFilter() {
+        this.pool = null;
+        this.parallelThreshold = Integer.MAX_VALUE;
+        this.instrumentation = null;
+    }
+
+    // Создает фильтр, который обрабатывает большие списки параллельно в указанном пуле.
+
+    public FlightFilter(ForkJoinPool pool) {
+        this(pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    // Создает фильтр, который обрабатывает списки размером от parallelThreshold параллельно.
+    // Списки меньшего размера фильтруются последовательно.
+
+    public FlightFilter(ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Порог параллельной фильтрации должен быть положительным");
+        }
+        this.pool = Objects.requireNonNull(pool, "Пул потоков не может быть null");
+        this.parallelThreshold = parallelThreshold;
+        this.instrumentation = null;
+    }
+
+    private FlightFilter(ForkJoinPool pool, int parallelThreshold, FilterInstrumentation instrumentation) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.instrumentation = instrumentation;
+    }
+
+    // Создает параллельный фильтр на общем пуле ForkJoinPool.commonPool().
+
+    public static FlightFilter parallel() {
+        return new FlightFilter(ForkJoinPool.commonPool());
+    }
+
+    // Создает копию фильтра с теми же настройками параллельности, которая учитывает
+    // вызовы filter(List, ...) и проверки правил в указанном инструментировании.
+    // Пока инструментирование выключено, фильтр работает без дополнительных затрат.
+
+    public FlightFilter instrumented(FilterInstrumentation instrumentation) {
+        Objects.requireNonNull(instrumentation, "Инструментирование не может быть null");
+        return new FlightFilter(pool, parallelThreshold, instrumentation);
+    }
+
     // Фильтрует список перелётов согласно заданному правилу.
+    // Если фильтр создан с пулом потоков и список достаточно большой, список делится на куски,
+    // которые проверяются параллельно; порядок перелётов в результате совпадает с исходным.
+    // Правило должно быть потокобезопасным (встроенные правила не имеют изменяемого состояния).
     // @param flights список перелётов для фильтрации
     // @param rule правило фильтрации
     // @return отфильтрованный список перелётов
@@ -18,11 +98,282 @@ public class FlightFilter {
         // Проверка на Null и Невалидные данные, чтобы избежать NullPointerException
         Objects.requireNonNull(flights, "Список перелётов не может быть null");
         Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        FilterInstrumentation current = instrumentation;
+        if (current == null || !current.isEnabled()) {
+            return filterUninstrumented(flights, rule);
+        }
+
+        FilterEvents.FilterCallEvent event = current.beginFilterCall();
+        long start = System.nanoTime();
+        List<Flight> result = filterUninstrumented(flights, current.instrument(rule));
+        current.endFilterCall(event, rule, flights.size(), result.size(), System.nanoTime() - start);
+        return result;
+    }
+
+    private List<Flight> filterUninstrumented(List<Flight> flights, FilterRule rule) {
+        if (pool != null && flights.size() >= parallelThreshold) {
+            return filterParallel(flights, rule);
+        }
+
         return flights.stream()
                 .filter(rule::test)
                 .collect(Collectors.toList());
     }
 
+    // Параллельная фильтрация: каждый кусок фильтруется в отдельной задаче,
+    // затем результаты склеиваются в порядке кусков.
+
+    private List<Flight> filterParallel(List<Flight> flights, FilterRule rule) {
+        // Деление на куски требует быстрого доступа по индексу
+        List<Flight> source = flights instanceof RandomAccess ? flights : new ArrayList<>(flights);
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                source.size() / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+        int chunkCount = (source.size() + chunkSize - 1) / chunkSize;
+
+        List<List<Flight>> chunkResults = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunkResults.add(null);
+        }
+        pool.invoke(new FilterChunksTask(source, rule, chunkSize, chunkResults, 0, chunkCount));
+
+        int total = 0;
+        for (List<Flight> chunk : chunkResults) {
+            total += chunk.size();
+        }
+        List<Flight> result = new ArrayList<>(total);
+        for (List<Flight> chunk : chunkResults) {
+            result.addAll(chunk);
+        }
+        return result;
+    }
+
+    // Возвращает страницу результата фильтрации, начиная с места, на котором остановилась
+    // предыдущая страница. Просмотр списка прекращается, как только страница заполнена,
+    // поэтому время получения страницы зависит от её размера, а не от размера списка.
+    // Курсор указывает позицию в списке, поэтому список между вызовами не должен меняться
+    // (добавление перелётов в конец допускается).
+    // @param flights список перелётов
+    // @param rule правило фильтрации
+    // @param limit наибольшее количество перелётов на странице
+    // @param cursor курсор из предыдущей страницы или null для первой страницы
+    // @return страница с курсором продолжения
+
+    public FilterPage filterPage(List<Flight> flights, FilterRule rule, int limit, String cursor) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        return scanPage(flights, rule, FilterPage.decodeCursor(cursor, flights.size()), 0, limit);
+    }
+
+    // Возвращает страницу результата фильтрации, пропустив первые offset подходящих перелётов.
+    // Пропущенные перелёты всё равно проверяются; для последовательного обхода страниц
+    // дешевле использовать курсор из возвращённой страницы. Имя отличается от filterPage, у которого
+    // третий аргумент - размер страницы, чтобы вызовы с двумя числами нельзя было перепутать.
+    // @param flights список перелётов
+    // @param rule правило фильтрации
+    // @param offset количество подходящих перелётов, которые нужно пропустить
+    // @param limit наибольшее количество перелётов на странице
+    // @return страница с курсором продолжения
+
+    public FilterPage filterPageAtOffset(List<Flight> flights, FilterRule rule, int offset, int limit) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (offset < 0) {
+            throw new IllegalArgumentException("Смещение не может быть отрицательным");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        return scanPage(flights, rule, 0, offset, limit);
+    }
+
+    private static FilterPage scanPage(List<Flight> flights, FilterRule rule, int start, int skip, int limit) {
+        List<Flight> page = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        ListIterator<Flight> iterator = flights.listIterator(start);
+        while (iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if (!rule.test(flight)) {
+                continue;
+            }
+            if (skipped < skip) {
+                skipped++;
+                continue;
+            }
+            page.add(flight);
+            if (page.size() == limit) {
+                int position = iterator.nextIndex();
+                return new FilterPage(page, position < flights.size() ? FilterPage.encodeCursor(position) : null);
+            }
+        }
+        return new FilterPage(page, null);
+    }
+
+    // Возвращает K лучших перелётов, удовлетворяющих правилу, без сортировки полного результата.
+    // Память - O(K) на каждый кусок; при параллельной фильтрации накопители кусков объединяются.
+    // При равных значениях критерия раньше идёт перелёт, который раньше встречается в списке.
+    // @param flights список перелётов
+    // @param rule правило фильтрации
+    // @param ranking критерий ранжирования (меньше - лучше)
+    // @param k количество перелётов в результате
+    // @return не больше k перелётов от лучшего к худшему
+
+    public List<Flight> filterTopK(List<Flight> flights, FilterRule rule, FlightRanking ranking, int k) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        Objects.requireNonNull(ranking, "Критерий ранжирования не может быть null");
+        if (k < 0) {
+            throw new IllegalArgumentException("Количество перелётов не может быть отрицательным");
+        }
+
+        List<Flight> source = flights instanceof RandomAccess ? flights : new ArrayList<>(flights);
+        if (pool != null && source.size() >= parallelThreshold) {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    source.size() / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+            return pool.invoke(new TopKTask(source, rule, ranking, k, chunkSize, 0, source.size())).toList();
+        }
+
+        TopKCollector collector = new TopKCollector(ranking, k);
+        collectTopK(source, rule, 0, source.size(), collector);
+        return collector.toList();
+    }
+
+    private static void collectTopK(List<Flight> flights, FilterRule rule, int from, int to,
+                                    TopKCollector collector) {
+        for (int i = from; i < to; i++) {
+            Flight flight = flights.get(i);
+            if (rule.test(flight)) {
+                collector.offer(flight, i);
+            }
+        }
+    }
+
+    // Фильтрует список перелётов сразу по нескольким правилам за один проход.
+    // Общие части правил (условия с равными ключами RuleKey, например отсечение по вылету
+    // во всех правилах FilterRules) проверяются для каждого перелёта один раз, а их результат
+    // используется всеми правилами, поэтому каждое следующее правило стоит лишь своих отличий.
+    // Ключ отсечения по вылету содержит точное "сейчас", поэтому общим оно будет, только если все
+    // правила построены с одним явным currentTime (например, FilterRules.createStandardFilter(now)).
+    // @param flights список перелётов
+    // @param rules правила фильтрации
+    // @return результаты в порядке правил, перелёты каждого результата - в порядке исходного списка
+
+    public List<List<Flight>> filterAll(List<Flight> flights, List<FilterRule> rules) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(rules, "Список правил не может быть null");
+
+        SharedRulePlan plan = SharedRulePlan.of(rules);
+        List<Flight> source = flights instanceof RandomAccess ? flights : new ArrayList<>(flights);
+        if (pool != null && source.size() >= parallelThreshold) {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    source.size() / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+            return pool.invoke(new FilterAllTask(source, plan, chunkSize, 0, source.size()));
+        }
+        return filterAll(source, plan, 0, source.size());
+    }
+
+    private static List<List<Flight>> filterAll(List<Flight> flights, SharedRulePlan plan, int from, int to) {
+        List<List<Flight>> results = new ArrayList<>(plan.getQueryCount());
+        for (int q = 0; q < plan.getQueryCount(); q++) {
+            results.add(new ArrayList<>());
+        }
+        SharedRulePlan.Memo memo = plan.newMemo();
+        for (int i = from; i < to; i++) {
+            Flight flight = flights.get(i);
+            memo.next();
+            for (int q = 0; q < plan.getQueryCount(); q++) {
+                if (plan.test(q, flight, memo)) {
+                    results.get(q).add(flight);
+                }
+            }
+        }
+        return results;
+    }
+
+    // Асинхронно фильтрует список перелётов без ограничения по времени.
+    // Фильтрацию можно прервать, отменив возвращённый future.
+
+    public CompletableFuture<FilterResult> filterAsync(List<Flight> flights, FilterRule rule) {
+        return filterAsync(flights, rule, null);
+    }
+
+    // Асинхронно фильтрует список перелётов со сроком timeout.
+    // Список просматривается порциями (при параллельном фильтре каждая порция проверяется параллельно),
+    // между порциями проверяются срок и отмена. По истечении срока future завершается перелётами,
+    // найденными в уже просмотренной части списка, с признаком FilterResult.isTruncated().
+    // После cancel() просмотр останавливается на ближайшей границе порции.
+    // Задача выполняется в пуле фильтра (ForkJoinPool.commonPool() для последовательного фильтра);
+    // список не должен меняться до завершения future.
+    // @param flights список перелётов
+    // @param rule правило фильтрации
+    // @param timeout наибольшее время фильтрации (null - без ограничения)
+    // @return future результата фильтрации
+
+    public CompletableFuture<FilterResult> filterAsync(List<Flight> flights, FilterRule rule, Duration timeout) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (timeout != null && timeout.isNegative()) {
+            throw new IllegalArgumentException("Время фильтрации не может быть отрицательным");
+        }
+
+        long start = System.nanoTime();
+        long deadline = timeout == null ? Long.MAX_VALUE : start + saturatedNanos(timeout);
+        List<Flight> source = flights instanceof RandomAccess ? flights : new ArrayList<>(flights);
+        CompletableFuture<FilterResult> future = new CompletableFuture<>();
+        (pool != null ? pool : ForkJoinPool.commonPool()).execute(() -> {
+            try {
+                scanAsync(source, rule, start, deadline, future);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private void scanAsync(List<Flight> flights, FilterRule rule, long start, long deadline,
+                           CompletableFuture<FilterResult> future) {
+        FilterInstrumentation current = instrumentation;
+        boolean instrumented = current != null && current.isEnabled();
+        FilterEvents.FilterCallEvent event = instrumented ? current.beginFilterCall() : null;
+        FilterRule effectiveRule = instrumented ? current.instrument(rule) : rule;
+
+        // Порция не меньше порога параллельности, иначе параллельный фильтр проверял бы её последовательно
+        int portion = pool != null ? Math.max(ASYNC_PORTION_SIZE, parallelThreshold) : ASYNC_PORTION_SIZE;
+        List<Flight> matches = new ArrayList<>();
+        int scanned = 0;
+        boolean truncated = false;
+        while (scanned < flights.size()) {
+            if (future.isDone()) {
+                // отменён
+                return;
+            }
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+                truncated = true;
+                break;
+            }
+            int end = (int) Math.min(flights.size(), (long) scanned + portion);
+            matches.addAll(filterUninstrumented(flights.subList(scanned, end), effectiveRule));
+            scanned = end;
+        }
+
+        if (instrumented) {
+            current.endFilterCall(event, rule, scanned, matches.size(), System.nanoTime() - start);
+        }
+        future.complete(new FilterResult(matches, truncated, scanned));
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+
     // Фильтрует список перелётов по нескольким правилам одновременно.
     // Эффективно комбинирует правила перед фильтрацией.
     // @param flights список перелётов для фильтрации
@@ -34,16 +385,96 @@ public class FlightFilter {
             return flights;
         }
 
-        // Комбинируем все правила в одно
-        FilterRule combinedRule = rules[0];
-        for (int i = 1; i < rules.length; i++) {
-            combinedRule = combinedRule.and(rules[i]);
-        }
+        // Комбинируем все правила в одно дерево AND
+        FilterRule combinedRule = rules.length == 1 ? rules[0] : FilterRules.combineRules(rules);
 
         // Однократная фильтрация
         return filter(flights, combinedRule);
     }
 
+    // Фильтрует колоночный пакет перелётов.
+    // Встроенные правила проверяются пакетно, объекты Flight создаются только для прошедших перелётов.
+    // @param batch пакет перелётов
+    // @param rule правило фильтрации
+    // @return отфильтрованный список перелётов
+
+    public List<Flight> filter(FlightBatch batch, FilterRule rule) {
+        Objects.requireNonNull(batch, "Пакет перелётов не может быть null");
+        return batch.filter(rule);
+    }
+
+    // Фильтрует неизменяемый набор перелётов через битовые множества правил.
+    // Множества листовых правил сохраняются в наборе и переиспользуются следующими запросами.
+    // @param inventory набор перелётов
+    // @param rule правило фильтрации
+    // @return отфильтрованный список перелётов
+
+    public List<Flight> filter(FlightInventory inventory, FilterRule rule) {
+        Objects.requireNonNull(inventory, "Набор перелётов не может быть null");
+        return inventory.filter(rule);
+    }
+
+    // Фильтрует перелёты индекса.
+    // Если правило содержит отсечение по времени вылета (само или как условие AND),
+    // остальные условия проверяются только на хвосте индекса, найденном бинарным поиском.
+    // Для одного правила DepartureBeforeCurrentTimeFilter результат получается за O(log n).
+    // @param index индекс перелётов
+    // @param rule правило фильтрации
+    // @return отфильтрованные перелёты в порядке самого раннего вылета
+
+    public List<Flight> filter(FlightIndex index, FilterRule rule) {
+        Objects.requireNonNull(index, "Индекс перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        LocalDateTime cutoff = FlightIndex.departureCutoff(rule);
+        if (cutoff == null) {
+            return filter(index.getFlights(), rule);
+        }
+
+        List<Flight> candidates = index.departingNotBefore(cutoff);
+        if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+            return candidates;
+        }
+        return filter(candidates, rule);
+    }
+
+    // Лениво фильтрует поток перелётов из итератора.
+    // Перелёты читаются из источника по мере обхода результата, в памяти хранится только
+    // следующий подходящий перелёт, поэтому источник может быть сколь угодно большим.
+    // @param flights итератор перелётов
+    // @param rule правило фильтрации
+    // @return итератор по перелётам, удовлетворяющим правилу
+
+    public Iterator<Flight> filter(Iterator<Flight> flights, FilterRule rule) {
+        Objects.requireNonNull(flights, "Итератор перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        return new FilteringIterator(flights, rule);
+    }
+
+    // Лениво фильтрует Stream перелётов (промежуточная операция, результат не собирается в список).
+    // @param flights поток перелётов
+    // @param rule правило фильтрации
+    // @return поток перелётов, удовлетворяющих правилу
+
+    public Stream<Flight> filter(Stream<Flight> flights, FilterRule rule) {
+        Objects.requireNonNull(flights, "Поток перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        return flights.filter(rule);
+    }
+
+    // Фильтрует издателя Flow с сохранением обратного давления:
+    // у источника запрашивается столько перелётов, сколько запросил подписчик,
+    // плюс по одному взамен каждого отклонённого.
+    // @param flights издатель перелётов
+    // @param rule правило фильтрации
+    // @return издатель перелётов, удовлетворяющих правилу
+
+    public Flow.Publisher<Flight> filter(Flow.Publisher<Flight> flights, FilterRule rule) {
+        Objects.requireNonNull(flights, "Издатель перелётов не может быть null");
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        return new FilteringPublisher(flights, rule);
+    }
+
     // Фильтрует список перелётов с комбинированным правилом.
     // @param flights список перелётов для фильтрации
     // @param combinedRule комбинированное правило
@@ -52,4 +483,163 @@ public class FlightFilter {
     public List<Flight> filterWithCombinedRule(List<Flight> flights, FilterRule combinedRule) {
         return filter(flights, combinedRule);
     }
+
+    // Задача fork/join: делит диапазон кусков пополам, пока не останется один кусок.
+    // Результат куска записывается в свою ячейку chunkResults, поэтому синхронизация не нужна.
+
+    private static final class FilterChunksTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Flight> flights;
+        private final FilterRule rule;
+        private final int chunkSize;
+        private final List<List<Flight>> chunkResults;
+        private final int fromChunk;
+        private final int toChunk;
+
+        FilterChunksTask(List<Flight> flights, FilterRule rule, int chunkSize,
+                         List<List<Flight>> chunkResults, int fromChunk, int toChunk) {
+            this.flights = flights;
+            this.rule = rule;
+            this.chunkSize = chunkSize;
+            this.chunkResults = chunkResults;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new FilterChunksTask(flights, rule, chunkSize, chunkResults, fromChunk, middle),
+                        new FilterChunksTask(flights, rule, chunkSize, chunkResults, middle, toChunk));
+                return;
+            }
+
+            int from = fromChunk * chunkSize;
+            int to = Math.min(from + chunkSize, flights.size());
+            List<Flight> accepted = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Flight flight = flights.get(i);
+                if (rule.test(flight)) {
+                    accepted.add(flight);
+                }
+            }
+            chunkResults.set(fromChunk, accepted);
+        }
+    }
+
+    // Задача fork/join для выбора K лучших: диапазон делится пополам до размера куска,
+    // накопители половин объединяются.
+
+    private static final class TopKTask extends RecursiveTask<TopKCollector> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Flight> flights;
+        private final FilterRule rule;
+        private final FlightRanking ranking;
+        private final int k;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        TopKTask(List<Flight> flights, FilterRule rule, FlightRanking ranking, int k,
+                 int chunkSize, int from, int to) {
+            this.flights = flights;
+            this.rule = rule;
+            this.ranking = ranking;
+            this.k = k;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                TopKTask left = new TopKTask(flights, rule, ranking, k, chunkSize, from, middle);
+                TopKTask right = new TopKTask(flights, rule, ranking, k, chunkSize, middle, to);
+                left.fork();
+                TopKCollector collector = right.compute();
+                collector.merge(left.join());
+                return collector;
+            }
+
+            TopKCollector collector = new TopKCollector(ranking, k);
+            collectTopK(flights, rule, from, to, collector);
+            return collector;
+        }
+    }
+
+    // Параллельная совместная фильтрация: куски делятся пополам, результаты правил склеиваются по порядку.
+
+    private static final class FilterAllTask extends RecursiveTask<List<List<Flight>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Flight> flights;
+        private final SharedRulePlan plan;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        FilterAllTask(List<Flight> flights, SharedRulePlan plan, int chunkSize, int from, int to) {
+            this.flights = flights;
+            this.plan = plan;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<List<Flight>> compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                FilterAllTask left = new FilterAllTask(flights, plan, chunkSize, from, middle);
+                FilterAllTask right = new FilterAllTask(flights, plan, chunkSize, middle, to);
+                left.fork();
+                List<List<Flight>> rightResults = right.compute();
+                List<List<Flight>> results = left.join();
+                for (int q = 0; q < results.size(); q++) {
+                    results.get(q).addAll(rightResults.get(q));
+                }
+                return results;
+            }
+            return filterAll(flights, plan, from, to);
+        }
+    }
+
+    // Итератор, который заранее находит следующий подходящий перелёт.
+
+    private static final class FilteringIterator implements Iterator<Flight> {
+        private final Iterator<Flight> source;
+        private final FilterRule rule;
+        private Flight next;
+
+        FilteringIterator(Iterator<Flight> source, FilterRule rule) {
+            this.source = source;
+            this.rule = rule;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && source.hasNext()) {
+                Flight candidate = source.next();
+                if (rule.test(candidate)) {
+                    next = candidate;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Flight next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Flight result = next;
+            next = null;
+            return result;
+        }
+    }
 }
\ No newline at end of file
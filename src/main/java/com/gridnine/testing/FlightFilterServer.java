@@ -0,0 +1,291 @@
+package com.gridnine.testing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Встроенный HTTP-сервис фильтрации перелётов на com.sun.net.httpserver.
+// Запросы (правило задается параметром rule в записи RuleSpec, перелёты - в формате FlightText):
+//   POST /filter?rule=<правило>[&partial=true] - тело запроса: перелёты по одному на строку
+//   GET  /datasets/<id>?rule=<правило>[&partial=true] - фильтрация зарегистрированного набора (с кэшем
+//                                            результатов; "сейчас" правил округляется вверх до минуты)
+// Ответ - подходящие перелёты по одному на строку, их количество - в заголовке X-Match-Count.
+// Каждый запрос обрабатывается в виртуальном потоке, если они есть (JDK 21+), иначе - в ограниченном
+// пуле потоков. Одновременно обрабатывается не больше maxConcurrentRequests запросов, остальные
+// сразу получают 503. Срок requestTimeout проверяется во время просмотра перелётов: запрос, не
+// уложившийся в него, получает 504, а с partial=true - перелёты, найденные до истечения срока,
+// и заголовок X-Truncated: true.
+
+public final class FlightFilterServer implements AutoCloseable {
+
+    // Параметры по умолчанию
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    // Интервал округления "сейчас" для кэша результатов наборов: запросы внутри одной минуты
+    // используют один результат
+    private static final Duration CACHE_TIME_BUCKET = Duration.ofMinutes(1);
+
+    // Время ожидания завершения активных запросов при остановке
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    // Признак запроса, не принятого пулом: обработчик сразу отвечает 503
+    private static final ThreadLocal<Boolean> REJECTED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final long requestTimeoutNanos;
+    private final FlightFilter filter;
+    private final FilterResultCache cache;
+    private final Map<String, FlightDataset> datasets = new ConcurrentHashMap<>();
+
+    // Создает сервис на указанном адресе с параметрами по умолчанию (порт 0 - любой свободный).
+
+    public FlightFilterServer(InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    // Создает сервис.
+    // @param address адрес для приёма соединений
+    // @param maxConcurrentRequests наибольшее количество одновременно обрабатываемых запросов
+    // @param requestTimeout наибольшее время обработки одного запроса
+
+    public FlightFilterServer(InetSocketAddress address, int maxConcurrentRequests, Duration requestTimeout)
+            throws IOException {
+        Objects.requireNonNull(address, "Адрес не может быть null");
+        Objects.requireNonNull(requestTimeout, "Время обработки запроса не может быть null");
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Количество одновременных запросов должно быть положительным");
+        }
+        if (requestTimeout.isNegative()) {
+            throw new IllegalArgumentException("Время обработки запроса не может быть отрицательным");
+        }
+
+        this.admission = new Semaphore(maxConcurrentRequests);
+        this.requestTimeoutNanos = requestTimeout.toNanos();
+        this.filter = new FlightFilter();
+        this.cache = new FilterResultCache(filter, 1_024, 10_000_000, CACHE_TIME_BUCKET);
+        this.executor = createExecutor(maxConcurrentRequests);
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/filter", this::handleFilter);
+        this.server.createContext("/datasets/", this::handleDataset);
+    }
+
+    // Запускает приём запросов.
+
+    public FlightFilterServer start() {
+        server.start();
+        return this;
+    }
+
+    // Фактический порт сервиса.
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Регистрирует набор перелётов под его идентификатором (заменяет набор с тем же идентификатором).
+
+    public void registerDataset(FlightDataset dataset) {
+        Objects.requireNonNull(dataset, "Набор перелётов не может быть null");
+        FlightDataset previous = datasets.put(dataset.getId(), dataset);
+        if (previous != null && previous != dataset) {
+            cache.invalidate(previous);
+        }
+    }
+
+    public void removeDataset(String id) {
+        FlightDataset removed = datasets.remove(id);
+        if (removed != null) {
+            cache.invalidate(removed);
+        }
+    }
+
+    // Останавливает сервис и пул обработки запросов.
+
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdownNow();
+    }
+
+    // Виртуальные потоки (JDK 21+) или ограниченный пул платформенных потоков.
+    // В пуле на один поток больше, чем разрешено запросов, чтобы отказ 503 не ждал в очереди.
+    // При заполненной очереди поток приёма соединений только отвечает на запрос 503, не фильтруя его.
+
+    private static ExecutorService createExecutor(int maxConcurrentRequests) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = maxConcurrentRequests + 1;
+            return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(threads * 4), FlightFilterServer::rejectRequest);
+        }
+    }
+
+    // Запрос, не поместившийся в очередь пула, выполняется с признаком отказа и получает 503.
+
+    private static void rejectRequest(Runnable task, ThreadPoolExecutor pool) {
+        REJECTED.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            REJECTED.set(Boolean.FALSE);
+        }
+    }
+
+    // Занимает место для запроса; false, если запрос отклонён пулом или лимит исчерпан.
+
+    private boolean tryAdmit() {
+        return !REJECTED.get() && admission.tryAcquire();
+    }
+
+    private void handleFilter(HttpExchange exchange) throws IOException {
+        long deadline = System.nanoTime() + requestTimeoutNanos;
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendText(exchange, 405, "Ожидается метод POST\n");
+            return;
+        }
+        if (!tryAdmit()) {
+            sendText(exchange, 503, "Сервис перегружен\n");
+            return;
+        }
+        try {
+            FilterRule rule = RuleSpec.parse(requireRule(exchange.getRequestURI()));
+            List<Flight> flights;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                flights = FlightText.readFlights(reader);
+            }
+            FilterResult result = filter.filterAsync(flights, rule, remaining(deadline)).join();
+            sendResult(exchange, result);
+        } catch (RuntimeException e) {
+            sendFailure(exchange, e);
+        } finally {
+            admission.release();
+        }
+    }
+
+    private void handleDataset(HttpExchange exchange) throws IOException {
+        long deadline = System.nanoTime() + requestTimeoutNanos;
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendText(exchange, 405, "Ожидается метод GET\n");
+            return;
+        }
+        if (!tryAdmit()) {
+            sendText(exchange, 503, "Сервис перегружен\n");
+            return;
+        }
+        try {
+            String id = exchange.getRequestURI().getPath().substring("/datasets/".length());
+            FlightDataset dataset = datasets.get(id);
+            if (dataset == null) {
+                sendText(exchange, 404, "Набор перелётов не найден: " + id + "\n");
+                return;
+            }
+            FilterRule rule = RuleSpec.parse(requireRule(exchange.getRequestURI()));
+            FilterResult result = cache.filter(dataset, rule, remaining(deadline));
+            sendResult(exchange, result);
+        } catch (RuntimeException e) {
+            sendFailure(exchange, e);
+        } finally {
+            admission.release();
+        }
+    }
+
+    // Ошибка запроса: неверные параметры - 400, остальное - 500. Ошибки асинхронной фильтрации
+    // приходят обёрнутыми в CompletionException, поэтому сначала извлекается причина.
+
+    private static void sendFailure(HttpExchange exchange, RuntimeException e) throws IOException {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IllegalArgumentException) {
+            sendText(exchange, 400, cause.getMessage() + "\n");
+        } else {
+            sendText(exchange, 500, "Внутренняя ошибка сервиса\n");
+        }
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    // Усечённый по сроку результат: 504 или, с partial=true, найденные перелёты и X-Truncated.
+
+    private static void sendResult(HttpExchange exchange, FilterResult result) throws IOException {
+        if (result.isTruncated() && !isPartialAllowed(exchange.getRequestURI())) {
+            sendText(exchange, 504, "Превышено время обработки запроса\n");
+            return;
+        }
+        if (result.isTruncated()) {
+            exchange.getResponseHeaders().set("X-Truncated", "true");
+        }
+        sendFlights(exchange, result.getFlights());
+    }
+
+    // Параметр partial=true: по истечении срока вернуть найденные перелёты вместо 504.
+
+    private static boolean isPartialAllowed(URI uri) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.equals("partial=true")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String requireRule(URI uri) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("rule=")) {
+                    return URLDecoder.decode(parameter.substring("rule=".length()), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Не указан параметр rule");
+    }
+
+    private static void sendFlights(HttpExchange exchange, List<Flight> flights) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().set("X-Match-Count", Integer.toString(flights.size()));
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            FlightText.writeFlights(flights, writer);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.gridnine.testing;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+// Индекс перелётов, отсортированных по самому раннему времени вылета.
+// Отсечение по времени вылета (DepartureBeforeCurrentTimeFilter) превращается в бинарный поиск:
+// перелёты, прошедшие отсечение, образуют "хвост" отсортированного списка.
+// Индекс неизменяем, его можно строить один раз и использовать многократно с разным "сейчас".
+
+public final class FlightIndex {
+
+    // Сортировка по моменту вылета в UTC. Перелёты без сегментов (Long.MAX_VALUE)
+    // проходят любое отсечение, поэтому стоят в конце
+    private static final Comparator<Flight> BY_EARLIEST_DEPARTURE = Comparator
+            .comparingLong(Flight::getEarliestDepartureEpochSecond)
+            .thenComparingInt(Flight::getEarliestDepartureNano);
+
+    private final List<Flight> flights;
+    // Самые ранние моменты вылета (секунды от эпохи UTC и наносекунды) в порядке flights,
+    // только для перелётов с сегментами
+    private final long[] departureSeconds;
+    private final int[] departureNanos;
+
+    private FlightIndex(List<Flight> flights) {
+        this.flights = flights;
+
+        int withSegments = 0;
+        while (withSegments < flights.size() && flights.get(withSegments).getEarliestDeparture() != null) {
+            withSegments++;
+        }
+        this.departureSeconds = new long[withSegments];
+        this.departureNanos = new int[withSegments];
+        for (int i = 0; i < withSegments; i++) {
+            departureSeconds[i] = flights.get(i).getEarliestDepartureEpochSecond();
+            departureNanos[i] = flights.get(i).getEarliestDepartureNano();
+        }
+    }
+
+    // Строит индекс по коллекции перелётов. Перелёты с одинаковым временем вылета
+    // сохраняют исходный порядок.
+
+    public static FlightIndex of(Collection<Flight> flights) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+
+        List<Flight> sorted = new ArrayList<>(flights);
+        sorted.sort(BY_EARLIEST_DEPARTURE);
+        return new FlightIndex(Collections.unmodifiableList(sorted));
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    // Все перелёты индекса в порядке самого раннего вылета.
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    // Перелёты, у которых ни один сегмент не вылетает раньше cutoff, за O(log n).
+    // @param cutoff момент отсечения (время UTC)
+    // @return неизменяемое представление хвоста индекса (без копирования)
+
+    public List<Flight> departingNotBefore(LocalDateTime cutoff) {
+        Objects.requireNonNull(cutoff, "Время отсечения не может быть null");
+        return flights.subList(firstNotBefore(cutoff), flights.size());
+    }
+
+    // Бинарный поиск первого перелёта с вылетом не раньше cutoff.
+
+    private int firstNotBefore(LocalDateTime cutoff) {
+        long cutoffSecond = cutoff.toEpochSecond(ZoneOffset.UTC);
+        int cutoffNano = cutoff.getNano();
+        int low = 0;
+        int high = departureSeconds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Segment.isBefore(departureSeconds[middle], departureNanos[middle], cutoffSecond, cutoffNano)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Находит отсечение по времени вылета, которое обязательно для правила:
+    // само правило DepartureBeforeCurrentTimeFilter или одно из условий AND.
+    // Если таких отсечений несколько, возвращается самое позднее (самое строгое).
+    // @return время отсечения или null, если правило его не содержит
+
+    static LocalDateTime departureCutoff(FilterRule rule) {
+        if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+            return ((DepartureBeforeCurrentTimeFilter) rule).getCurrentTime();
+        }
+        if (rule instanceof CompositeRule && ((CompositeRule) rule).getOperator() == CompositeRule.Operator.AND) {
+            LocalDateTime cutoff = null;
+            for (FilterRule child : ((CompositeRule) rule).getChildren()) {
+                LocalDateTime childCutoff = departureCutoff(child);
+                if (childCutoff != null && (cutoff == null || childCutoff.isAfter(cutoff))) {
+                    cutoff = childCutoff;
+                }
+            }
+            return cutoff;
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Канонизация сегментов и перелётов для больших наборов данных.
+// Одинаковые сегменты разных маршрутов и одинаковые перелёты после intern() - один и тот же объект,
+// поэтому набор занимает меньше памяти, а сравнение канонических объектов сводится к сравнению ссылок
+// (equals в Segment и Flight сначала проверяет ссылку, затем сохранённый хеш-код).
+// Пулы держат объекты через слабые ссылки и не мешают сборщику мусора. Класс потокобезопасен.
+
+public final class FlightInterner {
+
+    private final WeakInterner<Segment> segments = new WeakInterner<>();
+    private final WeakInterner<Flight> flights = new WeakInterner<>();
+
+    // Возвращает канонический сегмент, равный указанному.
+
+    public Segment intern(Segment segment) {
+        Objects.requireNonNull(segment, "Сегмент не может быть null");
+        return segments.intern(segment);
+    }
+
+    // Возвращает канонический перелёт, равный указанному. Сегменты канонического перелёта
+    // тоже канонические; если у переданного перелёта они другие, создается новый перелёт.
+
+    public Flight intern(Flight flight) {
+        Objects.requireNonNull(flight, "Перелёт не может быть null");
+
+        List<Segment> source = flight.getSegments();
+        List<Segment> canonical = new ArrayList<>(source.size());
+        boolean changed = false;
+        for (Segment segment : source) {
+            Segment interned = segments.intern(segment);
+            changed |= interned != segment;
+            canonical.add(interned);
+        }
+        return flights.intern(changed ? new Flight(canonical) : flight);
+    }
+
+    // Канонизирует список перелётов.
+
+    public List<Flight> internAll(List<Flight> flights) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        List<Flight> result = new ArrayList<>(flights.size());
+        for (Flight flight : flights) {
+            result.add(intern(flight));
+        }
+        return result;
+    }
+
+    // Количество сегментов в пуле.
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Количество перелётов в пуле.
+
+    public int getFlightCount() {
+        return flights.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Неизменяемый набор перелётов, на котором правила вычисляются как битовые множества номеров.
+// Каждое листовое правило с ключом (getKey() != null) вычисляется один раз по колоночному
+// представлению FlightBatch и сохраняется как FlightBitmap. Деревья правил, построенные через
+// and/or/negate/combineRules, затем сводятся к операциям над этими множествами, поэтому
+// новая комбинация уже вычисленных правил не проверяет ни одного перелёта.
+// Листовые правила без ключа (лямбды) не кэшируются; внутри AND они проверяются только
+// на перелётах, прошедших остальные условия. Встроенные правила вычисляются по FlightBatch
+// с точным сравнением времени.
+// Правила с текущим временем (DepartureBeforeCurrentTimeFilter) приходят с новым "сейчас" почти
+// в каждом запросе, поэтому их множества хранятся отдельно: не больше MAX_TIME_DEPENDENT_RULES,
+// давно не использованные вытесняются (LRU).
+
+public final class FlightInventory {
+
+    // Наибольшее количество сохранённых множеств правил с текущим временем
+    static final int MAX_TIME_DEPENDENT_RULES = 16;
+
+    private final List<Flight> flights;
+    private final FlightBatch batch;
+    private final FlightBitmap all;
+    private final Map<RuleKey, FlightBitmap> leafBitmaps = new ConcurrentHashMap<>();
+    // Множества правил с текущим временем в порядке использования; доступ под блокировкой самой карты
+    private final LinkedHashMap<RuleKey, FlightBitmap> timeDependentBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+
+    private FlightInventory(List<Flight> flights) {
+        this.flights = flights;
+        this.batch = FlightBatch.of(flights);
+        this.all = FlightBitmap.range(0, flights.size());
+    }
+
+    // Создает набор из списка перелётов (список копируется).
+
+    public static FlightInventory of(List<Flight> flights) {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        return new FlightInventory(List.copyOf(flights));
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    public Flight getFlight(int ordinal) {
+        return flights.get(ordinal);
+    }
+
+    // Вычисляет множество номеров перелётов, удовлетворяющих правилу.
+
+    public FlightBitmap evaluate(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        return evaluate(rule, all);
+    }
+
+    // Возвращает перелёты, удовлетворяющие правилу, в исходном порядке.
+
+    public List<Flight> filter(FilterRule rule) {
+        FlightBitmap accepted = evaluate(rule);
+        List<Flight> result = new ArrayList<>(accepted.cardinality());
+        accepted.forEach(ordinal -> result.add(flights.get(ordinal)));
+        return result;
+    }
+
+    // Количество листовых правил, множества которых сохранены.
+
+    public int getCachedRuleCount() {
+        synchronized (timeDependentBitmaps) {
+            return leafBitmaps.size() + timeDependentBitmaps.size();
+        }
+    }
+
+    // Удаляет сохранённые множества листовых правил.
+
+    public void clearCache() {
+        leafBitmaps.clear();
+        synchronized (timeDependentBitmaps) {
+            timeDependentBitmaps.clear();
+        }
+    }
+
+    // Вычисляет правило; candidates - номера, которые ещё могут попасть в результат
+    // (листовые правила без ключа проверяются только на них).
+
+    private FlightBitmap evaluate(FilterRule rule, FlightBitmap candidates) {
+        if (rule instanceof CompositeRule) {
+            CompositeRule composite = (CompositeRule) rule;
+            return composite.getOperator() == CompositeRule.Operator.AND
+                    ? evaluateAnd(composite.getChildren(), candidates)
+                    : evaluateOr(composite.getChildren());
+        }
+        if (rule instanceof NotRule) {
+            return all.andNot(evaluate(((NotRule) rule).getRule(), all));
+        }
+
+        RuleKey key = rule.getKey();
+        if (key == null) {
+            return evaluateLeaf(rule, candidates);
+        }
+        if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+            return evaluateTimeDependent(rule, key);
+        }
+        return leafBitmaps.computeIfAbsent(key, k -> evaluateLeaf(rule, all));
+    }
+
+    // Правило с текущим временем: множество вычисляется вне блокировки и сохраняется в LRU.
+
+    private FlightBitmap evaluateTimeDependent(FilterRule rule, RuleKey key) {
+        synchronized (timeDependentBitmaps) {
+            FlightBitmap cached = timeDependentBitmaps.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FlightBitmap result = evaluateLeaf(rule, all);
+        synchronized (timeDependentBitmaps) {
+            timeDependentBitmaps.put(key, result);
+            Iterator<RuleKey> eldest = timeDependentBitmaps.keySet().iterator();
+            while (timeDependentBitmaps.size() > MAX_TIME_DEPENDENT_RULES) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return result;
+    }
+
+    private FlightBitmap evaluateAnd(List<FilterRule> children, FlightBitmap candidates) {
+        FlightBitmap result = candidates;
+        List<FilterRule> uncached = new ArrayList<>();
+        for (FilterRule child : children) {
+            if (child.getKey() == null && !(child instanceof CompositeRule) && !(child instanceof NotRule)) {
+                uncached.add(child);
+                continue;
+            }
+            result = result.and(evaluate(child, result));
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        // Правила без ключа - после всех вычисленных, на оставшихся кандидатах
+        for (FilterRule child : uncached) {
+            result = evaluateLeaf(child, result);
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private FlightBitmap evaluateOr(List<FilterRule> children) {
+        FlightBitmap result = FlightBitmap.empty();
+        for (FilterRule child : children) {
+            result = result.or(evaluate(child, all));
+        }
+        return result;
+    }
+
+    // Проверяет листовое правило на кандидатах: пакетно, если правило это поддерживает.
+
+    private FlightBitmap evaluateLeaf(FilterRule rule, FlightBitmap candidates) {
+        BitSet accepted = candidates.toBitSet();
+        if (rule instanceof BatchFilterRule) {
+            ((BatchFilterRule) rule).testBatch(batch, accepted);
+        } else {
+            for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+                if (!rule.test(flights.get(i))) {
+                    accepted.clear(i);
+                }
+            }
+        }
+        return FlightBitmap.fromBitSet(accepted);
+    }
+
+    @Override
+    public String toString() {
+        return "FlightInventory{size=" + flights.size() + ", cachedRules=" + getCachedRuleCount() + "}";
+    }
+}
\ No newline at end of file
@@ -1,17 +1,37 @@
 package com.gridnine.testing;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.Objects;
 
 // Показывает время на земле между сегментами.
+// Кроме построения строки (formatFlight, formatFlights) умеет выводить перелёты потоком
+// в Appendable, Writer или WritableByteChannel: результат не собирается целиком в памяти,
+// поэтому можно выводить сколь угодно большие списки. Даты форматируются без создания
+// объектов (для годов 1..9999), в канал пишутся заранее закодированные в UTF-8 подписи.
 
 public final class FlightPrinter {
 
     private static final DateTimeFormatter FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
+    // Длина даты в формате yyyy-MM-ddTHH:mm
+    private static final int DATE_TIME_LENGTH = 16;
+
+    // Writer сбрасывается после каждых FLUSH_INTERVAL перелётов
+    private static final int FLUSH_INTERVAL = 1_024;
+
+    // Размер буфера при выводе в канал
+    private static final int CHANNEL_BUFFER_SIZE = 64 * 1024;
+
     private FlightPrinter() {
         // Utility class
     }
@@ -20,71 +40,372 @@ public final class FlightPrinter {
 
     public static String formatFlight(Flight flight, int index) {
         StringBuilder sb = new StringBuilder();
-        sb.append("Перелёт #").append(index).append(":\n");
+        try {
+            writeFlight(new AppendableSink(sb), flight, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder не бросает IOException
+        }
+        return sb.toString();
+    }
+
+    // Форматирует список перелётов.
+
+    public static String formatFlights(List<Flight> flights) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            print(flights, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    // Выводит перелёты в Appendable в том же виде, что и formatFlights.
+    // @param flights перелёты
+    // @param out получатель текста
+
+    public static void print(Iterable<Flight> flights, Appendable out) throws IOException {
+        Objects.requireNonNull(out, "Получатель вывода не может быть null");
+        writeFlights(new AppendableSink(out), flights, false);
+    }
+
+    // Выводит перелёты в Writer в том же виде, что и formatFlights.
+    // Writer сбрасывается (flush) по мере вывода и в конце.
+    // @param flights перелёты
+    // @param out Writer для вывода
+
+    public static void print(Iterable<Flight> flights, Writer out) throws IOException {
+        Objects.requireNonNull(out, "Получатель вывода не может быть null");
+        writeFlights(new AppendableSink(out), flights, true);
+    }
+
+    // Выводит перелёты в канал в кодировке UTF-8 в том же виде, что и formatFlights.
+    // Текст пишется в канал блоками по мере заполнения буфера фиксированного размера.
+    // @param flights перелёты
+    // @param out канал для вывода
+
+    public static void print(Iterable<Flight> flights, WritableByteChannel out) throws IOException {
+        Objects.requireNonNull(out, "Получатель вывода не может быть null");
+        writeFlights(new ChannelSink(out), flights, true);
+    }
+
+    // Дописывает дату и время в формате yyyy-MM-ddTHH:mm.
+    // Цифры дописываются прямо в sb, без промежуточного массива на каждую дату.
+
+    static void appendDateTime(StringBuilder sb, LocalDateTime dateTime) {
+        int year = dateTime.getYear();
+        if (!isFixedWidthYear(year)) {
+            sb.append(dateTime.format(FORMATTER));
+            return;
+        }
+        appendDigits(sb, year, 4);
+        sb.append('-');
+        appendDigits(sb, dateTime.getMonthValue(), 2);
+        sb.append('-');
+        appendDigits(sb, dateTime.getDayOfMonth(), 2);
+        sb.append('T');
+        appendDigits(sb, dateTime.getHour(), 2);
+        sb.append(':');
+        appendDigits(sb, dateTime.getMinute(), 2);
+    }
+
+    // Записывает дату и время в формате yyyy-MM-ddTHH:mm в первые DATE_TIME_LENGTH символов chars.
+    // Вывод совпадает с appendDateTime; отдельный вариант нужен получателям с собственным буфером.
+    // @return false, если год вне 1..9999 - тогда дата форматируется через FORMATTER
+
+    private static boolean fillDateTime(LocalDateTime dateTime, char[] chars) {
+        int year = dateTime.getYear();
+        if (!isFixedWidthYear(year)) {
+            return false;
+        }
+        putDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, dateTime.getMonthValue(), 2);
+        chars[7] = '-';
+        putDigits(chars, 8, dateTime.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        putDigits(chars, 11, dateTime.getHour(), 2);
+        chars[13] = ':';
+        putDigits(chars, 14, dateTime.getMinute(), 2);
+        return true;
+    }
+
+    // Год из четырёх цифр без знака - остальные годы форматирует FORMATTER.
+
+    private static boolean isFixedWidthYear(int year) {
+        return year >= 1 && year <= 9999;
+    }
+
+    // Дописывает value ровно width цифрами с ведущими нулями; value < 10^width.
+
+    private static void appendDigits(StringBuilder sb, int value, int width) {
+        int divisor = 1;
+        for (int i = 1; i < width; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void putDigits(char[] chars, int position, int value, int width) {
+        for (int i = position + width - 1; i >= position; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static void writeFlights(Sink sink, Iterable<Flight> flights, boolean flushIncrementally)
+            throws IOException {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+
+        Iterator<Flight> iterator = flights.iterator();
+        if (!iterator.hasNext()) {
+            sink.label(Label.NOT_FOUND);
+            sink.flush();
+            return;
+        }
+
+        int index = 1;
+        while (iterator.hasNext()) {
+            if (index > 1) {
+                sink.label(Label.SEPARATOR);
+            }
+            writeFlight(sink, iterator.next(), index);
+            if (flushIncrementally && index % FLUSH_INTERVAL == 0) {
+                sink.flush();
+            }
+            index++;
+        }
+        if (flushIncrementally) {
+            sink.flush();
+        }
+    }
+
+    private static void writeFlight(Sink sink, Flight flight, int index) throws IOException {
+        sink.label(Label.FLIGHT);
+        sink.number(index);
+        sink.label(Label.COLON_NEW_LINE);
 
         List<Segment> segments = flight.getSegments();
         for (int i = 0; i < segments.size(); i++) {
             Segment segment = segments.get(i);
-            sb.append("  Сегмент ").append(i + 1).append(": ")
-                    .append(segment.getDepartureDate().format(FORMATTER))
-                    .append(" → ")
-                    .append(segment.getArrivalDate().format(FORMATTER))
-                    .append("\n");
+            sink.label(Label.SEGMENT);
+            sink.number(i + 1);
+            sink.label(Label.COLON);
+            sink.dateTime(segment.getDepartureDate());
+            sink.label(Label.ARROW);
+            sink.dateTime(segment.getArrivalDate());
+            sink.label(Label.NEW_LINE);
 
             // Показываем время на земле между сегментами
             if (i < segments.size() - 1) {
-                Segment nextSegment = segments.get(i + 1);
-                Duration groundTime = Duration.between(
-                        segment.getArrivalDate(),
-                        nextSegment.getDepartureDate()
-                );
-
-                if (!groundTime.isNegative()) {
-                    sb.append("  Время на земле: ")
-                            .append(formatDuration(groundTime))
-                            .append("\n");
+                long groundSeconds = secondsBetween(segment, segments.get(i + 1));
+                if (groundSeconds >= 0) {
+                    sink.label(Label.GROUND_TIME);
+                    writeDuration(sink, groundSeconds / 60);
+                    sink.label(Label.NEW_LINE);
                 }
             }
         }
 
         // Общее время на земле
         if (segments.size() > 1) {
-            sb.append("  Общее время на земле: ")
-                    .append(formatDuration(
-                            Duration.ofMinutes(flight.getTotalGroundTimeMinutes())
-                    ))
-                    .append("\n");
+            sink.label(Label.TOTAL_GROUND_TIME);
+            writeDuration(sink, flight.getTotalGroundTimeMinutes());
+            sink.label(Label.NEW_LINE);
         }
+    }
 
-        return sb.toString();
+    // Целое количество секунд от прилёта сегмента до вылета следующего по моментам в UTC
+    // (с округлением вниз, как в Duration.between).
+
+    private static long secondsBetween(Segment arrived, Segment next) {
+        long seconds = next.getDepartureEpochSecond() - arrived.getArrivalEpochSecond();
+        if (next.getDepartureDate().getNano() < arrived.getArrivalDate().getNano()) {
+            seconds--;
+        }
+        return seconds;
     }
 
-    // Форматирует список перелётов.
+    // Выводит длительность в читаемом виде для удобства!.
 
-    public static String formatFlights(List<Flight> flights) {
-        if (flights.isEmpty()) {
-            return "Перелёты не найдены.\n";
+    private static void writeDuration(Sink sink, long totalMinutes) throws IOException {
+        long hours = totalMinutes / 60;
+        long minutes = totalMinutes % 60;
+
+        if (hours > 0) {
+            sink.number(hours);
+            sink.label(minutes > 0 ? Label.HOURS_SPACE : Label.HOURS);
+        }
+        if (minutes > 0 || hours == 0) {
+            sink.number(minutes);
+            sink.label(Label.MINUTES);
+        }
+    }
+
+    // Неизменяемые фрагменты текста вместе с их представлением в UTF-8.
+
+    private enum Label {
+        FLIGHT("Перелёт #"),
+        COLON_NEW_LINE(":\n"),
+        SEGMENT("  Сегмент "),
+        COLON(": "),
+        ARROW(" → "),
+        NEW_LINE("\n"),
+        GROUND_TIME("  Время на земле: "),
+        TOTAL_GROUND_TIME("  Общее время на земле: "),
+        HOURS_SPACE("ч "),
+        HOURS("ч"),
+        MINUTES("м"),
+        SEPARATOR("\n---\n"),
+        NOT_FOUND("Перелёты не найдены.\n");
+
+        private final String text;
+        private final byte[] utf8;
+
+        Label(String text) {
+            this.text = text;
+            this.utf8 = text.getBytes(StandardCharsets.UTF_8);
         }
+    }
+
+    // Получатель вывода: текстовый или байтовый.
+
+    private abstract static class Sink {
+        // Наибольшее количество цифр числа long
+        private static final int MAX_DIGITS = 20;
 
-        StringJoiner sj = new StringJoiner("\n---\n");
-        for (int i = 0; i < flights.size(); i++) {
-            sj.add(formatFlight(flights.get(i), i + 1));
+        // Цифры числа в обратном порядке
+        final char[] digits = new char[MAX_DIGITS];
+        // Текст фрагмента (числа или даты) перед выводом
+        final char[] chars = new char[Math.max(MAX_DIGITS, DATE_TIME_LENGTH)];
+
+        abstract void label(Label label) throws IOException;
+
+        abstract void number(long value) throws IOException;
+
+        abstract void dateTime(LocalDateTime dateTime) throws IOException;
+
+        abstract void flush() throws IOException;
+
+        // Раскладывает неотрицательное число на цифры, возвращает их количество.
+
+        int toDigits(long value) {
+            int count = 0;
+            do {
+                digits[count++] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            return count;
         }
-        return sj.toString();
     }
 
-    // Форматирует Duration в читаемый вид для удобства!.
+    private static final class AppendableSink extends Sink {
+        private final Appendable out;
+
+        AppendableSink(Appendable out) {
+            this.out = out;
+        }
 
-    private static String formatDuration(Duration duration) {
-        long hours = duration.toHours();
-        long minutes = duration.toMinutes() % 60;
+        @Override
+        void label(Label label) throws IOException {
+            out.append(label.text);
+        }
 
-        if (hours > 0 && minutes > 0) {
-            return hours + "ч " + minutes + "м";
-        } else if (hours > 0) {
-            return hours + "ч";
-        } else {
-            return minutes + "м";
+        @Override
+        void number(long value) throws IOException {
+            int count = toDigits(value);
+            for (int i = 0; i < count; i++) {
+                chars[i] = digits[count - 1 - i];
+            }
+            write(count);
+        }
+
+        @Override
+        void dateTime(LocalDateTime dateTime) throws IOException {
+            if (fillDateTime(dateTime, chars)) {
+                write(DATE_TIME_LENGTH);
+            } else {
+                out.append(dateTime.format(FORMATTER));
+            }
+        }
+
+        // Выводит первые length символов chars без создания промежуточных строк.
+
+        private void write(int length) throws IOException {
+            if (out instanceof Writer) {
+                ((Writer) out).write(chars, 0, length);
+            } else if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(chars, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    out.append(chars[i]);
+                }
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (out instanceof Writer) {
+                ((Writer) out).flush();
+            }
+        }
+    }
+
+    private static final class ChannelSink extends Sink {
+        // Наибольший фрагмент, который записывается в буфер за один раз (кроме запасного пути)
+        private static final int MAX_FRAGMENT = 64;
+
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHANNEL_BUFFER_SIZE);
+
+        ChannelSink(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        void label(Label label) throws IOException {
+            ensureCapacity(label.utf8.length);
+            buffer.put(label.utf8);
+        }
+
+        @Override
+        void number(long value) throws IOException {
+            ensureCapacity(MAX_FRAGMENT);
+            for (int i = toDigits(value) - 1; i >= 0; i--) {
+                buffer.put((byte) digits[i]);
+            }
+        }
+
+        @Override
+        void dateTime(LocalDateTime dateTime) throws IOException {
+            if (!fillDateTime(dateTime, chars)) {
+                byte[] bytes = dateTime.format(FORMATTER).getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(bytes.length);
+                buffer.put(bytes);
+                return;
+            }
+            // Символы формата - ASCII, в UTF-8 каждый занимает один байт
+            ensureCapacity(DATE_TIME_LENGTH);
+            for (int i = 0; i < DATE_TIME_LENGTH; i++) {
+                buffer.put((byte) chars[i]);
+            }
+        }
+
+        private void ensureCapacity(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.gridnine.testing;
+
+// Критерий ранжирования перелётов для выбора лучших K: меньшее значение - лучше.
+// Перелёты без сегментов получают худшее значение.
+
+public enum FlightRanking {
+
+    // Общее время на земле между сегментами (в минутах)
+    GROUND_TIME {
+        @Override
+        public long score(Flight flight) {
+            return flight.getSegmentCount() == 0 ? Long.MAX_VALUE : flight.getTotalGroundTimeMinutes();
+        }
+    },
+
+    // Полное время в пути от самого раннего вылета до самого позднего прилёта (в минутах)
+    TRIP_DURATION {
+        @Override
+        public long score(Flight flight) {
+            if (flight.getSegmentCount() == 0) {
+                return Long.MAX_VALUE;
+            }
+            return (flight.getLatestArrivalEpochSecond() - flight.getEarliestDepartureEpochSecond()) / 60;
+        }
+    },
+
+    // Самый ранний вылет (в секундах от эпохи UTC)
+    EARLIEST_DEPARTURE {
+        @Override
+        public long score(Flight flight) {
+            return flight.getEarliestDepartureEpochSecond();
+        }
+    };
+
+    // Значение критерия для перелёта (меньше - лучше).
+
+    public abstract long score(Flight flight);
+}
\ No newline at end of file
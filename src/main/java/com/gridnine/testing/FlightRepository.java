@@ -0,0 +1,168 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Изменяемое хранилище перелётов с идентификаторами и материализованными представлениями.
+// Представление (registerView) - постоянно поддерживаемый результат фильтрации по правилу:
+// при добавлении, замене или удалении перелёта правило каждого представления проверяется только
+// для затронутого перелёта, а подписчики представления получают onAdded/onRemoved вместо
+// полного пересчёта. Стоимость изменения - O(1) проверок правила на представление.
+// Изменение выполняется в два этапа: сначала правила проверяются и обновляются репозиторий и все
+// представления, затем уведомляются подписчики. Поэтому исключение правила оставляет репозиторий
+// неизменным, а исключение подписчика не рассинхронизирует представления: остальные подписчики
+// всё равно уведомляются, и первое исключение пробрасывается после них (изменение уже применено).
+// Класс потокобезопасен: изменения и чтения представлений выполняются под блокировкой репозитория.
+
+public final class FlightRepository {
+
+    private final Map<String, Flight> flights = new LinkedHashMap<>();
+    private final List<MaterializedView> views = new ArrayList<>();
+
+    // Добавляет перелёт.
+    // @return false, если перелёт с таким идентификатором уже есть (репозиторий не меняется)
+
+    public synchronized boolean add(String id, Flight flight) {
+        Objects.requireNonNull(id, "Идентификатор перелёта не может быть null");
+        Objects.requireNonNull(flight, "Перелёт не может быть null");
+        if (flights.containsKey(id)) {
+            return false;
+        }
+        MaterializedView[] targets = views.toArray(new MaterializedView[0]);
+        boolean[] accepted = acceptedBy(targets, flight);
+
+        flights.put(id, flight);
+        for (int v = 0; v < targets.length; v++) {
+            if (accepted[v]) {
+                targets[v].put(id, flight);
+            }
+        }
+
+        RuntimeException failure = null;
+        for (int v = 0; v < targets.length; v++) {
+            if (accepted[v]) {
+                failure = targets[v].fireAdded(id, flight, failure);
+            }
+        }
+        rethrow(failure);
+        return true;
+    }
+
+    // Заменяет перелёт с тем же идентификатором (например, после изменения расписания).
+    // @return предыдущий перелёт или null, если перелёта не было (репозиторий не меняется)
+
+    public synchronized Flight replace(String id, Flight flight) {
+        Objects.requireNonNull(id, "Идентификатор перелёта не может быть null");
+        Objects.requireNonNull(flight, "Перелёт не может быть null");
+        if (!flights.containsKey(id)) {
+            return null;
+        }
+        MaterializedView[] targets = views.toArray(new MaterializedView[0]);
+        boolean[] accepted = acceptedBy(targets, flight);
+
+        Flight previous = flights.put(id, flight);
+        Flight[] withdrawn = new Flight[targets.length];
+        for (int v = 0; v < targets.length; v++) {
+            withdrawn[v] = targets[v].take(id);
+            if (accepted[v]) {
+                targets[v].put(id, flight);
+            }
+        }
+
+        RuntimeException failure = null;
+        for (int v = 0; v < targets.length; v++) {
+            if (withdrawn[v] != null) {
+                failure = targets[v].fireRemoved(id, withdrawn[v], failure);
+            }
+            if (accepted[v]) {
+                failure = targets[v].fireAdded(id, flight, failure);
+            }
+        }
+        rethrow(failure);
+        return previous;
+    }
+
+    // Удаляет перелёт.
+    // @return удалённый перелёт или null, если его не было
+
+    public synchronized Flight remove(String id) {
+        Objects.requireNonNull(id, "Идентификатор перелёта не может быть null");
+        Flight removed = flights.remove(id);
+        if (removed == null) {
+            return null;
+        }
+        MaterializedView[] targets = views.toArray(new MaterializedView[0]);
+        Flight[] withdrawn = new Flight[targets.length];
+        for (int v = 0; v < targets.length; v++) {
+            withdrawn[v] = targets[v].take(id);
+        }
+
+        RuntimeException failure = null;
+        for (int v = 0; v < targets.length; v++) {
+            if (withdrawn[v] != null) {
+                failure = targets[v].fireRemoved(id, withdrawn[v], failure);
+            }
+        }
+        rethrow(failure);
+        return removed;
+    }
+
+    public synchronized Flight get(String id) {
+        return flights.get(id);
+    }
+
+    public synchronized int size() {
+        return flights.size();
+    }
+
+    // Снимок всех перелётов в порядке добавления.
+
+    public synchronized List<Flight> getFlights() {
+        return List.copyOf(flights.values());
+    }
+
+    // Регистрирует представление по правилу и заполняет его текущими перелётами.
+    // Правило компилируется (RuleCompiler) и должно быть детерминированным: результат проверки
+    // перелёта не должен меняться со временем.
+
+    public synchronized MaterializedView registerView(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        MaterializedView view = new MaterializedView(this, rule, RuleCompiler.compile(rule));
+        for (Map.Entry<String, Flight> entry : flights.entrySet()) {
+            if (view.accepts(entry.getValue())) {
+                view.put(entry.getKey(), entry.getValue());
+            }
+        }
+        views.add(view);
+        return view;
+    }
+
+    // Количество зарегистрированных представлений.
+
+    public synchronized int getViewCount() {
+        return views.size();
+    }
+
+    synchronized void unregister(MaterializedView view) {
+        views.remove(view);
+    }
+
+    // Проверяет правила всех представлений до изменения состояния.
+
+    private static boolean[] acceptedBy(MaterializedView[] targets, Flight flight) {
+        boolean[] accepted = new boolean[targets.length];
+        for (int v = 0; v < targets.length; v++) {
+            accepted[v] = targets[v].accepts(flight);
+        }
+        return accepted;
+    }
+
+    private static void rethrow(RuntimeException failure) {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
\ No newline at end of file
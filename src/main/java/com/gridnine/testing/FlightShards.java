@@ -0,0 +1,122 @@
+package com.gridnine.testing;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Разбиение набора перелётов на шарды по дню самого раннего вылета (сутки UTC).
+// Каждый шард - снимок FlightCodec с именем "day-<номер дня от эпохи>.snapshot": формат без потерь,
+// поэтому зоны и доли секунды сохраняются, и обработчики возвращают перелёты, равные исходным.
+// Перелёты без сегментов попадают в шард "day-none.snapshot" (ключ NO_DEPARTURE_DAY).
+// Шарды читает ShardWorker, ShardCoordinator по ключам отбрасывает дни, которые правило не пропустит.
+
+public final class FlightShards {
+
+    // Ключ шарда перелётов без сегментов: такие перелёты никогда не вылетают, поэтому он последний
+    public static final long NO_DEPARTURE_DAY = Long.MAX_VALUE;
+
+    static final long SECONDS_PER_DAY = 86_400;
+
+    private static final String PREFIX = "day-";
+    private static final String SUFFIX = ".snapshot";
+    private static final String NO_DEPARTURE_NAME = "none";
+
+    private FlightShards() {
+        // Utility class
+    }
+
+    // Записывает перелёты в шарды каталога за один проход, не держа набор в памяти.
+    // Существующие файлы тех же дней перезаписываются.
+    // @return файлы шардов по возрастанию дня
+
+    public static SortedMap<Long, Path> write(Iterable<Flight> flights, Path directory) throws IOException {
+        Objects.requireNonNull(flights, "Список перелётов не может быть null");
+        Objects.requireNonNull(directory, "Каталог шардов не может быть null");
+        Files.createDirectories(directory);
+
+        Map<Long, FlightCodec.Encoder> writers = new HashMap<>();
+        SortedMap<Long, Path> shards = new TreeMap<>();
+        IOException failure = null;
+        try {
+            for (Flight flight : flights) {
+                long day = dayOf(flight);
+                FlightCodec.Encoder writer = writers.get(day);
+                if (writer == null) {
+                    Path path = directory.resolve(fileName(day));
+                    // Базовый момент - начало дня: разности первых вылетов шарда меньше суток
+                    writer = FlightCodec.newEncoder(Files.newOutputStream(path),
+                            day == NO_DEPARTURE_DAY ? 0 : day * SECONDS_PER_DAY);
+                    writers.put(day, writer);
+                    shards.put(day, path);
+                }
+                writer.write(flight);
+            }
+        } finally {
+            for (FlightCodec.Encoder writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return shards;
+    }
+
+    // Находит шарды в каталоге.
+    // @return файлы шардов по возрастанию дня
+
+    public static SortedMap<Long, Path> list(Path directory) throws IOException {
+        Objects.requireNonNull(directory, "Каталог шардов не может быть null");
+
+        SortedMap<Long, Path> shards = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                shards.put(dayOf(file), file);
+            }
+        }
+        return shards;
+    }
+
+    // День шарда по имени файла.
+    // @throws IllegalArgumentException если имя не является именем шарда
+
+    static long dayOf(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+            String day = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+            if (day.equals(NO_DEPARTURE_NAME)) {
+                return NO_DEPARTURE_DAY;
+            }
+            try {
+                return Long.parseLong(day);
+            } catch (NumberFormatException e) {
+                // некорректное имя, как и без префикса
+            }
+        }
+        throw new IllegalArgumentException("Файл не является шардом перелётов: " + file);
+    }
+
+    // День самого раннего вылета перелёта (номер суток UTC от эпохи).
+
+    static long dayOf(Flight flight) {
+        return flight.getSegmentCount() == 0
+                ? NO_DEPARTURE_DAY
+                : Math.floorDiv(flight.getEarliestDepartureEpochSecond(), SECONDS_PER_DAY);
+    }
+
+    private static String fileName(long day) {
+        return PREFIX + (day == NO_DEPARTURE_DAY ? NO_DEPARTURE_NAME : Long.toString(day)) + SUFFIX;
+    }
+}
\ No newline at end of file
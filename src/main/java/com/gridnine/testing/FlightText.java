@@ -0,0 +1,86 @@
+package com.gridnine.testing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+// Построчный текстовый формат перелётов: одна строка - один перелёт в виде Flight.toString(),
+// например "[2024-01-01T12:00|2024-01-01T14:00] [2024-01-01T15:00|2024-01-01T17:00]".
+// Пустые строки пропускаются.
+
+public final class FlightText {
+
+    private FlightText() {
+        // Utility class
+    }
+
+    // Разбирает один перелёт.
+    // @throws IllegalArgumentException если строка не соответствует формату
+
+    public static Flight parseFlight(String line) {
+        Objects.requireNonNull(line, "Строка перелёта не может быть null");
+
+        List<Segment> segments = new ArrayList<>();
+        String text = line.trim();
+        int position = 0;
+        while (position < text.length()) {
+            if (text.charAt(position) == ' ') {
+                position++;
+                continue;
+            }
+            int end = text.indexOf(']', position);
+            int separator = text.indexOf('|', position);
+            if (text.charAt(position) != '[' || end < 0 || separator < 0 || separator > end) {
+                throw new IllegalArgumentException("Некорректная запись перелёта: '" + line + "'");
+            }
+            try {
+                segments.add(new Segment(
+                        LocalDateTime.parse(text.substring(position + 1, separator)),
+                        LocalDateTime.parse(text.substring(separator + 1, end))));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Некорректное время в записи перелёта: '" + line + "'", e);
+            }
+            position = end + 1;
+        }
+        return new Flight(segments);
+    }
+
+    // Читает перелёты до конца потока.
+
+    public static List<Flight> readFlights(BufferedReader reader) throws IOException {
+        return readFlights(reader, UnaryOperator.identity());
+    }
+
+    // Читает перелёты до конца потока, сразу заменяя их каноническими экземплярами.
+
+    public static List<Flight> readFlights(BufferedReader reader, FlightInterner interner) throws IOException {
+        Objects.requireNonNull(interner, "Пул канонических перелётов не может быть null");
+        return readFlights(reader, interner::intern);
+    }
+
+    private static List<Flight> readFlights(BufferedReader reader, UnaryOperator<Flight> mapper) throws IOException {
+        List<Flight> flights = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                flights.add(mapper.apply(parseFlight(line)));
+            }
+        }
+        return flights;
+    }
+
+    // Записывает перелёты по одному на строку.
+
+    public static void writeFlights(Iterable<Flight> flights, Writer writer) throws IOException {
+        for (Flight flight : flights) {
+            writer.write(flight.toString());
+            writer.write('\n');
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.gridnine.testing;
+
+// Подписчик на изменения материализованного представления (MaterializedView).
+// Вызывается синхронно внутри операции FlightRepository, изменившей представление,
+// поэтому должен работать быстро и не изменять репозиторий. К моменту вызова репозиторий и все
+// представления уже изменены; исключение подписчика не мешает уведомлению остальных и пробрасывается
+// из операции репозитория после них.
+
+public interface FlightViewListener {
+
+    // Перелёт с идентификатором id вошёл в представление.
+
+    default void onAdded(String id, Flight flight) {
+    }
+
+    // Перелёт с идентификатором id вышел из представления (удалён из репозитория или заменён).
+
+    default void onRemoved(String id, Flight flight) {
+    }
+}
\ No newline at end of file
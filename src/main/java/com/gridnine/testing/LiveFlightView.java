@@ -0,0 +1,136 @@
+package com.gridnine.testing;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Постоянно поддерживаемое отфильтрованное представление перелётов.
+// В отличие от DepartureBeforeCurrentTimeFilter, "сейчас" берётся из часов (Clock) при каждом
+// обращении (как время UTC, независимо от зоны часов): перелёт попадает в представление, если ещё не вылетел и удовлетворяет правилу,
+// и удаляется, как только наступает время его самого раннего вылета.
+// Сроки вылета хранятся в иерархическом колесе таймеров с шагом в одну минуту, поэтому
+// продвижение времени стоит пропорционально числу вылетевших перелётов, а не размеру набора.
+// Одинаковые (equals) перелёты хранятся в одном экземпляре. Класс потокобезопасен.
+
+public final class LiveFlightView {
+
+    private final Clock clock;
+    private final FilterRule rule;
+    private final Set<Flight> flights = new LinkedHashSet<>();
+    private final TimingWheel<Flight> wheel;
+    // Перелёты, вылетающие в текущую минуту: проверяются точно при каждом обновлении
+    private final List<Flight> departingThisMinute = new ArrayList<>();
+
+    // Создает представление, которое отсекает только вылетевшие перелёты.
+
+    public LiveFlightView(Clock clock) {
+        this(clock, flight -> true);
+    }
+
+    // Создает представление, которое дополнительно проверяет перелёты правилом rule.
+    // Правило проверяется один раз при добавлении перелёта.
+
+    public LiveFlightView(Clock clock, FilterRule rule) {
+        this.clock = Objects.requireNonNull(clock, "Часы не могут быть null");
+        this.rule = Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        this.wheel = new TimingWheel<>(FlightBatch.toEpochMinute(nowUtc(clock)));
+    }
+
+    // Добавляет перелёт в представление.
+    // @return true, если перелёт ещё не вылетел, удовлетворяет правилу и не был добавлен ранее
+
+    public synchronized boolean add(Flight flight) {
+        Objects.requireNonNull(flight, "Перелёт не может быть null");
+
+        LocalDateTime now = refreshAndGetNow();
+        if (flight.hasDepartureInPast(now) || !rule.test(flight) || !flights.add(flight)) {
+            return false;
+        }
+
+        if (flight.getSegmentCount() == 0) {
+            // Перелёт без сегментов никогда не вылетает
+            return true;
+        }
+        long tick = Math.floorDiv(flight.getEarliestDepartureEpochSecond(), 60);
+        if (tick <= wheel.getCurrentTick()) {
+            departingThisMinute.add(flight);
+        } else {
+            wheel.schedule(flight, tick);
+        }
+        return true;
+    }
+
+    // Добавляет все перелёты коллекции.
+    // @return количество добавленных перелётов
+
+    public synchronized int addAll(Iterable<Flight> newFlights) {
+        int added = 0;
+        for (Flight flight : newFlights) {
+            if (add(flight)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Удаляет перелёт из представления. Запись в колесе таймеров удаляется лениво.
+
+    public synchronized boolean remove(Flight flight) {
+        return flights.remove(flight);
+    }
+
+    // Удаляет вылетевшие к текущему моменту перелёты.
+    // @return количество удалённых перелётов
+
+    public synchronized int refresh() {
+        int before = flights.size();
+        refreshAndGetNow();
+        return before - flights.size();
+    }
+
+    // Снимок перелётов, ещё не вылетевших к текущему моменту, в порядке добавления.
+
+    public synchronized List<Flight> getFlights() {
+        refreshAndGetNow();
+        return List.copyOf(flights);
+    }
+
+    public synchronized boolean contains(Flight flight) {
+        refreshAndGetNow();
+        return flights.contains(flight);
+    }
+
+    public synchronized int size() {
+        refreshAndGetNow();
+        return flights.size();
+    }
+
+    private LocalDateTime refreshAndGetNow() {
+        LocalDateTime now = nowUtc(clock);
+
+        // Колесо выдаёт перелёты, у которых наступила минута вылета
+        wheel.advanceTo(FlightBatch.toEpochMinute(now), departingThisMinute::add);
+
+        // Внутри минуты сравниваем точно: перелёт удаляется, только когда вылет уже в прошлом
+        for (Iterator<Flight> it = departingThisMinute.iterator(); it.hasNext(); ) {
+            Flight flight = it.next();
+            if (flight.hasDepartureInPast(now)) {
+                flights.remove(flight);
+                it.remove();
+            }
+        }
+        return now;
+    }
+
+    // Текущее время UTC: вылеты сравниваются в UTC, а зона часов влияет только на местное время.
+
+    private static LocalDateTime nowUtc(Clock clock) {
+        return LocalDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+    }
+}
\ No newline at end of file
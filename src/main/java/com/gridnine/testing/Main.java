@@ -1,5 +1,9 @@
 package com.gridnine.testing;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -8,7 +12,22 @@ import java.util.stream.Collectors;
 
 public class Main {
 
-    public static void main(String[] args) {
+    // Порт HTTP-сервиса по умолчанию
+    private static final int DEFAULT_PORT = 8080;
+
+    public static void main(String[] args) throws IOException {
+        // Режим сервиса: java -jar app.jar serve [порт]
+        if (args.length > 0 && "serve".equals(args[0])) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
+        // Генерация данных: java -jar app.jar generate <количество> <файл> [seed] [базовое время]
+        if (args.length > 2 && "generate".equals(args[0])) {
+            generate(Long.parseLong(args[1]), Path.of(args[2]), args.length > 3 ? Long.parseLong(args[3]) : 0,
+                    args.length > 4 ? LocalDateTime.parse(args[4]) : FlightBuilder.DEFAULT_BASE_TIME);
+            return;
+        }
+
         // Получаем тестовые данные
         List<Flight> flights = FlightBuilder.createFlights();
 
@@ -57,4 +76,23 @@ public class Main {
         System.out.println("Бизнес-рейсы (макс. 1 час на земле): " + businessFlights.size());
         System.out.println(FlightPrinter.formatFlights(businessFlights));
     }
+
+    // Запускает HTTP-сервис фильтрации с тестовым набором перелётов "demo".
+
+    private static void serve(int port) throws IOException {
+        FlightFilterServer server = new FlightFilterServer(new InetSocketAddress(port));
+        server.registerDataset(new FlightDataset("demo", FlightBuilder.createFlights()));
+        server.start();
+        System.out.println("Сервис фильтрации запущен: http://localhost:" + server.getPort()
+                + "/datasets/demo?rule=standard");
+    }
+
+    // Записывает синтетический набор перелётов в бинарный файл.
+
+    private static void generate(long count, Path path, long seed, LocalDateTime baseTime) throws IOException {
+        long start = System.nanoTime();
+        FlightBuilder.generator(seed).withBaseTime(baseTime).writeTo(path, count);
+        System.out.println("Записано перелётов: " + count + " в " + path + " за "
+                + (System.nanoTime() - start) / 1_000_000 + " мс");
+    }
 }
\ No newline at end of file
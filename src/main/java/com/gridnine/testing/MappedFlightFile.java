@@ -0,0 +1,268 @@
+package com.gridnine.testing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Бинарный файл перелётов, отображаемый в память (FileChannel.map).
+// Встроенные правила проверяются прямо по байтам файла, объекты Flight создаются только
+// для прошедших фильтр перелётов. Файл читается окнами до 1 ГБ, поэтому размер не ограничен.
+//
+// Формат (big-endian):
+//   заголовок: int magic "AFLT", int версия, long количество перелётов
+//   запись перелёта: int количество сегментов, затем для каждого сегмента
+//                    long вылет и long прилёт в секундах от эпохи UTC
+// Доли секунды и временные зоны при записи отбрасываются: сегменты читаются как время UTC.
+
+public final class MappedFlightFile implements Closeable {
+
+    static final int MAGIC = 0x41464C54; // "AFLT"
+    static final int VERSION = 1;
+    static final long FLIGHT_COUNT_OFFSET = 8;
+    static final int HEADER_BYTES = 16;
+    static final int SEGMENT_BYTES = 2 * Long.BYTES;
+
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long flightCount;
+
+    private MappedFlightFile(FileChannel channel, long fileSize, long flightCount) {
+        this.channel = channel;
+        this.fileSize = fileSize;
+        this.flightCount = flightCount;
+    }
+
+    // Открывает файл и проверяет заголовок.
+
+    public static MappedFlightFile open(Path path) throws IOException {
+        Objects.requireNonNull(path, "Путь к файлу не может быть null");
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Файл слишком короткий для заголовка: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Файл не является файлом перелётов: " + path);
+            }
+            if (header.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Неподдерживаемая версия файла перелётов: " + header.getInt(Integer.BYTES));
+            }
+            return new MappedFlightFile(channel, fileSize, header.getLong((int) FLIGHT_COUNT_OFFSET));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Количество перелётов в файле.
+
+    public long size() {
+        return flightCount;
+    }
+
+    // Фильтрует перелёты файла. Правила, которые нельзя проверить по байтам файла,
+    // проверяются на восстановленном объекте Flight.
+    // @param rule правило фильтрации
+    // @return перелёты, удовлетворяющие правилу, в порядке файла
+
+    public List<Flight> filter(FilterRule rule) throws IOException {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        List<Flight> result = new ArrayList<>();
+        scan(compile(rule), result::add);
+        return result;
+    }
+
+    // Считает перелёты, удовлетворяющие правилу, не создавая объектов Flight для встроенных правил.
+
+    public long count(FilterRule rule) throws IOException {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+
+        RecordPredicate predicate = compile(rule);
+        long[] count = new long[1];
+        scan(predicate, null, () -> count[0]++);
+        return count[0];
+    }
+
+    // Последовательно передаёт все перелёты файла в consumer.
+
+    public void forEach(Consumer<Flight> consumer) throws IOException {
+        Objects.requireNonNull(consumer, "Обработчик не может быть null");
+        scan((buffer, offset, segmentCount) -> true, consumer);
+    }
+
+    // Читает все перелёты файла в список.
+
+    public List<Flight> readAll() throws IOException {
+        List<Flight> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    // Читает все перелёты файла, сразу заменяя их каноническими экземплярами.
+
+    public List<Flight> readAll(FlightInterner interner) throws IOException {
+        Objects.requireNonNull(interner, "Пул канонических перелётов не может быть null");
+        List<Flight> result = new ArrayList<>();
+        forEach(flight -> result.add(interner.intern(flight)));
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void scan(RecordPredicate predicate, Consumer<Flight> consumer) throws IOException {
+        scan(predicate, consumer, null);
+    }
+
+    // Проходит по записям файла, переотображая окно, когда запись в него не помещается.
+
+    private void scan(RecordPredicate predicate, Consumer<Flight> consumer, Runnable counter) throws IOException {
+        long position = HEADER_BYTES;
+        long windowStart = position;
+        MappedByteBuffer window = map(position, 0);
+
+        for (long i = 0; i < flightCount; i++) {
+            if (position + Integer.BYTES > windowStart + window.limit()) {
+                window = map(position, Integer.BYTES);
+                windowStart = position;
+            }
+            int offset = (int) (position - windowStart);
+            int segmentCount = window.getInt(offset);
+            if (segmentCount < 0) {
+                throw new IOException("Повреждённая запись перелёта #" + i);
+            }
+
+            long recordBytes = Integer.BYTES + (long) segmentCount * SEGMENT_BYTES;
+            if (offset + recordBytes > window.limit()) {
+                window = map(position, recordBytes);
+                windowStart = position;
+                offset = 0;
+            }
+
+            int segmentsOffset = offset + Integer.BYTES;
+            if (predicate.test(window, segmentsOffset, segmentCount)) {
+                if (consumer != null) {
+                    consumer.accept(readFlight(window, segmentsOffset, segmentCount));
+                }
+                if (counter != null) {
+                    counter.run();
+                }
+            }
+            position += recordBytes;
+        }
+    }
+
+    private MappedByteBuffer map(long position, long minBytes) throws IOException {
+        long size = Math.min(fileSize - position, Math.max(MAX_WINDOW_BYTES, minBytes));
+        if (size < minBytes) {
+            throw new IOException("Файл перелётов обрезан: ожидалось " + minBytes + " байт с позиции " + position);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Запись перелёта слишком велика: " + minBytes + " байт");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static Flight readFlight(ByteBuffer buffer, int offset, int segmentCount) {
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            int position = offset + s * SEGMENT_BYTES;
+            segments.add(new Segment(
+                    LocalDateTime.ofEpochSecond(buffer.getLong(position), 0, ZoneOffset.UTC),
+                    LocalDateTime.ofEpochSecond(buffer.getLong(position + Long.BYTES), 0, ZoneOffset.UTC)));
+        }
+        return new Flight(segments);
+    }
+
+    // Проверка записи перелёта прямо по байтам файла.
+
+    private interface RecordPredicate {
+        boolean test(ByteBuffer buffer, int segmentsOffset, int segmentCount);
+    }
+
+    // Переводит дерево правил в проверки по байтам файла.
+    // Неизвестные правила проверяются на восстановленном объекте Flight.
+
+    private static RecordPredicate compile(FilterRule rule) {
+        if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+            // Времена в файле - целые секунды, поэтому t < now равносильно t < ceil(now)
+            LocalDateTime currentTime = ((DepartureBeforeCurrentTimeFilter) rule).getCurrentTime();
+            long cutoff = FlightFileWriter.toEpochSecond(currentTime) + (currentTime.getNano() > 0 ? 1 : 0);
+            return (buffer, offset, segmentCount) -> {
+                for (int s = 0; s < segmentCount; s++) {
+                    if (buffer.getLong(offset + s * SEGMENT_BYTES) < cutoff) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (rule instanceof ArrivalBeforeDepartureFilter) {
+            return (buffer, offset, segmentCount) -> {
+                for (int s = 0; s < segmentCount; s++) {
+                    int position = offset + s * SEGMENT_BYTES;
+                    if (buffer.getLong(position + Long.BYTES) < buffer.getLong(position)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (rule instanceof ExcessiveGroundTimeFilter) {
+            long maxGroundTimeMinutes = ((ExcessiveGroundTimeFilter) rule).getMaxGroundTimeMinutes();
+            return (buffer, offset, segmentCount) -> {
+                long groundTime = 0;
+                for (int s = 0; s < segmentCount - 1; s++) {
+                    int position = offset + s * SEGMENT_BYTES;
+                    // Как и в Flight, каждый положительный интервал округляется до целых минут
+                    long gap = buffer.getLong(position + SEGMENT_BYTES) - buffer.getLong(position + Long.BYTES);
+                    if (gap > 0) {
+                        groundTime += gap / SECONDS_PER_MINUTE;
+                    }
+                }
+                return groundTime <= maxGroundTimeMinutes;
+            };
+        }
+        if (rule instanceof CompositeRule) {
+            CompositeRule composite = (CompositeRule) rule;
+            List<FilterRule> children = composite.getChildren();
+            RecordPredicate[] predicates = new RecordPredicate[children.size()];
+            for (int i = 0; i < predicates.length; i++) {
+                predicates[i] = compile(children.get(i));
+            }
+            boolean shortCircuit = composite.getOperator() == CompositeRule.Operator.OR;
+            return (buffer, offset, segmentCount) -> {
+                for (RecordPredicate predicate : predicates) {
+                    if (predicate.test(buffer, offset, segmentCount) == shortCircuit) {
+                        return shortCircuit;
+                    }
+                }
+                return !shortCircuit;
+            };
+        }
+        if (rule instanceof NotRule) {
+            RecordPredicate inner = compile(((NotRule) rule).getRule());
+            return (buffer, offset, segmentCount) -> !inner.test(buffer, offset, segmentCount);
+        }
+        return (buffer, offset, segmentCount) -> rule.test(readFlight(buffer, offset, segmentCount));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.gridnine.testing;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Материализованное представление FlightRepository: перелёты репозитория, удовлетворяющие правилу.
+// Поддерживается репозиторием при каждом изменении; перелёты хранятся в порядке попадания
+// в представление. После close() представление больше не обновляется.
+
+public final class MaterializedView implements AutoCloseable {
+
+    private final FlightRepository repository;
+    private final FilterRule rule;
+    private final FilterRule compiledRule;
+    // Изменяется только под блокировкой репозитория
+    private final Map<String, Flight> flights = new LinkedHashMap<>();
+    private final List<FlightViewListener> listeners = new CopyOnWriteArrayList<>();
+    private boolean closed;
+
+    MaterializedView(FlightRepository repository, FilterRule rule, FilterRule compiledRule) {
+        this.repository = repository;
+        this.rule = rule;
+        this.compiledRule = compiledRule;
+    }
+
+    public FilterRule getRule() {
+        return rule;
+    }
+
+    // Подписывает на изменения представления. Текущее содержимое подписчику не передаётся,
+    // его можно прочитать через getFlights().
+
+    public void addListener(FlightViewListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "Подписчик не может быть null"));
+    }
+
+    public void removeListener(FlightViewListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean contains(String id) {
+        synchronized (repository) {
+            return flights.containsKey(id);
+        }
+    }
+
+    public int size() {
+        synchronized (repository) {
+            return flights.size();
+        }
+    }
+
+    // Снимок перелётов представления.
+
+    public List<Flight> getFlights() {
+        synchronized (repository) {
+            return List.copyOf(flights.values());
+        }
+    }
+
+    // Снимок идентификаторов перелётов представления.
+
+    public Set<String> getIds() {
+        synchronized (repository) {
+            return Set.copyOf(flights.keySet());
+        }
+    }
+
+    // Отключает представление от репозитория.
+
+    @Override
+    public void close() {
+        synchronized (repository) {
+            if (!closed) {
+                closed = true;
+                repository.unregister(this);
+                flights.clear();
+            }
+        }
+    }
+
+    // Проверяет, входит ли перелёт в представление; содержимое не меняется.
+
+    boolean accepts(Flight flight) {
+        return compiledRule.test(flight);
+    }
+
+    // Добавляет перелёт без уведомления подписчиков (под блокировкой репозитория).
+
+    void put(String id, Flight flight) {
+        flights.put(id, flight);
+    }
+
+    // Убирает перелёт без уведомления подписчиков (под блокировкой репозитория).
+    // @return убранный перелёт или null, если его не было в представлении
+
+    Flight take(String id) {
+        return flights.remove(id);
+    }
+
+    // Уведомляет всех подписчиков о добавлении. Исключение подписчика не прерывает уведомление
+    // остальных: первое возвращается (последующие - в getSuppressed()), чтобы репозиторий
+    // пробросил его после уведомления всех представлений.
+
+    RuntimeException fireAdded(String id, Flight flight, RuntimeException failure) {
+        for (FlightViewListener listener : listeners) {
+            try {
+                listener.onAdded(id, flight);
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        return failure;
+    }
+
+    // Уведомляет всех подписчиков об удалении (исключения - как в fireAdded).
+
+    RuntimeException fireRemoved(String id, Flight flight, RuntimeException failure) {
+        for (FlightViewListener listener : listeners) {
+            try {
+                listener.onRemoved(id, flight);
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        return failure;
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "MaterializedView{rule=" + rule + ", size=" + size() + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.gridnine.testing;
+
+import java.util.BitSet;
+import java.util.Objects;
+
+// Отрицание правила (логическое НЕ) в виде узла дерева правил.
+
+public final class NotRule implements BatchFilterRule {
+
+    private final FilterRule rule;
+
+    private NotRule(FilterRule rule) {
+        this.rule = rule;
+    }
+
+    // Создает отрицание правила. Двойное отрицание сокращается до исходного правила.
+
+    public static FilterRule of(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (rule instanceof NotRule) {
+            return ((NotRule) rule).rule;
+        }
+        return new NotRule(rule);
+    }
+
+    // Отрицаемое правило.
+
+    public FilterRule getRule() {
+        return rule;
+    }
+
+    @Override
+    public boolean test(Flight flight) {
+        return !rule.test(flight);
+    }
+
+    @Override
+    public FilterRule negate() {
+        return rule;
+    }
+
+    @Override
+    public void testBatch(FlightBatch batch, BitSet accepted) {
+        BitSet inner = (BitSet) accepted.clone();
+        FlightBatch.apply(rule, batch, inner);
+        accepted.andNot(inner);
+    }
+
+    @Override
+    public boolean isSideEffectFree() {
+        return rule.isSideEffectFree();
+    }
+
+    @Override
+    public RuleKey getKey() {
+        RuleKey key = rule.getKey();
+        return key == null ? null : RuleKey.of("NOT", key);
+    }
+
+    @Override
+    public String toString() {
+        return "NOT[" + rule + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,476 @@
+package com.gridnine.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Компилятор дерева правил в одно специализированное правило.
+// Условие AND из встроенных правил (DepartureBeforeCurrentTimeFilter, ArrivalBeforeDepartureFilter,
+// ExcessiveGroundTimeFilter) сливается в одно правило FusedRule с уже свёрнутыми параметрами:
+// несколько отсечений по вылету дают одно (самое позднее), несколько ограничений времени на земле -
+// одно (самое строгое). Слитое правило проверяет сводку перелёта и колонки FlightBatch за один проход.
+// Остальные узлы (OR, NOT, AND с пользовательскими правилами) собираются из MethodHandle-комбинаторов
+// guardWithTest и filterReturnValue в одну цепочку без виртуальных вызовов через узлы дерева.
+// Цепочка становится константой: для каждого скомпилированного правила определяется скрытый класс
+// (Lookup.defineHiddenClassWithClassData), который хранит её в static final поле. Такое поле JIT
+// считает константой и встраивает всю цепочку вместе с вызовами правил-листьев.
+// В отличие от CompositeRule, скомпилированное правило не переставляет условия по статистике.
+
+public final class RuleCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    // Байт-код скрытого класса скомпилированного правила (одинаков для всех правил)
+    private static final byte[] COMPILED_RULE_CLASS = HiddenRuleClass.build();
+    private static final MethodType COMPILED_RULE_CONSTRUCTOR = MethodType.methodType(void.class, FilterRule.class);
+
+    private static final MethodHandle FILTER_RULE_TEST;
+    private static final MethodHandle FUSED_RULE_TEST;
+    private static final MethodHandle NOT;
+    private static final MethodHandle ALWAYS_TRUE;
+    private static final MethodHandle ALWAYS_FALSE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType predicate = MethodType.methodType(boolean.class, Flight.class);
+            FILTER_RULE_TEST = lookup.findVirtual(FilterRule.class, "test", predicate);
+            FUSED_RULE_TEST = lookup.findVirtual(FusedRule.class, "test", predicate);
+            NOT = lookup.findStatic(RuleCompiler.class, "not", MethodType.methodType(boolean.class, boolean.class));
+            ALWAYS_TRUE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, Flight.class);
+            ALWAYS_FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, Flight.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private RuleCompiler() {
+        // Utility class
+    }
+
+    // Компилирует правило. Результат проверяет перелёты так же, как исходное правило,
+    // и имеет тот же ключ getKey().
+    // @param rule исходное правило или дерево правил
+    // @return скомпилированное правило
+
+    public static FilterRule compile(FilterRule rule) {
+        Objects.requireNonNull(rule, "Правило фильтрации не может быть null");
+        if (rule instanceof FusedRule || rule instanceof CompiledRule) {
+            return rule;
+        }
+
+        List<FilterRule> conjunction = conjunction(rule);
+        if (isFusable(conjunction)) {
+            return FusedRule.of(conjunction);
+        }
+        return CompiledRule.define(rule, toHandle(rule));
+    }
+
+    // Условия AND верхнего уровня (одно условие, если правило не AND).
+
+    private static List<FilterRule> conjunction(FilterRule rule) {
+        if (rule instanceof CompositeRule && ((CompositeRule) rule).getOperator() == CompositeRule.Operator.AND) {
+            return ((CompositeRule) rule).getChildren();
+        }
+        return List.of(rule);
+    }
+
+    private static boolean isFusable(List<FilterRule> rules) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        for (FilterRule rule : rules) {
+            if (!isBuiltIn(rule)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Встроенные правила (проверяется точный класс: наследник мог переопределить test).
+
+    private static boolean isBuiltIn(FilterRule rule) {
+        Class<?> type = rule.getClass();
+        return type == DepartureBeforeCurrentTimeFilter.class
+                || type == ArrivalBeforeDepartureFilter.class
+                || type == ExcessiveGroundTimeFilter.class;
+    }
+
+    // Собирает дерево правил в MethodHandle типа (Flight)boolean.
+
+    private static MethodHandle toHandle(FilterRule rule) {
+        if (rule instanceof NotRule) {
+            return MethodHandles.filterReturnValue(toHandle(((NotRule) rule).getRule()), NOT);
+        }
+        if (!(rule instanceof CompositeRule)) {
+            return isBuiltIn(rule)
+                    ? FUSED_RULE_TEST.bindTo(FusedRule.of(List.of(rule)))
+                    : FILTER_RULE_TEST.bindTo(rule);
+        }
+
+        CompositeRule composite = (CompositeRule) rule;
+        boolean and = composite.getOperator() == CompositeRule.Operator.AND;
+        List<MethodHandle> handles = new ArrayList<>();
+        if (and) {
+            // Встроенные условия AND сливаются в одно и проверяются первыми - это дешевле всего
+            List<FilterRule> builtIn = new ArrayList<>();
+            for (FilterRule child : composite.getChildren()) {
+                if (isBuiltIn(child)) {
+                    builtIn.add(child);
+                }
+            }
+            if (!builtIn.isEmpty()) {
+                handles.add(FUSED_RULE_TEST.bindTo(FusedRule.of(builtIn)));
+            }
+            for (FilterRule child : composite.getChildren()) {
+                if (!isBuiltIn(child)) {
+                    handles.add(toHandle(child));
+                }
+            }
+        } else {
+            for (FilterRule child : composite.getChildren()) {
+                handles.add(toHandle(child));
+            }
+        }
+
+        // Пустой AND пропускает всё, пустой OR - ничего
+        MethodHandle result = and ? ALWAYS_TRUE : ALWAYS_FALSE;
+        for (int i = handles.size() - 1; i >= 0; i--) {
+            MethodHandle handle = handles.get(i);
+            if (i == handles.size() - 1) {
+                result = handle;
+            } else if (and) {
+                result = MethodHandles.guardWithTest(handle, result, ALWAYS_FALSE);
+            } else {
+                result = MethodHandles.guardWithTest(handle, ALWAYS_TRUE, result);
+            }
+        }
+        return result;
+    }
+
+    private static boolean not(boolean value) {
+        return !value;
+    }
+
+    // Слитое условие AND встроенных правил с уже свёрнутыми параметрами.
+
+    static final class FusedRule implements BatchFilterRule {
+        // Отсечение по вылету (null - без проверки вылета)
+        private final LocalDateTime departureCutoff;
+        private final long departureCutoffSecond;
+        private final int departureCutoffNano;
+        private final boolean checkArrival;
+        private final long maxGroundTimeMinutes;
+        private final RuleKey key;
+
+        private FusedRule(LocalDateTime departureCutoff, boolean checkArrival, long maxGroundTimeMinutes,
+                          RuleKey key) {
+            this.departureCutoff = departureCutoff;
+            this.departureCutoffSecond = departureCutoff == null
+                    ? Long.MIN_VALUE
+                    : departureCutoff.toEpochSecond(ZoneOffset.UTC);
+            this.departureCutoffNano = departureCutoff == null ? 0 : departureCutoff.getNano();
+            this.checkArrival = checkArrival;
+            this.maxGroundTimeMinutes = maxGroundTimeMinutes;
+            this.key = key;
+        }
+
+        static FusedRule of(List<FilterRule> rules) {
+            LocalDateTime cutoff = null;
+            boolean checkArrival = false;
+            long maxGroundTime = Long.MAX_VALUE;
+            List<RuleKey> keys = new ArrayList<>(rules.size());
+            for (FilterRule rule : rules) {
+                if (rule instanceof DepartureBeforeCurrentTimeFilter) {
+                    LocalDateTime time = ((DepartureBeforeCurrentTimeFilter) rule).getCurrentTime();
+                    if (cutoff == null || time.isAfter(cutoff)) {
+                        cutoff = time;
+                    }
+                } else if (rule instanceof ArrivalBeforeDepartureFilter) {
+                    checkArrival = true;
+                } else {
+                    maxGroundTime = Math.min(maxGroundTime, ((ExcessiveGroundTimeFilter) rule).getMaxGroundTimeMinutes());
+                }
+                keys.add(rule.getKey());
+            }
+            return new FusedRule(cutoff, checkArrival, maxGroundTime, RuleKey.composite("AND", keys));
+        }
+
+        @Override
+        public boolean test(Flight flight) {
+            if (checkArrival && flight.hasInvalidSegments()) {
+                return false;
+            }
+            if (flight.getTotalGroundTimeMinutes() > maxGroundTimeMinutes) {
+                return false;
+            }
+            return departureCutoff == null || !flight.hasDepartureInPast(departureCutoff);
+        }
+
+        // Все условия проверяются за один проход по сегментам перелёта.
+
+        @Override
+        public void testBatch(FlightBatch batch, BitSet accepted) {
+            int[] offsets = batch.offsets;
+
+            for (int f = accepted.nextSetBit(0); f >= 0; f = accepted.nextSetBit(f + 1)) {
+                long groundTime = 0;
+                for (int s = offsets[f], end = offsets[f + 1]; s < end; s++) {
+                    if (batch.departsBefore(s, departureCutoffSecond, departureCutoffNano)
+                            || (checkArrival && batch.arrivesBeforeDeparture(s))) {
+                        accepted.clear(f);
+                        break;
+                    }
+                    if (s > offsets[f]) {
+                        groundTime += batch.groundTimeMinutes(s - 1);
+                        if (groundTime > maxGroundTimeMinutes) {
+                            accepted.clear(f);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isSideEffectFree() {
+            return true;
+        }
+
+        @Override
+        public RuleKey getKey() {
+            return key;
+        }
+
+        @Override
+        public String toString() {
+            return "FusedRule{departureCutoff=" + departureCutoff +
+                    ", checkArrival=" + checkArrival +
+                    ", maxGroundTimeMinutes=" + (maxGroundTimeMinutes == Long.MAX_VALUE ? "none" : maxGroundTimeMinutes) +
+                    "}";
+        }
+    }
+
+    // Дерево правил, собранное в одну цепочку MethodHandle. Метод test реализует скрытый
+    // класс-наследник, в static final поле которого лежит цепочка (см. HiddenRuleClass).
+
+    abstract static class CompiledRule implements FilterRule {
+        private final FilterRule source;
+
+        CompiledRule(FilterRule source) {
+            this.source = source;
+        }
+
+        // Определяет скрытый класс с цепочкой handle и создаёт его экземпляр. Класс не закреплён
+        // за загрузчиком и выгружается вместе с последним экземпляром правила.
+
+        static CompiledRule define(FilterRule source, MethodHandle handle) {
+            try {
+                MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(COMPILED_RULE_CLASS, handle, true);
+                return (CompiledRule) hidden.findConstructor(hidden.lookupClass(), COMPILED_RULE_CONSTRUCTOR)
+                        .invoke(source);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Не удалось определить класс скомпилированного правила", e);
+            }
+        }
+
+        @Override
+        public boolean isSideEffectFree() {
+            return source.isSideEffectFree();
+        }
+
+        @Override
+        public RuleKey getKey() {
+            return source.getKey();
+        }
+
+        @Override
+        public String toString() {
+            return "Compiled[" + source + "]";
+        }
+    }
+
+    // Байт-код скрытого класса (версия 61, Java 17), эквивалентный
+    //   final class RuleCompiler$CompiledRuleImpl extends RuleCompiler.CompiledRule {
+    //       private static final MethodHandle HANDLE =
+    //               (MethodHandle) MethodHandles.classData(MethodHandles.lookup(), "_", MethodHandle.class);
+    //       CompiledRuleImpl(FilterRule source) { super(source); }
+    //       public final boolean test(Flight flight) { return (boolean) HANDLE.invokeExact(flight); }
+    //   }
+    // В методах нет ветвлений, поэтому таблицы StackMapTable не нужны.
+
+    private static final class HiddenRuleClass {
+        private static final String NAME = "com/gridnine/testing/RuleCompiler$CompiledRuleImpl";
+        private static final String SUPER_NAME = "com/gridnine/testing/RuleCompiler$CompiledRule";
+        private static final String HANDLE_TYPE = "java/lang/invoke/MethodHandle";
+        private static final String HANDLES_TYPE = "java/lang/invoke/MethodHandles";
+        private static final String HANDLE_DESCRIPTOR = "Ljava/lang/invoke/MethodHandle;";
+        private static final String TEST_DESCRIPTOR = "(Lcom/gridnine/testing/Flight;)Z";
+        private static final String CONSTRUCTOR_DESCRIPTOR = "(Lcom/gridnine/testing/FilterRule;)V";
+        private static final String LOOKUP_DESCRIPTOR = "()Ljava/lang/invoke/MethodHandles$Lookup;";
+        private static final String CLASS_DATA_DESCRIPTOR =
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;";
+
+        private static final int VERSION = 61;
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_STATIC = 0x0008;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        // Теги пула констант
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_STRING = 8;
+        private static final int CONSTANT_FIELD_REF = 9;
+        private static final int CONSTANT_METHOD_REF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        // Инструкции
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int LDC = 0x12;
+        private static final int IRETURN = 0xac;
+        private static final int RETURN = 0xb1;
+        private static final int GETSTATIC = 0xb2;
+        private static final int PUTSTATIC = 0xb3;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int CHECKCAST = 0xc0;
+
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private final Map<String, Integer> utf8Entries = new HashMap<>();
+        private int poolCount = 1;
+
+        static byte[] build() {
+            try {
+                return new HiddenRuleClass().write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] write() throws IOException {
+            int thisClass = classRef(NAME);
+            int superClass = classRef(SUPER_NAME);
+            int handleClass = classRef(HANDLE_TYPE);
+            int handlesClass = classRef(HANDLES_TYPE);
+            int handleField = memberRef(CONSTANT_FIELD_REF, thisClass, "HANDLE", HANDLE_DESCRIPTOR);
+            int superConstructor = memberRef(CONSTANT_METHOD_REF, superClass, "<init>", CONSTRUCTOR_DESCRIPTOR);
+            int invokeExact = memberRef(CONSTANT_METHOD_REF, handleClass, "invokeExact", TEST_DESCRIPTOR);
+            int lookup = memberRef(CONSTANT_METHOD_REF, handlesClass, "lookup", LOOKUP_DESCRIPTOR);
+            int classData = memberRef(CONSTANT_METHOD_REF, handlesClass, "classData", CLASS_DATA_DESCRIPTOR);
+            int dataName = entry(CONSTANT_STRING, utf8("_"));
+
+            ByteArrayOutputStream membersBytes = new ByteArrayOutputStream();
+            DataOutputStream members = new DataOutputStream(membersBytes);
+            // Поле HANDLE
+            members.writeShort(1);
+            members.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+            members.writeShort(utf8("HANDLE"));
+            members.writeShort(utf8(HANDLE_DESCRIPTOR));
+            members.writeShort(0);
+            // Методы <clinit>, <init> и test
+            members.writeShort(3);
+            method(members, ACC_STATIC, "<clinit>", "()V", 3, 0,
+                    INVOKESTATIC, lookup >>> 8, lookup,
+                    LDC, dataName,
+                    LDC, handleClass,
+                    INVOKESTATIC, classData >>> 8, classData,
+                    CHECKCAST, handleClass >>> 8, handleClass,
+                    PUTSTATIC, handleField >>> 8, handleField,
+                    RETURN);
+            method(members, 0, "<init>", CONSTRUCTOR_DESCRIPTOR, 2, 2,
+                    ALOAD_0, ALOAD_1,
+                    INVOKESPECIAL, superConstructor >>> 8, superConstructor,
+                    RETURN);
+            method(members, ACC_PUBLIC | ACC_FINAL, "test", TEST_DESCRIPTOR, 2, 2,
+                    GETSTATIC, handleField >>> 8, handleField,
+                    ALOAD_1,
+                    INVOKEVIRTUAL, invokeExact >>> 8, invokeExact,
+                    IRETURN);
+            // Атрибутов класса нет
+            members.writeShort(0);
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            membersBytes.writeTo(out);
+            return classBytes.toByteArray();
+        }
+
+        // Метод с атрибутом Code без таблицы исключений; code - байты инструкций (младшие 8 бит).
+
+        private void method(DataOutputStream out, int access, String name, String descriptor,
+                            int maxStack, int maxLocals, int... code) throws IOException {
+            int codeAttribute = utf8("Code");
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            for (int b : code) {
+                out.writeByte(b);
+            }
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = utf8Entries.get(value);
+            if (index == null) {
+                pool.writeByte(CONSTANT_UTF8);
+                pool.writeUTF(value);
+                index = poolCount++;
+                utf8Entries.put(value, index);
+            }
+            return index;
+        }
+
+        private int classRef(String internalName) throws IOException {
+            return entry(CONSTANT_CLASS, utf8(internalName));
+        }
+
+        private int memberRef(int tag, int owner, String name, String descriptor) throws IOException {
+            int nameAndType = entry(CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+            return entry(tag, owner, nameAndType);
+        }
+
+        // Запись пула с тегом и ссылками на другие записи (по два байта).
+
+        private int entry(int tag, int... references) throws IOException {
+            pool.writeByte(tag);
+            for (int reference : references) {
+                pool.writeShort(reference);
+            }
+            return poolCount++;
+        }
+    }
+}
\ No newline at end of file
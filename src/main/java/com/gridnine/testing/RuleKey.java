@@ -0,0 +1,106 @@
+package com.gridnine.testing;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+// Каноническое сравнимое представление правила фильтрации: класс правила и его параметры.
+// Правила с равными ключами дают одинаковый результат на одном и том же наборе перелётов,
+// поэтому ключ можно использовать для кэширования результатов и совместного вычисления правил.
+// Для этого параметры в ключе задаются точно, без округления (в том числе время).
+// Ключи AND/OR не зависят от порядка дочерних правил. Символы '\', ',', '(' и ')' в имени и
+// параметрах экранируются обратной косой чертой, поэтому разные наборы параметров не дают один ключ:
+// of("X", "a,b") - это X(a\,b), а of("X", "a", "b") - X(a,b). Параметр-ключ (RuleKey) вставляется
+// как есть: его каноническая форма уже однозначна.
+
+public final class RuleKey implements Comparable<RuleKey> {
+
+    private final String canonicalForm;
+
+    private RuleKey(String canonicalForm) {
+        this.canonicalForm = canonicalForm;
+    }
+
+    // Ключ простого правила: имя и параметры, например ExcessiveGroundTime(120).
+
+    public static RuleKey of(String name, Object... parameters) {
+        Objects.requireNonNull(name, "Имя правила не может быть null");
+        if (parameters.length == 0) {
+            return new RuleKey(escape(name));
+        }
+        StringJoiner joiner = new StringJoiner(",", escape(name) + "(", ")");
+        for (Object parameter : parameters) {
+            joiner.add(parameter instanceof RuleKey
+                    ? ((RuleKey) parameter).canonicalForm
+                    : escape(String.valueOf(parameter)));
+        }
+        return new RuleKey(joiner.toString());
+    }
+
+    // Ключ составного правила. Дочерние ключи сортируются и повторы убираются,
+    // так как AND и OR коммутативны и идемпотентны.
+    // @return ключ или null, если хотя бы у одного дочернего правила нет ключа
+
+    static RuleKey composite(String operator, List<RuleKey> children) {
+        TreeSet<RuleKey> sorted = new TreeSet<>();
+        for (RuleKey child : children) {
+            if (child == null) {
+                return null;
+            }
+            sorted.add(child);
+        }
+        if (sorted.size() == 1) {
+            // AND и OR от одного правила равносильны самому правилу
+            return sorted.first();
+        }
+        StringJoiner joiner = new StringJoiner(",", operator + "(", ")");
+        for (RuleKey child : sorted) {
+            joiner.add(child.canonicalForm);
+        }
+        return new RuleKey(joiner.toString());
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == ',' || c == '(' || c == ')') {
+                if (escaped == null) {
+                    escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+                }
+                escaped.append('\\');
+            }
+            if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+
+    public String getCanonicalForm() {
+        return canonicalForm;
+    }
+
+    @Override
+    public int compareTo(RuleKey other) {
+        return canonicalForm.compareTo(other.canonicalForm);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return canonicalForm.equals(((RuleKey) o).canonicalForm);
+    }
+
+    @Override
+    public int hashCode() {
+        return canonicalForm.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return canonicalForm;
+    }
+}
\ No newline at end of file
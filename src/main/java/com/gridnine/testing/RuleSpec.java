@@ -0,0 +1,138 @@
+package com.gridnine.testing;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Текстовая запись правила фильтрации (для HTTP-сервиса и передачи правил между процессами).
+// Запись состоит из условий через запятую (AND); условие - варианты через '|' (OR);
+// перед вариантом может стоять '!' (NOT). Варианты:
+//   standard, business, basic      - правила FilterRules.createStandardFilter() и т.д.
+//   custom:<минуты>                - FilterRules.createCustomFilter(минуты)
+//   departure[@yyyy-MM-ddTHH:mm]   - DepartureBeforeCurrentTimeFilter (время UTC, по умолчанию - текущее)
+//   arrival                        - ArrivalBeforeDepartureFilter
+//   groundTime[:<минуты>]          - ExcessiveGroundTimeFilter (по умолчанию - 120 минут)
+// Все правила без явного времени в одной записи используют одно и то же "текущее время".
+// Например: "departure@2024-01-01T12:00,arrival|!groundTime:60".
+
+public final class RuleSpec {
+
+    private RuleSpec() {
+        // Utility class
+    }
+
+    // Разбирает текстовую запись правила.
+    // @param spec запись правила
+    // @return правило фильтрации
+    // @throws IllegalArgumentException если запись некорректна
+
+    public static FilterRule parse(String spec) {
+        return parse(spec, LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Разбирает запись правила с заданным текущим временем (для departure без времени,
+    // standard, business, basic и custom). Так процессы, получившие одну запись, строят одно правило.
+
+    public static FilterRule parse(String spec, LocalDateTime currentTime) {
+        Objects.requireNonNull(spec, "Запись правила не может быть null");
+        Objects.requireNonNull(currentTime, "Текущее время не может быть null");
+        if (spec.isBlank()) {
+            throw new IllegalArgumentException("Запись правила не может быть пустой");
+        }
+
+        List<FilterRule> conditions = new ArrayList<>();
+        for (String condition : spec.split(",", -1)) {
+            List<FilterRule> alternatives = new ArrayList<>();
+            for (String alternative : condition.split("\\|", -1)) {
+                alternatives.add(parseTerm(alternative.trim(), currentTime));
+            }
+            conditions.add(alternatives.size() == 1
+                    ? alternatives.get(0)
+                    : FilterRules.combineRulesOr(alternatives.toArray(new FilterRule[0])));
+        }
+        return conditions.size() == 1
+                ? conditions.get(0)
+                : FilterRules.combineRules(conditions.toArray(new FilterRule[0]));
+    }
+
+    private static FilterRule parseTerm(String term, LocalDateTime currentTime) {
+        if (term.startsWith("!")) {
+            return parseTerm(term.substring(1).trim(), currentTime).negate();
+        }
+
+        String name = term;
+        String argument = null;
+        int separator = indexOfSeparator(term);
+        if (separator >= 0) {
+            name = term.substring(0, separator);
+            argument = term.substring(separator + 1);
+        }
+
+        switch (name) {
+            case "standard":
+                requireNoArgument(term, argument);
+                return FilterRules.createStandardFilter(currentTime);
+            case "business":
+                requireNoArgument(term, argument);
+                return FilterRules.createBusinessFilter(currentTime);
+            case "basic":
+                requireNoArgument(term, argument);
+                return FilterRules.createBasicFilter(currentTime);
+            case "custom":
+                return FilterRules.createCustomFilter(parseMinutes(term, argument), currentTime);
+            case "departure":
+                return argument == null
+                        ? new DepartureBeforeCurrentTimeFilter(currentTime)
+                        : new DepartureBeforeCurrentTimeFilter(parseDateTime(term, argument));
+            case "arrival":
+                requireNoArgument(term, argument);
+                return new ArrivalBeforeDepartureFilter();
+            case "groundTime":
+                return argument == null
+                        ? new ExcessiveGroundTimeFilter()
+                        : new ExcessiveGroundTimeFilter(parseMinutes(term, argument));
+            default:
+                throw new IllegalArgumentException("Неизвестное правило: '" + term + "'");
+        }
+    }
+
+    // Позиция ':' или '@' после имени правила (-1, если аргумента нет).
+
+    private static int indexOfSeparator(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == ':' || c == '@') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void requireNoArgument(String term, String argument) {
+        if (argument != null) {
+            throw new IllegalArgumentException("Правило не принимает аргументов: '" + term + "'");
+        }
+    }
+
+    private static long parseMinutes(String term, String argument) {
+        if (argument == null) {
+            throw new IllegalArgumentException("Не указано количество минут: '" + term + "'");
+        }
+        try {
+            return Long.parseLong(argument.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректное количество минут: '" + term + "'", e);
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String term, String argument) {
+        try {
+            return LocalDateTime.parse(argument.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректное время: '" + term + "'", e);
+        }
+    }
+}
\ No newline at end of file
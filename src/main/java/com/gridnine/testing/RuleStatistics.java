@@ -0,0 +1,68 @@
+package com.gridnine.testing;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Статистика вычисления правила: количество проверок, отклонений и затраченное время.
+// Счётчики потокобезопасны и рассчитаны на одновременное обновление из нескольких потоков.
+
+public final class RuleStatistics {
+
+    private final FilterRule rule;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public RuleStatistics(FilterRule rule) {
+        this.rule = rule;
+    }
+
+    // Учитывает одну проверку правила.
+    // @param accepted результат проверки
+    // @param elapsedNanos время проверки в наносекундах
+
+    public void record(boolean accepted, long elapsedNanos) {
+        evaluations.increment();
+        if (!accepted) {
+            rejections.increment();
+        }
+        nanos.add(elapsedNanos);
+    }
+
+    public FilterRule getRule() {
+        return rule;
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    // Доля отклонённых перелётов (0, если проверок ещё не было).
+
+    public double getRejectionRate() {
+        long count = evaluations.sum();
+        return count == 0 ? 0.0 : (double) rejections.sum() / count;
+    }
+
+    // Среднее время одной проверки в наносекундах (0, если проверок ещё не было).
+
+    public double getAverageNanos() {
+        long count = evaluations.sum();
+        return count == 0 ? 0.0 : (double) nanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleStatistics{rule=" + rule +
+                ", evaluations=" + getEvaluations() +
+                ", rejections=" + getRejections() +
+                ", totalNanos=" + getTotalNanos() + "}";
+    }
+}
\ No newline at end of file
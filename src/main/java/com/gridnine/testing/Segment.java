@@ -2,69 +2,116 @@ package com.gridnine.testing;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 
 // Этот класс, представляющий сегмент перелёта.
-// Подготовлен для будущей поддержки временных зон.
+// Вылет и прилёт могут быть заданы во временных зонах аэропортов; время без зоны считается временем UTC.
+// Оба момента один раз приводятся к секундам от эпохи UTC (ZoneOffsets), и все сравнения времени
+// в перелётах и правилах выполняются над этими числами.
 
 public class Segment {
     private final LocalDateTime departureDate;
     private final LocalDateTime arrivalDate;
-    private ZoneId timeZone; // Для будущего расширения
+    private final ZoneId departureZone;
+    private final ZoneId arrivalZone;
+    // Моменты вылета и прилёта в секундах от эпохи UTC (наносекунды берутся из departureDate/arrivalDate)
+    private final long departureEpochSecond;
+    private final long arrivalEpochSecond;
+    // Хеш-код вычисляется один раз: сегменты часто используются как ключи и при канонизации
+    private final int hash;
 
     public Segment(final LocalDateTime departureDate, final LocalDateTime arrivalDate) {
-        this.departureDate = Objects.requireNonNull(departureDate, "departureDate не может быть null");
-        this.arrivalDate = Objects.requireNonNull(arrivalDate, "arrivalDate не может быть null");
+        this(departureDate, arrivalDate, null, null);
     }
 
-    // Конструктор для будущего расширения с временными зонами.
+    // Сегмент, вылет и прилёт которого заданы в одной временной зоне.
 
     public Segment(final LocalDateTime departureDate, final LocalDateTime arrivalDate, ZoneId timeZone) {
-        this(departureDate, arrivalDate);
-        this.timeZone = timeZone;
+        this(departureDate, arrivalDate, timeZone, timeZone);
     }
 
-    // Конвертирует в ZonedDateTime (для будущего использования).
+    // Сегмент между аэропортами в разных временных зонах (null - время UTC).
 
-    public ZonedDateTime getDepartureZoned() {
-        return timeZone != null ?
-                ZonedDateTime.of(departureDate, timeZone) :
-                ZonedDateTime.of(departureDate, ZoneId.systemDefault());
+    public Segment(final LocalDateTime departureDate, final LocalDateTime arrivalDate,
+                   ZoneId departureZone, ZoneId arrivalZone) {
+        this.departureDate = Objects.requireNonNull(departureDate, "departureDate не может быть null");
+        this.arrivalDate = Objects.requireNonNull(arrivalDate, "arrivalDate не может быть null");
+        this.departureZone = departureZone;
+        this.arrivalZone = arrivalZone;
+        this.departureEpochSecond = ZoneOffsets.toEpochSecond(departureDate, departureZone);
+        this.arrivalEpochSecond = ZoneOffsets.toEpochSecond(arrivalDate, arrivalZone);
+        this.hash = 31 * (31 * (31 * departureDate.hashCode() + arrivalDate.hashCode())
+                + Objects.hashCode(departureZone)) + Objects.hashCode(arrivalZone);
     }
 
-    // Конвертирует в ZonedDateTime (для будущего использования).
+    public ZonedDateTime getDepartureZoned() {
+        return ZonedDateTime.of(departureDate, departureZone != null ? departureZone : ZoneOffset.UTC);
+    }
 
     public ZonedDateTime getArrivalZoned() {
-        return timeZone != null ?
-                ZonedDateTime.of(arrivalDate, timeZone) :
-                ZonedDateTime.of(arrivalDate, ZoneId.systemDefault());
+        return ZonedDateTime.of(arrivalDate, arrivalZone != null ? arrivalZone : ZoneOffset.UTC);
     }
 
+    // Местные дата и время вылета.
+
     public LocalDateTime getDepartureDate() {
         return departureDate;
     }
 
+    // Местные дата и время прилёта.
+
     public LocalDateTime getArrivalDate() {
         return arrivalDate;
     }
 
+    // Временная зона вылета (null - время UTC).
+
     public ZoneId getTimeZone() {
-        return timeZone;
+        return departureZone;
+    }
+
+    public ZoneId getDepartureZone() {
+        return departureZone;
+    }
+
+    public ZoneId getArrivalZone() {
+        return arrivalZone;
+    }
+
+    // Момент вылета в секундах от эпохи UTC.
+
+    public long getDepartureEpochSecond() {
+        return departureEpochSecond;
+    }
+
+    // Момент прилёта в секундах от эпохи UTC.
+
+    public long getArrivalEpochSecond() {
+        return arrivalEpochSecond;
     }
 
     // Проверяет, корректен ли сегмент (прилёт не раньше вылета)
 
     public boolean isValid() {
-        return !arrivalDate.isBefore(departureDate);
+        return !isBefore(arrivalEpochSecond, arrivalDate.getNano(), departureEpochSecond, departureDate.getNano());
+    }
+
+    // Сравнивает моменты, заданные секундами от эпохи и наносекундами.
+
+    static boolean isBefore(long second, int nano, long otherSecond, int otherNano) {
+        return second < otherSecond || (second == otherSecond && nano < otherNano);
     }
 
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        return "[" + departureDate.format(formatter) +
-                "|" + arrivalDate.format(formatter) + "]";
+        StringBuilder sb = new StringBuilder(35);
+        sb.append('[');
+        FlightPrinter.appendDateTime(sb, departureDate);
+        sb.append('|');
+        FlightPrinter.appendDateTime(sb, arrivalDate);
+        return sb.append(']').toString();
     }
 
     @Override
@@ -72,12 +119,15 @@ public class Segment {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Segment segment = (Segment) o;
-        return departureDate.equals(segment.departureDate) &&
-                arrivalDate.equals(segment.arrivalDate);
+        return hash == segment.hash &&
+                departureDate.equals(segment.departureDate) &&
+                arrivalDate.equals(segment.arrivalDate) &&
+                Objects.equals(departureZone, segment.departureZone) &&
+                Objects.equals(arrivalZone, segment.arrivalZone);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(departureDate, arrivalDate);
+        return hash;
     }
 }
\ No newline at end of file
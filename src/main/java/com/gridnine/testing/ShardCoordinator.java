@@ -0,0 +1,310 @@
+package com.gridnine.testing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Координатор шардированной фильтрации: запускает процессы ShardWorker, каждый со своей частью
+// шардов каталога (FlightShards), и рассылает им запись правила (RuleSpec) по локальным сокетам.
+// Дни, все вылеты которых раньше обязательного отсечения DepartureBeforeCurrentTimeFilter,
+// не запрашиваются, а обработчики без подходящих дней не получают запроса вовсе.
+// Ответы обработчиков уже упорядочены по самому раннему вылету, поэтому координатор сливает их
+// потоково (слияние K упорядоченных последовательностей), не дожидаясь полного результата.
+// Шарды хранятся и по сокету передаются в формате FlightCodec без потерь (зоны, доли секунды),
+// поэтому результат совпадает с FlightFilter на тех же данных, а слияние сравнивает точные моменты вылета.
+
+public final class ShardCoordinator implements AutoCloseable {
+
+    // Время ожидания завершения обработчика после закрытия его stdin
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
+    private final List<Worker> workers;
+    private final int shardCount;
+
+    private ShardCoordinator(List<Worker> workers, int shardCount) {
+        this.workers = workers;
+        this.shardCount = shardCount;
+    }
+
+    // Запускает workerCount процессов-обработчиков для шардов каталога.
+    // Процессы используют ту же JVM и classpath, что и текущий процесс.
+
+    public static ShardCoordinator launch(Path shardDirectory, int workerCount) throws IOException {
+        Objects.requireNonNull(shardDirectory, "Каталог шардов не может быть null");
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Количество обработчиков должно быть положительным");
+        }
+
+        SortedMap<Long, Path> shards = FlightShards.list(shardDirectory);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Worker> workers = new ArrayList<>(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardWorker.class.getName(), shardDirectory.toString(),
+                        Integer.toString(i), Integer.toString(workerCount))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                workers.add(new Worker(process, new TreeSet<>(ShardWorker.assigned(shards, i, workerCount).keySet())));
+            }
+            for (Worker worker : workers) {
+                worker.awaitReady();
+            }
+        } catch (IOException | RuntimeException e) {
+            workers.forEach(Worker::stop);
+            throw e;
+        }
+        return new ShardCoordinator(workers, shards.size());
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // Фильтрует все шарды.
+    // @return подходящие перелёты в порядке самого раннего вылета
+
+    public List<Flight> filter(String ruleSpec) throws IOException {
+        List<Flight> result = new ArrayList<>();
+        filter(ruleSpec, result::add);
+        return result;
+    }
+
+    // Фильтрует все шарды, передавая подходящие перелёты в consumer по мере слияния ответов
+    // в порядке самого раннего вылета.
+    // @return количество подходящих перелётов
+    // @throws IllegalArgumentException если запись правила некорректна
+    // @throws IOException если обработчик недоступен или ответил ошибкой
+
+    public long filter(String ruleSpec, Consumer<Flight> consumer) throws IOException {
+        Objects.requireNonNull(ruleSpec, "Запись правила не может быть null");
+        Objects.requireNonNull(consumer, "Обработчик не может быть null");
+        if (ruleSpec.indexOf('\n') >= 0 || ruleSpec.indexOf(ShardWorker.FIELD_SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Запись правила не может содержать табуляцию и перевод строки");
+        }
+
+        // Одно "текущее время" для всех обработчиков; заодно проверяем запись до рассылки
+        LocalDateTime currentTime = LocalDateTime.now(ZoneOffset.UTC);
+        SortedSet<Long> days = selectDays(RuleSpec.parse(ruleSpec, currentTime), allDays());
+
+        List<Response> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers.size(); i++) {
+                SortedSet<Long> workerDays = new TreeSet<>(workers.get(i).days);
+                workerDays.retainAll(days);
+                if (!workerDays.isEmpty()) {
+                    responses.add(workers.get(i).send(i, currentTime, workerDays, ruleSpec));
+                }
+            }
+
+            PriorityQueue<Response> queue = new PriorityQueue<>(Math.max(1, responses.size()),
+                    ShardCoordinator::compareHeads);
+            for (Response response : responses) {
+                if (response.advance()) {
+                    queue.add(response);
+                }
+            }
+            long count = 0;
+            while (!queue.isEmpty()) {
+                Response response = queue.poll();
+                consumer.accept(response.head);
+                count++;
+                if (response.advance()) {
+                    queue.add(response);
+                }
+            }
+            return count;
+        } finally {
+            for (Response response : responses) {
+                response.close();
+            }
+        }
+    }
+
+    // Дни, которые правило может пропустить: при обязательном отсечении по времени вылета
+    // отбрасываются дни, целиком лежащие раньше него.
+
+    static SortedSet<Long> selectDays(FilterRule rule, SortedSet<Long> days) {
+        LocalDateTime cutoff = FlightIndex.departureCutoff(rule);
+        if (cutoff == null) {
+            return days;
+        }
+        long cutoffSecond = cutoff.toEpochSecond(ZoneOffset.UTC);
+        SortedSet<Long> result = new TreeSet<>();
+        for (long day : days) {
+            if (day == FlightShards.NO_DEPARTURE_DAY
+                    || (day + 1) * FlightShards.SECONDS_PER_DAY > cutoffSecond) {
+                result.add(day);
+            }
+        }
+        return result;
+    }
+
+    private SortedSet<Long> allDays() {
+        SortedSet<Long> days = new TreeSet<>();
+        for (Worker worker : workers) {
+            days.addAll(worker.days);
+        }
+        return days;
+    }
+
+    // Порядок слияния: самый ранний вылет, при равенстве - номер обработчика. Перелёты с одинаковым
+    // моментом вылета лежат в одном шарде дня, поэтому номер обработчика их не переупорядочивает.
+
+    private static int compareHeads(Response a, Response b) {
+        int result = Long.compare(a.head.getEarliestDepartureEpochSecond(), b.head.getEarliestDepartureEpochSecond());
+        if (result == 0) {
+            result = Integer.compare(a.head.getEarliestDepartureNano(), b.head.getEarliestDepartureNano());
+        }
+        return result != 0 ? result : Integer.compare(a.workerIndex, b.workerIndex);
+    }
+
+    // Останавливает процессы-обработчики.
+
+    @Override
+    public void close() {
+        workers.forEach(Worker::stop);
+    }
+
+    // Процесс-обработчик и его дни.
+
+    private static final class Worker {
+        private final Process process;
+        private final SortedSet<Long> days;
+        private int port;
+
+        Worker(Process process, SortedSet<Long> days) {
+            this.process = process;
+            this.days = days;
+        }
+
+        // Ждёт строки "READY <порт>" в stdout обработчика.
+
+        void awaitReady() throws IOException {
+            BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line = output.readLine();
+            if (line == null || !line.startsWith(ShardWorker.READY)) {
+                throw new IOException("Обработчик шардов не запустился: " + line);
+            }
+            port = Integer.parseInt(line.substring(ShardWorker.READY.length()).trim());
+        }
+
+        Response send(int workerIndex, LocalDateTime currentTime, SortedSet<Long> requestedDays,
+                      String ruleSpec) throws IOException {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            try {
+                StringJoiner dayList = new StringJoiner(",");
+                requestedDays.forEach(day -> dayList.add(Long.toString(day)));
+                Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                writer.write(ShardWorker.FILTER + ShardWorker.FIELD_SEPARATOR + currentTime
+                        + ShardWorker.FIELD_SEPARATOR + dayList + ShardWorker.FIELD_SEPARATOR + ruleSpec + '\n');
+                writer.flush();
+                return new Response(workerIndex, socket);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void stop() {
+            try {
+                process.getOutputStream().close();
+                if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Поток ответа одного обработчика с текущим (ещё не переданным) перелётом.
+
+    private static final class Response {
+        private final int workerIndex;
+        private final Socket socket;
+        private final InputStream in;
+        // Создаётся при первом чтении, после строки состояния
+        private FlightCodec.Decoder decoder;
+        private Flight head;
+
+        Response(int workerIndex, Socket socket) throws IOException {
+            this.workerIndex = workerIndex;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        // Читает следующий перелёт; false - ответ закончился.
+
+        boolean advance() throws IOException {
+            try {
+                if (decoder == null) {
+                    String status = readLine();
+                    if (status.startsWith(ShardWorker.ERROR + ShardWorker.FIELD_SEPARATOR)) {
+                        throw new IOException("Обработчик шардов #" + workerIndex + ": "
+                                + status.substring(ShardWorker.ERROR.length() + 1));
+                    }
+                    if (!status.equals(ShardWorker.OK)) {
+                        throw new IOException("Обработчик шардов #" + workerIndex + " ответил: " + status);
+                    }
+                    decoder = FlightCodec.newDecoder(in);
+                }
+                head = decoder.read();
+            } catch (EOFException e) {
+                throw new IOException("Обработчик шардов #" + workerIndex + " прервал ответ", e);
+            }
+            return head != null;
+        }
+
+        // Строка состояния ответа (UTF-8 до перевода строки); читается побайтно, чтобы не забрать
+        // данные FlightCodec, которые идут следом.
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                line.write(b);
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.gridnine.testing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Процесс-обработчик шардов для ShardCoordinator.
+// Загружает свою часть шардов каталога (FlightShards) в индексы по времени вылета и принимает
+// запросы на локальном сокете. Одно соединение - один запрос:
+//   запрос:  FILTER\t<текущее время>\t<дни через запятую>\t<запись правила RuleSpec> (строка UTF-8)
+//   ответ:   строка OK, затем подходящие перелёты указанных дней в порядке самого раннего вылета
+//            в формате FlightCodec (без потерь точности) до его признака конца;
+//            или строка ERROR\t<сообщение>, если запрос некорректен
+// Запуск: java com.gridnine.testing.ShardWorker <каталог шардов> <номер обработчика> <число обработчиков>
+// После запуска печатает в stdout "READY <порт>" и работает, пока не закроется stdin.
+
+public final class ShardWorker implements AutoCloseable {
+
+    static final String READY = "READY ";
+    static final String FILTER = "FILTER";
+    static final String OK = "OK";
+    static final String ERROR = "ERROR";
+    static final char FIELD_SEPARATOR = '\t';
+
+    private final Map<Long, FlightIndex> shards;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FlightFilter filter = new FlightFilter();
+
+    private ShardWorker(Map<Long, FlightIndex> shards, ServerSocket serverSocket) {
+        this.shards = shards;
+        this.serverSocket = serverSocket;
+    }
+
+    // Загружает шарды, назначенные обработчику workerIndex из workerCount, и начинает принимать
+    // запросы на свободном порту loopback-интерфейса.
+
+    public static ShardWorker start(Path shardDirectory, int workerIndex, int workerCount) throws IOException {
+        Map<Long, FlightIndex> shards = new HashMap<>();
+        for (Map.Entry<Long, Path> shard : assigned(FlightShards.list(shardDirectory),
+                workerIndex, workerCount).entrySet()) {
+            shards.put(shard.getKey(), FlightIndex.of(FlightCodec.readSnapshot(shard.getValue())));
+        }
+
+        ShardWorker worker = new ShardWorker(shards,
+                new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+        worker.executor.execute(worker::acceptLoop);
+        return worker;
+    }
+
+    // Шарды обработчика workerIndex: дни распределяются по кругу, чтобы соседние (и самые
+    // востребованные ближайшие) дни обрабатывались разными процессами.
+
+    static SortedMap<Long, Path> assigned(SortedMap<Long, Path> shards, int workerIndex, int workerCount) {
+        if (workerCount <= 0 || workerIndex < 0 || workerIndex >= workerCount) {
+            throw new IllegalArgumentException("Некорректный номер обработчика: " + workerIndex + " из " + workerCount);
+        }
+        SortedMap<Long, Path> result = new TreeMap<>();
+        int position = 0;
+        for (Map.Entry<Long, Path> shard : shards.entrySet()) {
+            if (position++ % workerCount == workerIndex) {
+                result.put(shard.getKey(), shard.getValue());
+            }
+        }
+        return result;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> handle(socket));
+            } catch (IOException e) {
+                // сокет закрыт в close()
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream out = socket.getOutputStream()) {
+            String request = reader.readLine();
+            LocalDateTime currentTime;
+            FilterRule rule;
+            List<FlightIndex> indexes;
+            try {
+                String[] fields = parseRequest(request);
+                currentTime = parseCurrentTime(fields[1]);
+                rule = RuleSpec.parse(fields[3], currentTime);
+                indexes = requestedShards(fields[2]);
+            } catch (IllegalArgumentException e) {
+                writeLine(out, ERROR + FIELD_SEPARATOR + String.valueOf(e.getMessage()).replace('\n', ' '));
+                return;
+            }
+
+            writeLine(out, OK);
+            // Базовый момент - текущее время: вылеты ответа обычно близко к нему
+            FlightCodec.Encoder encoder = FlightCodec.newEncoder(out, currentTime.toEpochSecond(ZoneOffset.UTC));
+            for (FlightIndex index : indexes) {
+                encoder.writeAll(filter.filter(index, rule));
+            }
+            encoder.finish();
+        } catch (IOException e) {
+            // соединение разорвано координатором
+        }
+    }
+
+    private static String[] parseRequest(String request) {
+        String[] fields = request == null ? new String[0] : request.split(String.valueOf(FIELD_SEPARATOR), 4);
+        if (fields.length != 4 || !fields[0].equals(FILTER)) {
+            throw new IllegalArgumentException("Некорректный запрос: " + request);
+        }
+        return fields;
+    }
+
+    private static LocalDateTime parseCurrentTime(String text) {
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректное текущее время: " + text, e);
+        }
+    }
+
+    // Индексы запрошенных дней; все дни проверяются до начала ответа.
+
+    private List<FlightIndex> requestedShards(String days) {
+        List<FlightIndex> indexes = new ArrayList<>();
+        for (String day : days.split(",")) {
+            if (day.isEmpty()) {
+                continue;
+            }
+            FlightIndex index = shards.get(parseDay(day));
+            if (index == null) {
+                throw new IllegalArgumentException("Шард дня " + day + " не принадлежит обработчику");
+            }
+            indexes.add(index);
+        }
+        return indexes;
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long parseDay(String day) {
+        try {
+            return Long.parseLong(day);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный день шарда: " + day, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Использование: ShardWorker <каталог шардов> <номер обработчика> <число обработчиков>");
+            System.exit(2);
+        }
+
+        try (ShardWorker worker = start(Path.of(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]))) {
+            System.out.println(READY + worker.getPort());
+            System.out.flush();
+            // Координатор закрывает stdin при остановке (или при своём завершении)
+            while (System.in.read() != -1) {
+                // ждём закрытия
+            }
+        }
+    }
+}
\ No newline at end of file
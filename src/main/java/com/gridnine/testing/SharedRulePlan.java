@@ -0,0 +1,186 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// План совместной проверки нескольких правил за один проход (FlightFilter.filterAll).
+// Деревья правил сливаются в общий граф: узлы с равными ключами RuleKey (а для правил без ключа -
+// один и тот же объект) становятся одним узлом. При проверке перелёта результат каждого узла
+// запоминается (Memo), поэтому общие условия - например, отсечение по вылету и проверка прилёта
+// во всех правилах FilterRules - вычисляются для перелёта один раз, сколько бы правил их ни содержало.
+// План неизменяем; Memo не потокобезопасен, у каждого потока свой.
+
+final class SharedRulePlan {
+
+    private static final byte LEAF = 0;
+    private static final byte AND = 1;
+    private static final byte OR = 2;
+    private static final byte NOT = 3;
+
+    private final byte[] kinds;
+    private final int[][] children;
+    private final FilterRule[] leaves;
+    // Корневой узел каждого правила
+    private final int[] roots;
+
+    private SharedRulePlan(byte[] kinds, int[][] children, FilterRule[] leaves, int[] roots) {
+        this.kinds = kinds;
+        this.children = children;
+        this.leaves = leaves;
+        this.roots = roots;
+    }
+
+    // Строит план для списка правил.
+
+    static SharedRulePlan of(List<FilterRule> rules) {
+        Builder builder = new Builder();
+        int[] roots = new int[rules.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = builder.add(Objects.requireNonNull(rules.get(i), "Правило фильтрации не может быть null"));
+        }
+        int size = builder.kinds.size();
+        byte[] kinds = new byte[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = builder.kinds.get(i);
+        }
+        return new SharedRulePlan(kinds, builder.children.toArray(new int[0][]),
+                builder.leaves.toArray(new FilterRule[0]), roots);
+    }
+
+    int getQueryCount() {
+        return roots.length;
+    }
+
+    // Количество различных узлов графа (после слияния общих условий).
+
+    int getNodeCount() {
+        return kinds.length;
+    }
+
+    Memo newMemo() {
+        return new Memo(kinds.length);
+    }
+
+    // Проверяет перелёт правилом query. Перед первым правилом для нового перелёта
+    // нужно вызвать memo.next(), иначе будут использованы результаты предыдущего перелёта.
+
+    boolean test(int query, Flight flight, Memo memo) {
+        return evaluate(roots[query], flight, memo);
+    }
+
+    private boolean evaluate(int node, Flight flight, Memo memo) {
+        if (memo.stamps[node] == memo.stamp) {
+            return memo.values[node];
+        }
+
+        boolean result;
+        switch (kinds[node]) {
+            case AND:
+                result = true;
+                for (int child : children[node]) {
+                    if (!evaluate(child, flight, memo)) {
+                        result = false;
+                        break;
+                    }
+                }
+                break;
+            case OR:
+                result = false;
+                for (int child : children[node]) {
+                    if (evaluate(child, flight, memo)) {
+                        result = true;
+                        break;
+                    }
+                }
+                break;
+            case NOT:
+                result = !evaluate(children[node][0], flight, memo);
+                break;
+            default:
+                result = leaves[node].test(flight);
+                break;
+        }
+        memo.stamps[node] = memo.stamp;
+        memo.values[node] = result;
+        return result;
+    }
+
+    // Результаты узлов для текущего перелёта. Узел вычислен, если его метка равна текущей.
+
+    static final class Memo {
+        private final int[] stamps;
+        private final boolean[] values;
+        private int stamp;
+
+        private Memo(int size) {
+            this.stamps = new int[size];
+            this.values = new boolean[size];
+        }
+
+        // Переходит к следующему перелёту: все запомненные результаты становятся недействительными.
+
+        void next() {
+            if (++stamp == 0) {
+                // После переполнения метки старые совпадения невозможны только с чистым массивом
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+    }
+
+    private static final class Builder {
+        private final List<Byte> kinds = new ArrayList<>();
+        private final List<int[]> children = new ArrayList<>();
+        private final List<FilterRule> leaves = new ArrayList<>();
+        private final Map<RuleKey, Integer> byKey = new HashMap<>();
+        private final Map<FilterRule, Integer> byIdentity = new IdentityHashMap<>();
+
+        int add(FilterRule rule) {
+            Integer existing = byIdentity.get(rule);
+            if (existing != null) {
+                return existing;
+            }
+            RuleKey key = rule.getKey();
+            if (key != null) {
+                existing = byKey.get(key);
+                if (existing != null) {
+                    byIdentity.put(rule, existing);
+                    return existing;
+                }
+            }
+
+            int node;
+            if (rule instanceof CompositeRule) {
+                CompositeRule composite = (CompositeRule) rule;
+                List<FilterRule> ruleChildren = composite.getChildren();
+                int[] childNodes = new int[ruleChildren.size()];
+                for (int i = 0; i < childNodes.length; i++) {
+                    childNodes[i] = add(ruleChildren.get(i));
+                }
+                node = newNode(composite.getOperator() == CompositeRule.Operator.AND ? AND : OR, childNodes, null);
+            } else if (rule instanceof NotRule) {
+                node = newNode(NOT, new int[]{add(((NotRule) rule).getRule())}, null);
+            } else {
+                node = newNode(LEAF, null, rule);
+            }
+
+            byIdentity.put(rule, node);
+            if (key != null) {
+                byKey.put(key, node);
+            }
+            return node;
+        }
+
+        private int newNode(byte kind, int[] nodeChildren, FilterRule leaf) {
+            kinds.add(kind);
+            children.add(nodeChildren);
+            leaves.add(leaf);
+            return kinds.size() - 1;
+        }
+    }
+}
\ No newline at end of file
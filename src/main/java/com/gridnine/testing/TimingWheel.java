@@ -0,0 +1,141 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Иерархическое колесо таймеров.
+// Каждый уровень состоит из 64 ячеек; ячейка уровня L покрывает 64^L тиков.
+// Элемент кладётся на уровень, соответствующий удалённости срока, и по мере приближения
+// срока опускается на нижние уровни. Стоимость продвижения времени пропорциональна
+// количеству прошедших тиков и сработавших элементов, а не общему числу элементов.
+// Класс не потокобезопасен.
+
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // 5 уровней покрывают 2^30 тиков (для минут - около 2000 лет)
+    private static final int LEVELS = 5;
+
+    private final List<List<Entry<T>>> wheels = new ArrayList<>(LEVELS * SLOTS);
+    // Элементы со сроком дальше последнего уровня
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    // Элементы, срок которых уже наступил, но они ещё не выданы
+    private final List<Entry<T>> due = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            wheels.add(new ArrayList<>());
+        }
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Планирует элемент на указанный тик.
+    // Элементы с уже наступившим сроком будут выданы при следующем продвижении.
+
+    void schedule(T item, long tick) {
+        size++;
+        place(new Entry<>(item, tick));
+    }
+
+    // Продвигает время до targetTick включительно и передаёт в consumer элементы,
+    // срок которых наступил (tick <= targetTick).
+
+    void advanceTo(long targetTick, Consumer<? super T> consumer) {
+        fire(due, consumer);
+
+        if (size == 0 && targetTick > currentTick) {
+            // Пустое колесо можно передвинуть сразу
+            currentTick = targetTick;
+            return;
+        }
+
+        while (currentTick < targetTick) {
+            currentTick++;
+            int index = (int) (currentTick & SLOT_MASK);
+            if (index == 0) {
+                cascade(1);
+            }
+            fire(wheels.get(index), consumer);
+            fire(due, consumer);
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick - currentTick;
+        if (delta <= 0) {
+            due.add(entry);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                int index = (int) ((entry.tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                wheels.get(level * SLOTS + index).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    // Переносит элементы текущей ячейки уровня level на нижние уровни.
+    // Когда ячейка уровня возвращается к нулю, каскадируется и следующий уровень.
+
+    private void cascade(int level) {
+        if (level == LEVELS) {
+            redistribute(overflow);
+            return;
+        }
+
+        int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (index == 0) {
+            cascade(level + 1);
+        }
+        redistribute(wheels.get(level * SLOTS + index));
+    }
+
+    private void redistribute(List<Entry<T>> slot) {
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<Entry<T>> entries = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<T> entry : entries) {
+            place(entry);
+        }
+    }
+
+    private void fire(List<Entry<T>> slot, Consumer<? super T> consumer) {
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<Entry<T>> entries = new ArrayList<>(slot);
+        slot.clear();
+        size -= entries.size();
+        for (Entry<T> entry : entries) {
+            consumer.accept(entry.item);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long tick;
+
+        Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
\ No newline at end of file
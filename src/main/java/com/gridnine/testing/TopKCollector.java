@@ -0,0 +1,157 @@
+package com.gridnine.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// Накопитель K лучших перелётов по критерию FlightRanking.
+// Хранит не больше K перелётов в двоичной куче, на вершине которой худший из сохранённых,
+// поэтому каждый новый перелёт сравнивается с одним элементом, а память - O(K).
+// При равных значениях критерия лучше перелёт с меньшим порядковым номером во входных данных,
+// так что результат совпадает с первыми K элементами устойчивой сортировки полного результата.
+// Накопители отдельных кусков входных данных объединяются методом merge.
+// Класс не потокобезопасен: каждый поток использует свой накопитель.
+
+public final class TopKCollector {
+
+    // Начальная вместимость кучи; дальше она растёт вдвое, но не больше K
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final FlightRanking ranking;
+    private final int k;
+
+    // Куча: элемент i хуже своих потомков 2i+1 и 2i+2
+    private Flight[] flights;
+    private long[] scores;
+    private long[] ordinals;
+    private int size;
+
+    public TopKCollector(FlightRanking ranking, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Количество перелётов не может быть отрицательным");
+        }
+        this.ranking = Objects.requireNonNull(ranking, "Критерий ранжирования не может быть null");
+        this.k = k;
+        int capacity = Math.min(k, INITIAL_CAPACITY);
+        this.flights = new Flight[capacity];
+        this.scores = new long[capacity];
+        this.ordinals = new long[capacity];
+    }
+
+    public FlightRanking getRanking() {
+        return ranking;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Учитывает перелёт.
+    // @param flight перелёт
+    // @param ordinal порядковый номер перелёта во входных данных (для равных значений критерия)
+
+    public void offer(Flight flight, long ordinal) {
+        offer(flight, ranking.score(flight), ordinal);
+    }
+
+    private void offer(Flight flight, long score, long ordinal) {
+        if (size < k) {
+            if (size == flights.length) {
+                grow();
+            }
+            flights[size] = flight;
+            scores[size] = score;
+            ordinals[size] = ordinal;
+            siftUp(size++);
+        } else if (k > 0 && isBetter(score, ordinal, scores[0], ordinals[0])) {
+            flights[0] = flight;
+            scores[0] = score;
+            ordinals[0] = ordinal;
+            siftDown(0);
+        }
+    }
+
+    // Добавляет перелёты другого накопителя с тем же критерием.
+
+    public void merge(TopKCollector other) {
+        Objects.requireNonNull(other, "Накопитель не может быть null");
+        if (other.ranking != ranking) {
+            throw new IllegalArgumentException("Нельзя объединить накопители с разными критериями");
+        }
+        for (int i = 0; i < other.size; i++) {
+            offer(other.flights[i], other.scores[i], other.ordinals[i]);
+        }
+    }
+
+    // Сохранённые перелёты от лучшего к худшему.
+
+    public List<Flight> toList() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0
+                : isBetter(scores[a], ordinals[a], scores[b], ordinals[b]) ? -1 : 1);
+
+        List<Flight> result = new ArrayList<>(size);
+        for (int index : order) {
+            result.add(flights[index]);
+        }
+        return result;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(k, 2L * flights.length);
+        flights = Arrays.copyOf(flights, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        ordinals = Arrays.copyOf(ordinals, capacity);
+    }
+
+    private static boolean isBetter(long score, long ordinal, long otherScore, long otherOrdinal) {
+        return score < otherScore || (score == otherScore && ordinal < otherOrdinal);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(scores[parent], ordinals[parent], scores[index], ordinals[index])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (isBetter(scores[worst], ordinals[worst], scores[child], ordinals[child])) {
+                    worst = child;
+                }
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Flight flight = flights[i];
+        flights[i] = flights[j];
+        flights[j] = flight;
+        long score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        long ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+    }
+}
\ No newline at end of file
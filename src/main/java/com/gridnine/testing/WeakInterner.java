@@ -0,0 +1,83 @@
+package com.gridnine.testing;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Потокобезопасный пул канонических экземпляров на слабых ссылках.
+// Пул не удерживает объекты: когда канонический экземпляр больше нигде не используется,
+// сборщик мусора освобождает его, а запись пула удаляется при следующем обращении.
+
+final class WeakInterner<T> {
+
+    private final ConcurrentHashMap<Entry<T>, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    // Возвращает канонический экземпляр, равный value (value становится каноническим, если такого нет).
+
+    T intern(T value) {
+        Objects.requireNonNull(value, "Значение не может быть null");
+        expungeStaleEntries();
+
+        Entry<T> probe = new Entry<>(value, null);
+        while (true) {
+            Entry<T> existing = entries.get(probe);
+            if (existing != null) {
+                T canonical = existing.get();
+                if (canonical != null) {
+                    return canonical;
+                }
+                // Экземпляр уже собран, но запись ещё не удалена
+                entries.remove(existing, existing);
+                continue;
+            }
+            Entry<T> entry = new Entry<>(value, queue);
+            if (entries.putIfAbsent(entry, entry) == null) {
+                return value;
+            }
+        }
+    }
+
+    // Количество записей пула (включая ещё не удалённые записи собранных экземпляров).
+
+    int size() {
+        expungeStaleEntries();
+        return entries.size();
+    }
+
+    private void expungeStaleEntries() {
+        Reference<? extends T> reference;
+        while ((reference = queue.poll()) != null) {
+            entries.remove(reference);
+        }
+    }
+
+    // Слабая ссылка с хеш-кодом объекта, сохранённым при создании.
+    // Записи равны, если это одна запись или их объекты ещё живы и равны.
+
+    private static final class Entry<T> extends WeakReference<T> {
+        private final int hash;
+
+        Entry(T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry<?> other = (Entry<?>) o;
+            if (hash != other.hash) return false;
+            Object value = get();
+            return value != null && value.equals(other.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.gridnine.testing;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Перевод локальной даты и времени временной зоны в секунды от эпохи UTC без создания объектов.
+// Для каждой зоны один раз строится таблица переходов (смен смещения) до конца TABLE_END_YEAR:
+// для перехода с localBefore = момент + смещение до, localAfter = момент + смещение после
+// локальное время L относится к смещению "до", если L < max(localBefore, localAfter).
+// Так в разрыве (переход на летнее время) используется смещение до перехода, а в перекрытии
+// (переход на зимнее время) - более раннее смещение, как в ZonedDateTime.of.
+// Времена за пределами таблицы переводятся через ZoneRules.
+
+final class ZoneOffsets {
+
+    // Переходы зон с действующими правилами заранее вычисляются до этого года
+    private static final int TABLE_END_YEAR = 2100;
+
+    private static final ConcurrentHashMap<ZoneId, ZoneOffsets> CACHE = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+    // Границы max(localBefore, localAfter) переходов в локальных секундах, по возрастанию
+    private final long[] thresholds;
+    // offsets[i] - смещение в секундах для локальных времён между thresholds[i - 1] и thresholds[i]
+    private final int[] offsets;
+    // Локальные времена от этой границы переводятся через ZoneRules
+    private final long tableEnd;
+
+    private ZoneOffsets(ZoneId zone, long[] thresholds, int[] offsets, long tableEnd) {
+        this.zone = zone;
+        this.thresholds = thresholds;
+        this.offsets = offsets;
+        this.tableEnd = tableEnd;
+    }
+
+    // Секунды от эпохи UTC для локального времени в зоне.
+    // Время без зоны (zone == null) считается временем UTC.
+
+    static long toEpochSecond(LocalDateTime local, ZoneId zone) {
+        long localSecond = local.toEpochSecond(ZoneOffset.UTC);
+        if (zone == null) {
+            return localSecond;
+        }
+        if (zone instanceof ZoneOffset) {
+            return localSecond - ((ZoneOffset) zone).getTotalSeconds();
+        }
+        return CACHE.computeIfAbsent(zone, ZoneOffsets::build).toEpochSecond(localSecond, local);
+    }
+
+    private long toEpochSecond(long localSecond, LocalDateTime local) {
+        if (localSecond >= tableEnd) {
+            return local.atZone(zone).toEpochSecond();
+        }
+        // Количество границ, не превышающих localSecond
+        int index = Arrays.binarySearch(thresholds, localSecond);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return localSecond - offsets[index];
+    }
+
+    private static ZoneOffsets build(ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            return new ZoneOffsets(zone, new long[0],
+                    new int[]{rules.getOffset(Instant.EPOCH).getTotalSeconds()}, Long.MAX_VALUE);
+        }
+
+        Instant end = LocalDateTime.of(TABLE_END_YEAR, 1, 1, 0, 0).toInstant(ZoneOffset.UTC);
+        List<ZoneOffsetTransition> history = rules.getTransitions();
+        Instant cursor = history.isEmpty()
+                ? LocalDateTime.of(1800, 1, 1, 0, 0).toInstant(ZoneOffset.UTC)
+                : history.get(0).getInstant().minusSeconds(1);
+
+        List<ZoneOffsetTransition> transitions = new ArrayList<>();
+        ZoneOffsetTransition transition;
+        while ((transition = rules.nextTransition(cursor)) != null && transition.getInstant().isBefore(end)) {
+            transitions.add(transition);
+            cursor = transition.getInstant();
+        }
+
+        long[] thresholds = new long[transitions.size()];
+        int[] offsets = new int[transitions.size() + 1];
+        offsets[0] = transitions.isEmpty()
+                ? rules.getOffset(Instant.EPOCH).getTotalSeconds()
+                : transitions.get(0).getOffsetBefore().getTotalSeconds();
+        for (int i = 0; i < transitions.size(); i++) {
+            ZoneOffsetTransition t = transitions.get(i);
+            long second = t.getInstant().getEpochSecond();
+            long localBefore = second + t.getOffsetBefore().getTotalSeconds();
+            long localAfter = second + t.getOffsetAfter().getTotalSeconds();
+            thresholds[i] = Math.max(localBefore, localAfter);
+            offsets[i + 1] = t.getOffsetAfter().getTotalSeconds();
+        }
+
+        // Без действующих правил все переходы уже в таблице; иначе за её концом - ZoneRules (с запасом в сутки)
+        long tableEnd = rules.getTransitionRules().isEmpty() && transition == null
+                ? Long.MAX_VALUE
+                : end.getEpochSecond() - 86_400;
+        return new ZoneOffsets(zone, thresholds, offsets, tableEnd);
+    }
+}
\ No newline at end of file
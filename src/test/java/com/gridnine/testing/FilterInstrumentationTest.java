@@ -0,0 +1,128 @@
+package com.gridnine.testing;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import static com.gridnine.testing.TestFlights.NOW;
+import static com.gridnine.testing.TestFlights.sampleFlights;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты инструментирования фильтрации (статистика правил, JMX, JFR).
+
+public class FilterInstrumentationTest {
+
+    private static final String GROUND_TIME = "ExcessiveGroundTimeFilter{maxGroundTimeMinutes=60}";
+
+    @Test
+    void testRuleAndCallStatistics() {
+        try (FilterInstrumentation instrumentation = new FilterInstrumentation("statistics")) {
+            FlightFilter filter = new FlightFilter().instrumented(instrumentation);
+            FilterRule rule = new ArrivalBeforeDepartureFilter().and(new ExcessiveGroundTimeFilter(60));
+
+            List<Flight> result = filter.filter(sampleFlights(), rule);
+
+            assertEquals(2, result.size());
+            assertEquals(1, instrumentation.getFilterCalls());
+            assertEquals(4, instrumentation.getFlightsIn());
+            assertEquals(2, instrumentation.getFlightsOut());
+
+            // Правило AND проверяет второе условие только для перелётов, прошедших первое
+            long groundTimeEvaluations = instrumentation.getRuleEvaluations().get(GROUND_TIME);
+            long arrivalEvaluations = instrumentation.getRuleEvaluations()
+                    .get(new ArrivalBeforeDepartureFilter().toString());
+            assertEquals(7, groundTimeEvaluations + arrivalEvaluations);
+            assertEquals(2, instrumentation.getRuleRejections().values().stream().mapToLong(Long::longValue).sum());
+
+            // Выключенное инструментирование ничего не учитывает
+            instrumentation.setEnabled(false);
+            assertEquals(result, filter.filter(sampleFlights(), rule));
+            assertEquals(1, instrumentation.getFilterCalls());
+
+            instrumentation.reset();
+            assertEquals(0, instrumentation.getFilterCalls());
+            assertTrue(instrumentation.getRuleEvaluations().isEmpty());
+        }
+    }
+
+    @Test
+    void testRuleStatisticsAreBounded() {
+        try (FilterInstrumentation instrumentation = new FilterInstrumentation("bounded")) {
+            FlightFilter filter = new FlightFilter().instrumented(instrumentation);
+
+            // Каждый вызов берёт своё "сейчас", но статистика правила вылета одна
+            for (int i = 0; i < 3; i++) {
+                filter.filter(sampleFlights(), FilterRules.createStandardFilter(NOW.plusSeconds(i)));
+                int minSegments = i + 1;
+                filter.filter(sampleFlights(), flight -> flight.getSegmentCount() > minSegments);
+            }
+            assertEquals(4, instrumentation.getRuleEvaluations().size());
+            assertEquals(12, instrumentation.getRuleEvaluations().get("DepartureBeforeCurrentTimeFilter"));
+
+            for (int i = 0; i < FilterInstrumentation.MAX_TRACKED_RULES + 10; i++) {
+                instrumentation.statisticsFor(new ExcessiveGroundTimeFilter(i));
+            }
+            assertEquals(FilterInstrumentation.MAX_TRACKED_RULES + 1, instrumentation.getRuleEvaluations().size());
+            assertTrue(instrumentation.getRuleEvaluations().containsKey(FilterInstrumentation.OTHER_RULES));
+        }
+    }
+
+    @Test
+    void testMBeanAttributes() throws Exception {
+        try (FilterInstrumentation instrumentation = new FilterInstrumentation("mbean")) {
+            ObjectName name = instrumentation.registerMBean();
+            new FlightFilter().instrumented(instrumentation)
+                    .filter(sampleFlights(), new ExcessiveGroundTimeFilter(60));
+
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "FilterCalls"));
+
+            TabularData evaluations = (TabularData) server.getAttribute(name, "RuleEvaluations");
+            CompositeData row = evaluations.get(new Object[]{GROUND_TIME});
+            assertEquals(4L, row.get("value"));
+
+            instrumentation.close();
+            assertFalse(server.isRegistered(name));
+        }
+    }
+
+    @Test
+    void testFilterCallEventIsRecorded(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("filter.jfr");
+        try (FilterInstrumentation instrumentation = new FilterInstrumentation("jfr");
+             Recording recording = new Recording()) {
+            recording.enable("com.gridnine.testing.FlightFilter");
+            recording.start();
+            new FlightFilter().instrumented(instrumentation)
+                    .filter(sampleFlights(), new ExcessiveGroundTimeFilter(60));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent event = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.gridnine.testing.FlightFilter"))
+                .filter(e -> "jfr".equals(e.getString("instrumentation")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(GROUND_TIME, event.getString("rule"));
+        assertEquals(4, event.getInt("flightsIn"));
+        assertEquals(3, event.getInt("flightsOut"));
+    }
+
+    @Test
+    void testUninstrumentedFilterHasNoStatistics() {
+        FilterInstrumentation instrumentation = new FilterInstrumentation("unused");
+        new FlightFilter().filter(sampleFlights(), new ExcessiveGroundTimeFilter(60));
+        assertEquals(Map.of(), instrumentation.getRuleEvaluations());
+        instrumentation.close();
+    }
+}
\ No newline at end of file
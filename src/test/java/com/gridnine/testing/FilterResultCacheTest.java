@@ -0,0 +1,151 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.List;
+import static com.gridnine.testing.TestFlights.NOW;
+import static com.gridnine.testing.TestFlights.sampleFlights;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты канонических ключей правил и кэша результатов фильтрации.
+
+public class FilterResultCacheTest {
+
+    @Test
+    void testRuleKeys() {
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(10));
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+
+        assertEquals("ExcessiveGroundTime(60)", new ExcessiveGroundTimeFilter(60).getKey().toString());
+        // Время в ключе точное: разные секунды одной минуты дают разные ключи
+        assertEquals(departure.getKey(), new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(10)).getKey());
+        assertNotEquals(departure.getKey(), new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(50)).getKey());
+
+        // Порядок дочерних правил не влияет на ключ
+        assertEquals(departure.and(arrival).getKey(), arrival.and(departure).getKey());
+        assertNotEquals(departure.and(arrival).getKey(), departure.or(arrival).getKey());
+        assertEquals(arrival.getKey(), FilterRules.combineRules(arrival).getKey());
+        assertEquals("NOT(ArrivalBeforeDeparture)", arrival.negate().getKey().toString());
+
+        // У лямбды нет ключа, как и у составного правила с лямбдой
+        FilterRule lambda = flight -> true;
+        assertNull(lambda.getKey());
+        assertNull(arrival.and(lambda).getKey());
+    }
+
+    @Test
+    void testRuleKeyParametersAreEscaped() {
+        RuleKey joined = RuleKey.of("X", "a,b");
+        RuleKey separate = RuleKey.of("X", "a", "b");
+        assertNotEquals(joined, separate);
+        assertNotEquals(RuleKey.of("X", "a)"), RuleKey.of("X(a"));
+        assertEquals("X(a\\,b)", joined.toString());
+
+        // Кэш не выдаёт результат одного правила другому с похожими параметрами
+        FlightDataset dataset = new FlightDataset("inventory", sampleFlights());
+        FilterResultCache cache = new FilterResultCache(10, 1_000);
+        assertEquals(sampleFlights().size(), cache.filter(dataset, keyedRule(joined, true)).size());
+        assertEquals(0, cache.filter(dataset, keyedRule(separate, false)).size());
+        assertEquals(2, cache.size());
+    }
+
+    private static FilterRule keyedRule(RuleKey key, boolean result) {
+        return new FilterRule() {
+            @Override
+            public boolean test(Flight flight) {
+                return result;
+            }
+
+            @Override
+            public RuleKey getKey() {
+                return key;
+            }
+        };
+    }
+
+    @Test
+    void testCacheHitsAndVersionInvalidation() {
+        FlightDataset dataset = new FlightDataset("inventory", sampleFlights());
+        FilterResultCache cache = new FilterResultCache(10, 1_000);
+
+        List<Flight> first = cache.filter(dataset, FilterRules.combineRules(
+                new DepartureBeforeCurrentTimeFilter(NOW), new ExcessiveGroundTimeFilter()));
+        List<Flight> second = cache.filter(dataset, FilterRules.combineRules(
+                new ExcessiveGroundTimeFilter(), new DepartureBeforeCurrentTimeFilter(NOW)));
+
+        assertSame(first, second);
+        assertEquals(2, first.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Новая версия набора делает старые результаты недействительными
+        dataset.update(sampleFlights().subList(2, 3));
+        List<Flight> afterUpdate = cache.filter(dataset, new DepartureBeforeCurrentTimeFilter(NOW));
+        assertEquals(sampleFlights().subList(2, 3), afterUpdate);
+        assertEquals(1, cache.size());
+
+        // Правило без ключа не кэшируется
+        cache.filter(dataset, flight -> true);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testCacheTimeBucket() {
+        // Вылет в 12:00:30: для "сейчас" 12:00:10 перелёт подходит, для 12:00:50 - нет
+        List<Flight> flights = List.of(new Flight(List.of(new Segment(NOW.plusSeconds(30), NOW.plusHours(1)))));
+        FlightDataset dataset = new FlightDataset("inventory", flights);
+        FilterRule early = new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(10));
+        FilterRule late = new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(50));
+
+        // Без округления результаты точные
+        FilterResultCache exact = new FilterResultCache(10, 1_000);
+        assertEquals(1, exact.filter(dataset, early).size());
+        assertEquals(0, exact.filter(dataset, late).size());
+        assertEquals(2, exact.getMisses());
+
+        // С округлением до минуты оба запроса получают результат для 12:01
+        FilterResultCache bucketed = new FilterResultCache(new FlightFilter(), 10, 1_000, Duration.ofMinutes(1));
+        assertEquals(0, bucketed.filter(dataset, early).size());
+        assertEquals(0, bucketed.filter(dataset, FilterRules.combineRules(late)).size());
+        assertEquals(1, bucketed.getHits());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FilterResultCache(new FlightFilter(), 10, 1_000, Duration.ofMillis(500)));
+    }
+
+    @Test
+    void testCacheEvictsLeastRecentlyUsed() {
+        FlightDataset dataset = new FlightDataset("inventory", sampleFlights());
+        // Вес записи - размер результата + 1, при ограничении 5 помещается только одна запись ниже
+        FilterResultCache cache = new FilterResultCache(10, 5);
+
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();           // 3 перелёта, вес 4
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(NOW);  // 3 перелёта, вес 4
+        FilterRule groundTime = new ExcessiveGroundTimeFilter(60);         // 3 перелёта, вес 4
+
+        cache.filter(dataset, arrival);
+        assertEquals(1, cache.size());
+        cache.filter(dataset, departure);
+        assertEquals(1, cache.size()); // запись arrival вытеснена по суммарному весу
+        cache.filter(dataset, groundTime);
+        assertEquals(1, cache.size());
+        assertTrue(cache.getTotalFlights() <= 5);
+    }
+
+    @Test
+    void testCacheWithTimeout() {
+        FlightDataset dataset = new FlightDataset("inventory", sampleFlights());
+        FilterResultCache cache = new FilterResultCache(16, 1_000);
+        FilterRule rule = new ArrivalBeforeDepartureFilter();
+
+        // Усечённый по сроку результат не сохраняется
+        FilterResult truncated = cache.filter(dataset, rule, Duration.ZERO);
+        assertTrue(truncated.isTruncated());
+        assertEquals(0, cache.size());
+
+        FilterResult complete = cache.filter(dataset, rule, null);
+        assertFalse(complete.isTruncated());
+        assertEquals(1, cache.size());
+        assertEquals(complete, cache.filter(dataset, rule, Duration.ZERO));
+        assertSame(cache.filter(dataset, rule), cache.filter(dataset, rule, Duration.ZERO).getFlights());
+    }
+}
\ No newline at end of file
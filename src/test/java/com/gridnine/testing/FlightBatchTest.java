@@ -0,0 +1,105 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.List;
+import static com.gridnine.testing.TestFlights.NOW;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты колоночного пакета перелётов: пакетные правила должны совпадать с построчной проверкой.
+
+public class FlightBatchTest {
+
+    private static List<Flight> sampleFlights() {
+        return TestFlights.sampleFlights(
+                // Вылет ровно в текущий момент
+                new Flight(List.of(new Segment(NOW, NOW.plusHours(1)))));
+    }
+
+    @Test
+    void testBatchStoresColumns() {
+        FlightBatch batch = FlightBatch.of(sampleFlights());
+
+        assertEquals(5, batch.size());
+        assertEquals(7, batch.getTotalSegmentCount());
+        assertEquals(2, batch.getSegmentCount(2));
+        assertEquals(sampleFlights().get(3), batch.getFlight(3));
+    }
+
+    @Test
+    void testBatchRulesMatchFlightRules() {
+        List<Flight> flights = sampleFlights();
+        FlightBatch batch = FlightBatch.of(flights);
+
+        List<FilterRule> rules = List.of(
+                new DepartureBeforeCurrentTimeFilter(NOW),
+                new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(30)),
+                new ArrivalBeforeDepartureFilter(),
+                new ExcessiveGroundTimeFilter(),
+                new ExcessiveGroundTimeFilter(240),
+                FilterRules.combineRules(new DepartureBeforeCurrentTimeFilter(NOW),
+                        new ArrivalBeforeDepartureFilter(), new ExcessiveGroundTimeFilter()),
+                FilterRules.combineRulesOr(new DepartureBeforeCurrentTimeFilter(NOW),
+                        new ExcessiveGroundTimeFilter(60)),
+                new ArrivalBeforeDepartureFilter().negate()
+        );
+
+        for (FilterRule rule : rules) {
+            BitSet accepted = batch.evaluate(rule);
+            for (int i = 0; i < flights.size(); i++) {
+                assertEquals(rule.test(flights.get(i)), accepted.get(i), rule + ", перелёт #" + i);
+            }
+        }
+    }
+
+    @Test
+    void testBatchFilterWithLambdaRule() {
+        FlightBatch batch = FlightBatch.of(sampleFlights());
+        FilterRule multiSegment = flight -> flight.getSegments().size() > 1;
+
+        List<Flight> result = new FlightFilter().filter(batch, multiSegment);
+
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    void testSubMinuteTimesMatchFlightRules() {
+        LocalDateTime ten = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<Flight> flights = List.of(
+                // Прилёт на 20 секунд раньше вылета внутри одной минуты
+                new Flight(List.of(new Segment(ten.plusSeconds(50), ten.plusSeconds(30)))),
+                // 59 секунд и 1 минута 59 секунд на земле - в сумме 1 минута, как Duration.toMinutes по интервалам
+                new Flight(List.of(
+                        new Segment(ten, ten.plusSeconds(30)),
+                        new Segment(ten.plusSeconds(89), ten.plusMinutes(5)),
+                        new Segment(ten.plusMinutes(6).plusSeconds(59), ten.plusMinutes(8)))),
+                // Вылет с долями секунды
+                new Flight(List.of(new Segment(ten.plusSeconds(30).plusNanos(500), ten.plusHours(1))))
+        );
+        FlightBatch batch = FlightBatch.of(flights);
+
+        List<FilterRule> rules = List.of(
+                new ArrivalBeforeDepartureFilter(),
+                new ExcessiveGroundTimeFilter(0),
+                new ExcessiveGroundTimeFilter(1),
+                new DepartureBeforeCurrentTimeFilter(ten.plusSeconds(10)),
+                new DepartureBeforeCurrentTimeFilter(ten.plusSeconds(30).plusNanos(500)),
+                new DepartureBeforeCurrentTimeFilter(ten.plusSeconds(30).plusNanos(501)),
+                RuleCompiler.compile(FilterRules.combineRules(new DepartureBeforeCurrentTimeFilter(ten.minusSeconds(1)),
+                        new ArrivalBeforeDepartureFilter(), new ExcessiveGroundTimeFilter(1)))
+        );
+        for (FilterRule rule : rules) {
+            BitSet accepted = batch.evaluate(rule);
+            for (int i = 0; i < flights.size(); i++) {
+                assertEquals(rule.test(flights.get(i)), accepted.get(i), rule + ", перелёт #" + i);
+            }
+        }
+        assertFalse(batch.evaluate(new ArrivalBeforeDepartureFilter()).get(0));
+        assertFalse(batch.evaluate(new ExcessiveGroundTimeFilter(0)).get(1));
+        assertTrue(batch.evaluate(new ExcessiveGroundTimeFilter(1)).get(1));
+        for (int i = 0; i < flights.size(); i++) {
+            assertEquals(flights.get(i), batch.getFlight(i));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты сжатых битовых множеств и вычисления правил на неизменяемом наборе перелётов.
+
+public class FlightBitmapTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    // Случайное множество с плотными и разреженными блоками
+    private static BitSet randomBits(Random random, int size) {
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            double density = (i >>> 16) % 2 == 0 ? 0.5 : 0.01;
+            if (random.nextDouble() < density) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    @Test
+    void testOperationsMatchBitSet() {
+        Random random = new Random(7);
+        int size = 4 * 65536 + 123;
+        BitSet left = randomBits(random, size);
+        BitSet right = randomBits(random, size);
+        right.set(3 * 65536, 3 * 65536 + 10_000); // плотный участок в разреженном блоке
+
+        FlightBitmap a = FlightBitmap.fromBitSet(left);
+        FlightBitmap b = FlightBitmap.fromBitSet(right);
+        assertEquals(left.cardinality(), a.cardinality());
+        assertTrue(a.getBitmapContainerCount() > 0 && a.getBitmapContainerCount() < 5);
+
+        BitSet and = (BitSet) left.clone();
+        and.and(right);
+        assertEquals(and, a.and(b).toBitSet());
+
+        BitSet or = (BitSet) left.clone();
+        or.or(right);
+        assertEquals(or, a.or(b).toBitSet());
+
+        BitSet andNot = (BitSet) left.clone();
+        andNot.andNot(right);
+        assertEquals(andNot, a.andNot(b).toBitSet());
+
+        BitSet negated = (BitSet) left.clone();
+        negated.flip(0, size);
+        assertEquals(negated, a.negate(size).toBitSet());
+
+        assertTrue(FlightBitmap.of(5, 70_000).contains(70_000));
+        assertFalse(FlightBitmap.of(5, 70_000).contains(6));
+        assertEquals(FlightBitmap.of(1, 2, 3), FlightBitmap.range(1, 4));
+    }
+
+    @Test
+    void testInventoryMatchesListFiltering() {
+        Random random = new Random(11);
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            LocalDateTime departure = NOW.plusMinutes(random.nextInt(600) - 300);
+            List<Segment> segments = new ArrayList<>();
+            for (int s = 0, count = 1 + random.nextInt(3); s < count; s++) {
+                LocalDateTime arrival = departure.plusMinutes(random.nextInt(240) - 30);
+                segments.add(new Segment(departure, arrival));
+                departure = arrival.plusMinutes(random.nextInt(200));
+            }
+            flights.add(new Flight(segments));
+        }
+
+        FlightInventory inventory = FlightInventory.of(flights);
+        FlightFilter filter = new FlightFilter();
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(NOW);
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        FilterRule groundTime = new ExcessiveGroundTimeFilter(120);
+
+        List<FilterRule> rules = List.of(
+                FilterRules.combineRules(departure, arrival, groundTime),
+                departure.or(groundTime.negate()),
+                arrival.and(departure.negate()),
+                groundTime.and(flight -> flight.getSegmentCount() > 1));
+        for (FilterRule rule : rules) {
+            assertEquals(filter.filter(flights, rule), filter.filter(inventory, rule), rule.toString());
+        }
+        // Каждое из трёх встроенных правил вычислено один раз
+        assertEquals(3, inventory.getCachedRuleCount());
+    }
+
+    @Test
+    void testInventoryEvictsTimeDependentRules() {
+        // Вылет в 12:00:30 - отсечения внутри одной минуты дают разный результат
+        List<Flight> flights = List.of(new Flight(List.of(new Segment(NOW.plusSeconds(30), NOW.plusHours(1)))));
+        FlightInventory inventory = FlightInventory.of(flights);
+
+        assertEquals(1, inventory.filter(new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(10))).size());
+        assertEquals(0, inventory.filter(new DepartureBeforeCurrentTimeFilter(NOW.plusSeconds(50))).size());
+
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        for (int i = 0; i < 100; i++) {
+            inventory.filter(arrival.and(new DepartureBeforeCurrentTimeFilter(NOW.plusMinutes(i))));
+        }
+        // Правило без времени хранится всегда, правил со временем - не больше предела
+        assertEquals(1 + FlightInventory.MAX_TIME_DEPENDENT_RULES, inventory.getCachedRuleCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты генератора синтетических перелётов.
+
+public class FlightBuilderTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testGenerationIsDeterministic() {
+        FlightBuilder generator = FlightBuilder.generator(42).withBaseTime(BASE);
+        List<Flight> flights = generator.generate(10_000);
+
+        assertEquals(flights, FlightBuilder.generator(42).withBaseTime(BASE).generate(10_000));
+        assertEquals(flights, generator.stream(10_000).parallel().collect(Collectors.toList()));
+        assertEquals(flights.get(1234), generator.generateFlight(1234));
+        assertNotEquals(flights, FlightBuilder.generator(43).withBaseTime(BASE).generate(10_000));
+
+        // Без явного базового времени - фиксированный момент, а не текущее время
+        assertEquals(FlightBuilder.generator(42).withBaseTime(FlightBuilder.DEFAULT_BASE_TIME).generate(100),
+                FlightBuilder.generator(42).generate(100));
+    }
+
+    @Test
+    void testDistributions() {
+        List<Flight> flights = FlightBuilder.generator(7)
+                .withBaseTime(BASE)
+                .withSegmentCount(2, 3)
+                .withGroundTimeMinutes(10, 20)
+                .withPastDepartureRate(0.25)
+                .withInvalidSegmentRate(0.1)
+                .generate(20_000);
+
+        long past = flights.stream().filter(flight -> flight.hasDepartureInPast(BASE)).count();
+        long invalid = flights.stream().filter(Flight::hasInvalidSegments).count();
+        assertEquals(0.25, past / 20_000.0, 0.02);
+        assertEquals(0.1, invalid / 20_000.0, 0.02);
+        for (Flight flight : flights) {
+            assertTrue(flight.getSegmentCount() >= 2 && flight.getSegmentCount() <= 3);
+            if (!flight.hasInvalidSegments()) {
+                long ground = flight.getTotalGroundTimeMinutes();
+                assertTrue(ground >= 10L * (flight.getSegmentCount() - 1)
+                        && ground <= 20L * (flight.getSegmentCount() - 1), flight.toString());
+            }
+        }
+    }
+
+    @Test
+    void testWriteToFile() throws Exception {
+        FlightBuilder generator = FlightBuilder.generator(1).withBaseTime(BASE);
+        Path file = tempDir.resolve("flights.bin");
+        generator.writeTo(file, 70_000);
+
+        try (MappedFlightFile mapped = MappedFlightFile.open(file)) {
+            assertEquals(70_000, mapped.size());
+            assertEquals(generator.generate(70_000), mapped.readAll());
+        }
+    }
+
+    @Test
+    void testInvalidSettingsRejected() {
+        FlightBuilder generator = FlightBuilder.generator(0);
+        assertThrows(IllegalArgumentException.class, () -> generator.withSegmentCount(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> generator.withGroundTimeMinutes(5, 1));
+        assertThrows(IllegalArgumentException.class, () -> generator.withPastDepartureRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(-1));
+    }
+}
\ No newline at end of file
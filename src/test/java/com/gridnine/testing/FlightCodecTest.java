@@ -0,0 +1,91 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import static com.gridnine.testing.TestFlights.NOW;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты компактного двоичного формата перелётов: декодирование должно восстанавливать
+// перелёты без потерь, а запись - быть заметно компактнее MappedFlightFile.
+
+public class FlightCodecTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Flight> sampleFlights() {
+        return TestFlights.sampleFlights(
+                new Flight(List.of(new Segment(NOW.minusDays(400), NOW.minusDays(399)))),
+                new Flight(List.of(
+                        new Segment(NOW.plusHours(1), NOW.plusHours(2)),
+                        new Segment(NOW.plusHours(4).plusSeconds(59), NOW.plusHours(6).plusNanos(1)))),
+                new Flight(List.of(
+                        new Segment(NOW, NOW.plusHours(9), ZoneId.of("Europe/Moscow"), ZoneId.of("Asia/Tokyo")),
+                        new Segment(NOW.plusHours(11), NOW.plusHours(20), ZoneId.of("Asia/Tokyo"), null))),
+                new Flight(List.of(
+                        new Segment(NOW, NOW.plusHours(3), ZoneOffset.ofHours(-5), ZoneId.of("Europe/Moscow")))),
+                new Flight(List.of()));
+    }
+
+    @Test
+    void testRoundTrip() {
+        byte[] data = FlightCodec.encode(sampleFlights());
+        assertEquals(sampleFlights(), FlightCodec.decode(data));
+    }
+
+    @Test
+    void testStreamCarriesSeveralBatches() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlightCodec.Encoder first = FlightCodec.newEncoder(out, NOW.toEpochSecond(ZoneOffset.UTC));
+        first.writeAll(sampleFlights());
+        first.finish();
+        assertEquals(sampleFlights().size(), first.getFlightCount());
+        FlightCodec.Encoder second = FlightCodec.newEncoder(out, 0);
+        second.write(sampleFlights().get(0));
+        second.finish();
+
+        FlightCodec.Decoder decoder = FlightCodec.newDecoder(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(sampleFlights(), decoder.readAll());
+        assertNull(decoder.read());
+        assertTrue(decoder.nextBatch());
+        assertEquals(0, decoder.getBaseEpochSecond());
+        assertEquals(sampleFlights().get(0), decoder.read());
+        assertNull(decoder.read());
+        assertFalse(decoder.nextBatch());
+    }
+
+    @Test
+    void testSnapshotIsSmallerThanMappedFile() throws IOException {
+        List<Flight> flights = FlightBuilder.generator(7).generate(10_000);
+        Path snapshot = tempDir.resolve("flights.snapshot");
+        Path mapped = tempDir.resolve("flights.bin");
+        FlightCodec.writeSnapshot(snapshot, flights);
+        FlightFileWriter.write(mapped, flights);
+
+        assertEquals(flights, FlightCodec.readSnapshot(snapshot));
+        assertFalse(Files.exists(tempDir.resolve("flights.snapshot.tmp")));
+        assertTrue(Files.size(snapshot) * 3 < Files.size(mapped),
+                Files.size(snapshot) + " vs " + Files.size(mapped));
+
+        FlightInterner interner = new FlightInterner();
+        List<Flight> interned = FlightCodec.readSnapshot(snapshot, interner);
+        assertSame(interned.get(0), interner.intern(flights.get(0)));
+    }
+
+    @Test
+    void testCorruptedDataRejected() {
+        byte[] data = FlightCodec.encode(sampleFlights());
+        assertThrows(IllegalArgumentException.class, () -> FlightCodec.decode(Arrays.copyOf(data, data.length - 3)));
+        data[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> FlightCodec.decode(data));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты текстовой записи правил и HTTP-сервиса фильтрации.
+
+public class FlightFilterServerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private static final List<Flight> FLIGHTS = List.of(
+            new Flight(List.of(new Segment(NOW.plusHours(1), NOW.plusHours(2)))),
+            new Flight(List.of(new Segment(NOW.minusHours(1), NOW.plusHours(1)))),
+            new Flight(List.of(new Segment(NOW.plusHours(3), NOW.plusHours(2)))),
+            new Flight(List.of(
+                    new Segment(NOW.plusHours(1), NOW.plusHours(2)),
+                    new Segment(NOW.plusHours(5), NOW.plusHours(6)))));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void testRuleSpec() {
+        FlightFilter filter = new FlightFilter();
+        FilterRule parsed = RuleSpec.parse("departure@2024-01-01T12:00, arrival, groundTime:60");
+        FilterRule expected = FilterRules.combineRules(new DepartureBeforeCurrentTimeFilter(NOW),
+                new ArrivalBeforeDepartureFilter(), new ExcessiveGroundTimeFilter(60));
+
+        assertEquals(expected.getKey(), parsed.getKey());
+        assertEquals(filter.filter(FLIGHTS, expected), filter.filter(FLIGHTS, parsed));
+        assertEquals(new ArrivalBeforeDepartureFilter().negate().or(new ExcessiveGroundTimeFilter()).getKey(),
+                RuleSpec.parse("!arrival|groundTime").getKey());
+
+        assertThrows(IllegalArgumentException.class, () -> RuleSpec.parse("unknown"));
+        assertThrows(IllegalArgumentException.class, () -> RuleSpec.parse("groundTime:abc"));
+        assertThrows(IllegalArgumentException.class, () -> RuleSpec.parse("arrival,"));
+    }
+
+    @Test
+    void testFlightText() {
+        for (Flight flight : FLIGHTS) {
+            assertEquals(flight, FlightText.parseFlight(flight.toString()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> FlightText.parseFlight("[2024-01-01T12:00]"));
+    }
+
+    @Test
+    void testFilterEndpoints() throws Exception {
+        try (FlightFilterServer server = new FlightFilterServer(new InetSocketAddress("127.0.0.1", 0)).start()) {
+            server.registerDataset(new FlightDataset("inventory", FLIGHTS));
+            String rule = URLEncoder.encode("departure@2024-01-01T12:00,arrival,groundTime:60", StandardCharsets.UTF_8);
+
+            StringBuilder body = new StringBuilder();
+            for (Flight flight : FLIGHTS) {
+                body.append(flight).append('\n');
+            }
+            HttpResponse<String> posted = client.send(HttpRequest.newBuilder(uri(server, "/filter?rule=" + rule))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, posted.statusCode());
+            assertEquals("1", posted.headers().firstValue("X-Match-Count").orElseThrow());
+            assertEquals(FLIGHTS.get(0) + "\n", posted.body());
+
+            HttpResponse<String> dataset = get(server, "/datasets/inventory?rule=" + rule);
+            assertEquals(200, dataset.statusCode());
+            assertEquals(posted.body(), dataset.body());
+
+            assertEquals(404, get(server, "/datasets/missing?rule=arrival").statusCode());
+            assertEquals(400, get(server, "/datasets/inventory?rule=unknown").statusCode());
+            assertEquals(400, get(server, "/datasets/inventory").statusCode());
+            assertEquals(405, get(server, "/filter?rule=arrival").statusCode());
+        }
+    }
+
+    @Test
+    void testRequestTimeout() throws Exception {
+        try (FlightFilterServer server = new FlightFilterServer(
+                new InetSocketAddress("127.0.0.1", 0), 4, Duration.ZERO).start()) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(server, "/filter?rule=arrival"))
+                    .POST(HttpRequest.BodyPublishers.ofString(FLIGHTS.get(0) + "\n")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(504, response.statusCode());
+
+            // С partial=true - найденное до срока (ничего) и признак усечения
+            HttpResponse<String> partial = client.send(HttpRequest.newBuilder(
+                            uri(server, "/filter?rule=arrival&partial=true"))
+                    .POST(HttpRequest.BodyPublishers.ofString(FLIGHTS.get(0) + "\n")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, partial.statusCode());
+            assertEquals("true", partial.headers().firstValue("X-Truncated").orElse(null));
+            assertEquals("0", partial.headers().firstValue("X-Match-Count").orElse(null));
+
+            // Срок проверяется и при фильтрации зарегистрированного набора
+            server.registerDataset(new FlightDataset("inventory", FLIGHTS));
+            assertEquals(504, get(server, "/datasets/inventory?rule=arrival").statusCode());
+            HttpResponse<String> partialDataset = get(server, "/datasets/inventory?rule=arrival&partial=true");
+            assertEquals(200, partialDataset.statusCode());
+            assertEquals("true", partialDataset.headers().firstValue("X-Truncated").orElse(null));
+        }
+    }
+
+    private HttpResponse<String> get(FlightFilterServer server, String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(server, path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(FlightFilterServer server, String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+}
\ No newline at end of file
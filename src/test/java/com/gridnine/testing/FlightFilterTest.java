@@ -3,7 +3,21 @@ package com.gridnine.testing;
 import org.junit.jupiter.api.Test;
 import java.time.LocalDateTime;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 // Тесты для модуля фильтрации перелётов, для всех правил фильтрации и их комбинации.
@@ -336,4 +350,432 @@ public class FlightFilterTest {
         assertTrue(invalidArrivalFlight.hasInvalidSegments());
         assertFalse(invalidArrivalFlight.hasDepartureInPast(now));
     }
+
+    @Test
+    void testParallelFilterPreservesOrder() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            // Каждый третий перелёт вылетает в прошлом, каждый пятый - с долгим ожиданием
+            LocalDateTime departure = i % 3 == 0 ? now.minusMinutes(i) : now.plusMinutes(i);
+            long groundMinutes = i % 5 == 0 ? 180 : 30;
+            flights.add(new Flight(List.of(
+                    new Segment(departure, departure.plusHours(1)),
+                    new Segment(departure.plusHours(1).plusMinutes(groundMinutes),
+                            departure.plusHours(3)))));
+        }
+
+        FilterRule rule = new DepartureBeforeCurrentTimeFilter(now)
+                .and(new ArrivalBeforeDepartureFilter())
+                .and(new ExcessiveGroundTimeFilter());
+
+        List<Flight> expected = new FlightFilter().filter(flights, rule);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FlightFilter parallelFilter = new FlightFilter(pool, 100);
+
+            assertEquals(expected, parallelFilter.filter(flights, rule));
+            // Список без быстрого доступа по индексу
+            assertEquals(expected, parallelFilter.filter(new LinkedList<>(flights), rule));
+            // Маленький список фильтруется последовательно
+            assertEquals(new FlightFilter().filter(flights.subList(0, 50), rule),
+                    parallelFilter.filter(flights.subList(0, 50), rule));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCompositionBuildsInspectableTree() {
+        LocalDateTime now = LocalDateTime.now();
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(now);
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        FilterRule groundTime = new ExcessiveGroundTimeFilter();
+
+        // Цепочка and() разворачивается в один узел AND
+        FilterRule chain = departure.and(arrival).and(groundTime);
+        assertInstanceOf(CompositeRule.class, chain);
+        assertEquals(CompositeRule.Operator.AND, ((CompositeRule) chain).getOperator());
+        assertEquals(List.of(departure, arrival, groundTime), ((CompositeRule) chain).getChildren());
+
+        FilterRule orRule = FilterRules.combineRulesOr(departure, arrival);
+        assertEquals(CompositeRule.Operator.OR, ((CompositeRule) orRule).getOperator());
+
+        // Двойное отрицание сокращается
+        assertSame(departure, departure.negate().negate());
+        assertSame(departure, ((NotRule) departure.negate()).getRule());
+    }
+
+    @Test
+    void testCompositeRuleReordersBySelectivity() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Flight pastFlight = new Flight(List.of(new Segment(now.minusHours(1), now.plusHours(1))));
+        Flight futureFlight = new Flight(List.of(new Segment(now.plusHours(1), now.plusHours(2))));
+
+        // Правило, которое ничего не отклоняет, записано первым
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(now);
+        CompositeRule rule = (CompositeRule) FilterRules.combineRules(arrival, departure);
+
+        for (int i = 0; i < 200_000; i++) {
+            Flight flight = i % 2 == 0 ? pastFlight : futureFlight;
+            assertEquals(departure.test(flight), rule.test(flight));
+        }
+
+        // Часто отклоняющее правило должно переместиться в начало
+        assertSame(departure, rule.getChildren().get(0));
+        RuleStatistics departureStats = rule.getStatistics().get(0);
+        assertTrue(departureStats.getEvaluations() > 0);
+        assertEquals(0.5, departureStats.getRejectionRate(), 0.1);
+    }
+
+    @Test
+    void testCompositeRuleMeasuresUnreachedChildren() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Flight pastFlight = new Flight(List.of(new Segment(now.minusHours(1), now.plusHours(1))));
+
+        // Первое правило отклоняет все перелёты, поэтому до второго очередь не доходит
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(now);
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        CompositeRule rule = (CompositeRule) FilterRules.combineRules(departure, arrival);
+
+        for (int i = 0; i < 200_000; i++) {
+            assertFalse(rule.test(pastFlight));
+        }
+
+        // Правило без замеров не остаётся в конце навсегда: оно хотя бы раз попало в выборку
+        RuleStatistics arrivalStats = rule.getStatistics().stream()
+                .filter(stats -> stats.getRule() == arrival)
+                .findFirst()
+                .orElseThrow();
+        assertTrue(arrivalStats.getEvaluations() > 0);
+        assertSame(departure, rule.getChildren().get(0));
+    }
+
+    @Test
+    void testCompositeRuleKeepsOrderOfUserRules() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Flight direct = new Flight(List.of(new Segment(now, now.plusHours(1))));
+        Flight connecting = new Flight(List.of(
+                new Segment(now, now.plusHours(1)), new Segment(now.plusHours(2), now.plusHours(3))));
+
+        // Второе правило рассчитывает на то, что первое уже прошло
+        FilterRule hasConnection = flight -> flight.getSegmentCount() > 1;
+        FilterRule shortConnection = flight -> !flight.getSegments().get(1).getDepartureDate()
+                .isAfter(flight.getSegments().get(0).getArrivalDate().plusHours(1));
+        CompositeRule rule = (CompositeRule) hasConnection.and(shortConnection);
+
+        assertFalse(rule.isReorderable());
+        for (int i = 0; i < 100_000; i++) {
+            Flight flight = i % 10 == 0 ? connecting : direct;
+            assertEquals(flight == connecting, rule.test(flight));
+        }
+        assertEquals(List.of(hasConnection, shortConnection), rule.getChildren());
+        assertTrue(FilterRules.combineRules(new ArrivalBeforeDepartureFilter(),
+                new DepartureBeforeCurrentTimeFilter(now)).isSideEffectFree());
+    }
+
+    @Test
+    void testFlightSummary() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        List<Segment> segments = new ArrayList<>(List.of(
+                new Segment(now, now.plusHours(1)),
+                new Segment(now.plusHours(2), now.plusHours(3)),
+                new Segment(now.plusHours(5), now.plusHours(4)) // прилёт раньше вылета
+        ));
+        Flight flight = new Flight(segments);
+
+        // Изменение исходного списка не влияет на перелёт и его сводку
+        segments.clear();
+
+        assertEquals(3, flight.getSegmentCount());
+        assertEquals(now, flight.getEarliestDeparture());
+        assertEquals(now.plusHours(4), flight.getLatestArrival());
+        assertEquals(180, flight.getTotalGroundTimeMinutes()); // 1 час + 2 часа
+        assertTrue(flight.hasInvalidSegments());
+        assertThrows(UnsupportedOperationException.class, () -> flight.getSegments().clear());
+
+        Flight empty = new Flight(List.of());
+        assertNull(empty.getEarliestDeparture());
+        assertEquals(0, empty.getTotalGroundTimeMinutes());
+        assertTrue(new DepartureBeforeCurrentTimeFilter(now).test(empty));
+    }
+
+    @Test
+    void testFlightIndexDepartureCutoff() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        Flight past = new Flight(List.of(new Segment(now.minusHours(2), now.minusHours(1))));
+        Flight later = new Flight(List.of(
+                new Segment(now.plusHours(3), now.plusHours(4)),
+                new Segment(now.plusHours(8), now.plusHours(9)))); // 4 часа на земле
+        Flight soon = new Flight(List.of(new Segment(now.plusHours(1), now.plusHours(2))));
+        Flight atCutoff = new Flight(List.of(new Segment(now, now.plusHours(1))));
+        Flight noSegments = new Flight(List.of());
+
+        FlightIndex index = FlightIndex.of(List.of(past, later, soon, atCutoff, noSegments));
+        FlightFilter filter = new FlightFilter();
+
+        assertEquals(List.of(past, atCutoff, soon, later, noSegments), index.getFlights());
+        assertEquals(List.of(atCutoff, soon, later, noSegments), index.departingNotBefore(now));
+
+        // Отсечение внутри AND: остальные условия проверяются только на хвосте индекса
+        FilterRule rule = new DepartureBeforeCurrentTimeFilter(now.plusMinutes(30))
+                .and(new ExcessiveGroundTimeFilter());
+        assertEquals(List.of(soon, noSegments), filter.filter(index, rule));
+
+        // Правило без отсечения проверяется на всём индексе
+        assertEquals(List.of(past, atCutoff, soon, noSegments),
+                filter.filter(index, new ExcessiveGroundTimeFilter()));
+    }
+
+    @Test
+    void testStreamingFilterOverloads() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime departure = i % 2 == 0 ? now.minusHours(i + 1) : now.plusHours(i);
+            flights.add(new Flight(List.of(new Segment(departure, departure.plusHours(1)))));
+        }
+        FilterRule rule = new DepartureBeforeCurrentTimeFilter(now);
+        FlightFilter filter = new FlightFilter();
+        List<Flight> expected = filter.filter(flights, rule);
+
+        // Iterator
+        List<Flight> fromIterator = new ArrayList<>();
+        Iterator<Flight> iterator = filter.filter(flights.iterator(), rule);
+        iterator.forEachRemaining(fromIterator::add);
+        assertEquals(expected, fromIterator);
+
+        // Stream: бесконечный источник обрабатывается лениво
+        Stream<Flight> endless = Stream.iterate(0, i -> i + 1).map(i -> flights.get(i % flights.size()));
+        List<Flight> fromStream = filter.filter(endless, rule)
+                .limit(expected.size())
+                .collect(Collectors.toList());
+        assertEquals(expected, fromStream);
+
+        // Flow.Publisher: подписчик запрашивает по одному перелёту
+        List<Flight> fromPublisher = new ArrayList<>();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        try (SubmissionPublisher<Flight> publisher = new SubmissionPublisher<>()) {
+            filter.filter(publisher, rule).subscribe(new Flow.Subscriber<>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(Flight item) {
+                    fromPublisher.add(item);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    completed.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.complete(null);
+                }
+            });
+            flights.forEach(publisher::submit);
+        }
+        completed.get(10, TimeUnit.SECONDS);
+        assertEquals(expected, fromPublisher);
+    }
+
+    @Test
+    void testTopKMatchesSortedFullResult() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Random random = new Random(5);
+
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            LocalDateTime departure = now.plusMinutes(random.nextInt(2_000) - 200);
+            flights.add(new Flight(List.of(
+                    new Segment(departure, departure.plusMinutes(60 + random.nextInt(4) * 30)),
+                    new Segment(departure.plusMinutes(240 + random.nextInt(6) * 15), departure.plusHours(8)))));
+        }
+        FilterRule rule = new DepartureBeforeCurrentTimeFilter(now).and(new ArrivalBeforeDepartureFilter());
+        List<Flight> full = new FlightFilter().filter(flights, rule);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FlightFilter parallelFilter = new FlightFilter(pool, 100);
+            for (FlightRanking ranking : FlightRanking.values()) {
+                // Устойчивая сортировка: при равенстве сохраняется исходный порядок
+                List<Flight> expected = full.stream()
+                        .sorted(Comparator.comparingLong(ranking::score))
+                        .limit(25)
+                        .collect(Collectors.toList());
+
+                assertEquals(expected, new FlightFilter().filterTopK(flights, rule, ranking, 25), ranking.name());
+                assertEquals(expected, parallelFilter.filterTopK(flights, rule, ranking, 25), ranking.name());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(List.of(), new FlightFilter().filterTopK(flights, rule, FlightRanking.GROUND_TIME, 0));
+        assertEquals(full.size(), new FlightFilter()
+                .filterTopK(flights, rule, FlightRanking.GROUND_TIME, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void testPaginationWithCursorAndOffset() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            // Каждый третий перелёт вылетает в прошлом
+            LocalDateTime departure = i % 3 == 0 ? now.minusMinutes(i + 1) : now.plusMinutes(i);
+            flights.add(new Flight(List.of(new Segment(departure, departure.plusHours(2)))));
+        }
+        FilterRule rule = new DepartureBeforeCurrentTimeFilter(now);
+        List<Flight> expected = new FlightFilter().filter(flights, rule);
+
+        // Проверяем, сколько перелётов просматривает первая страница
+        int[] evaluations = new int[1];
+        FilterRule counting = flight -> {
+            evaluations[0]++;
+            return rule.test(flight);
+        };
+        FlightFilter filter = new FlightFilter();
+        FilterPage first = filter.filterPage(flights, counting, 50, null);
+        assertEquals(expected.subList(0, 50), first.getFlights());
+        assertTrue(evaluations[0] < 80);
+
+        List<Flight> collected = new ArrayList<>(first.getFlights());
+        String cursor = first.getNextCursor();
+        while (cursor != null) {
+            FilterPage page = filter.filterPage(flights, rule, 50, cursor);
+            collected.addAll(page.getFlights());
+            cursor = page.getNextCursor();
+        }
+        assertEquals(expected, collected);
+
+        assertEquals(expected.subList(100, 150),
+                filter.filterPageAtOffset(flights, rule, 100, 50).getFlights());
+        assertFalse(filter.filterPageAtOffset(flights, rule, expected.size() - 10, 50).hasNext());
+        assertThrows(IllegalArgumentException.class, () -> filter.filterPage(flights, rule, 50, "garbage"));
+    }
+
+    @Test
+    void testFilterAsyncWithDeadlineAndCancellation() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Flight> flights = FlightBuilder.generator(3).withBaseTime(now).generate(50_000);
+        FilterRule rule = FilterRules.createStandardFilter(now);
+        List<Flight> expected = new FlightFilter().filter(flights, rule);
+
+        FilterResult complete = FlightFilter.parallel().filterAsync(flights, rule, Duration.ofMinutes(1))
+                .get(1, TimeUnit.MINUTES);
+        assertFalse(complete.isTruncated());
+        assertEquals(flights.size(), complete.getScannedCount());
+        assertEquals(expected, complete.getFlights());
+
+        // Срок истёк сразу: пустой усечённый результат вместо ожидания
+        FilterResult expired = new FlightFilter().filterAsync(flights, rule, Duration.ZERO).get(1, TimeUnit.MINUTES);
+        assertTrue(expired.isTruncated());
+        assertEquals(0, expired.getScannedCount());
+
+        // Медленное правило: к сроку просмотрена только часть списка, найденное - её префикс
+        FilterRule slow = flight -> {
+            LockSupport.parkNanos(20_000);
+            return rule.test(flight);
+        };
+        FilterResult partial = new FlightFilter().filterAsync(flights, slow, Duration.ofMillis(50))
+                .get(1, TimeUnit.MINUTES);
+        assertTrue(partial.isTruncated());
+        assertTrue(partial.getScannedCount() < flights.size());
+        assertEquals(new FlightFilter().filter(flights.subList(0, partial.getScannedCount()), rule),
+                partial.getFlights());
+        // Продолжение с курсора результата даёт остаток без пропусков и повторов
+        FilterPage rest = new FlightFilter().filterPage(flights, rule, flights.size(), partial.getNextCursor());
+        List<Flight> resumed = new ArrayList<>(partial.getFlights());
+        resumed.addAll(rest.getFlights());
+        assertEquals(expected, resumed);
+        assertNull(complete.getNextCursor());
+
+        // После отмены проверки прекращаются на границе порции
+        AtomicInteger evaluations = new AtomicInteger();
+        FilterRule counting = flight -> {
+            evaluations.incrementAndGet();
+            LockSupport.parkNanos(20_000);
+            return true;
+        };
+        CompletableFuture<FilterResult> cancelled = new FlightFilter().filterAsync(flights, counting);
+        while (evaluations.get() == 0) {
+            Thread.onSpinWait();
+        }
+        assertTrue(cancelled.cancel(true));
+        Thread.sleep(200);
+        int afterCancel = evaluations.get();
+        Thread.sleep(200);
+        assertEquals(afterCancel, evaluations.get());
+        assertTrue(afterCancel < flights.size());
+    }
+
+    @Test
+    void testFilterAllSharesCommonSubRules() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<Flight> flights = FlightBuilder.generator(9).withBaseTime(now).generate(30_000);
+        List<FilterRule> tiers = List.of(
+                FilterRules.createStandardFilter(now),
+                FilterRules.createBusinessFilter(now),
+                FilterRules.createBasicFilter(now),
+                FilterRules.createCustomFilter(30, now));
+
+        List<List<Flight>> expected = new ArrayList<>();
+        for (FilterRule tier : tiers) {
+            expected.add(new FlightFilter().filter(flights, tier));
+        }
+        assertEquals(expected, new FlightFilter().filterAll(flights, tiers));
+        assertEquals(expected, new FlightFilter(ForkJoinPool.commonPool(), 1_000).filterAll(flights, tiers));
+
+        // Общие вылет и прилёт - по одному узлу; 3 разных ограничения времени на земле и 4 AND
+        assertEquals(9, SharedRulePlan.of(tiers).getNodeCount());
+
+        // Условие с ключом, входящее в три правила, проверяется один раз на перелёт
+        AtomicInteger evaluations = new AtomicInteger();
+        FilterRule shared = new FilterRule() {
+            @Override
+            public boolean test(Flight flight) {
+                evaluations.incrementAndGet();
+                return flight.getSegmentCount() > 1;
+            }
+
+            @Override
+            public RuleKey getKey() {
+                return RuleKey.of("MultiSegment");
+            }
+        };
+        List<List<Flight>> results = new FlightFilter().filterAll(flights, List.of(
+                shared, shared.and(new ArrivalBeforeDepartureFilter()), shared.negate()));
+        assertEquals(flights.size(), evaluations.get());
+        assertEquals(flights.size(), results.get(0).size() + results.get(2).size());
+    }
+
+    @Test
+    void testFilterAllKeepsDistinctCutoffsWithinMinute() {
+        // Отсечения одной минуты с разными секундами - разные узлы плана, а не один общий
+        LocalDateTime departure = LocalDateTime.of(2024, 1, 1, 12, 0, 30);
+        List<Flight> flights = List.of(new Flight(List.of(new Segment(departure, departure.plusHours(2)))));
+        List<FilterRule> tiers = List.of(
+                new DepartureBeforeCurrentTimeFilter(LocalDateTime.of(2024, 1, 1, 12, 0, 10)),
+                new DepartureBeforeCurrentTimeFilter(LocalDateTime.of(2024, 1, 1, 12, 0, 50)));
+
+        List<List<Flight>> results = new FlightFilter().filterAll(flights, tiers);
+        assertEquals(new FlightFilter().filter(flights, tiers.get(0)), results.get(0));
+        assertEquals(new FlightFilter().filter(flights, tiers.get(1)), results.get(1));
+        assertEquals(1, results.get(0).size());
+        assertEquals(0, results.get(1).size());
+        assertEquals(2, SharedRulePlan.of(tiers).getNodeCount());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты канонизации сегментов и перелётов.
+
+public class FlightInternerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void testEqualSegmentsAndFlightsAreShared() {
+        FlightInterner interner = new FlightInterner();
+        Flight first = new Flight(List.of(
+                new Segment(NOW, NOW.plusHours(2)),
+                new Segment(NOW.plusHours(3), NOW.plusHours(4))));
+        Flight second = new Flight(List.of(
+                new Segment(NOW, NOW.plusHours(2)),
+                new Segment(NOW.plusHours(5), NOW.plusHours(6))));
+        Flight copyOfFirst = new Flight(List.of(
+                new Segment(NOW, NOW.plusHours(2)),
+                new Segment(NOW.plusHours(3), NOW.plusHours(4))));
+
+        Flight canonicalFirst = interner.intern(first);
+        Flight canonicalSecond = interner.intern(second);
+        assertSame(first, canonicalFirst);
+        assertSame(canonicalFirst, interner.intern(copyOfFirst));
+        // Общий первый сегмент разных перелётов - один объект
+        assertSame(canonicalFirst.getSegments().get(0), canonicalSecond.getSegments().get(0));
+        assertEquals(second, canonicalSecond);
+        assertEquals(3, interner.getSegmentCount());
+        assertEquals(2, interner.getFlightCount());
+    }
+
+    @Test
+    void testIngestionWithInterner() throws Exception {
+        String text = "[2024-01-01T12:00|2024-01-01T14:00]\n" +
+                "[2024-01-01T12:00|2024-01-01T14:00] [2024-01-01T15:00|2024-01-01T16:00]\n" +
+                "[2024-01-01T12:00|2024-01-01T14:00]\n";
+        FlightInterner interner = new FlightInterner();
+        List<Flight> flights = FlightText.readFlights(new BufferedReader(new StringReader(text)), interner);
+
+        assertEquals(3, flights.size());
+        assertSame(flights.get(0), flights.get(2));
+        assertSame(flights.get(0).getSegments().get(0), flights.get(1).getSegments().get(0));
+    }
+
+    @Test
+    void testUnusedEntriesAreReleased() throws Exception {
+        FlightInterner interner = new FlightInterner();
+        for (int i = 0; i < 1_000; i++) {
+            interner.intern(new Segment(NOW.plusMinutes(i), NOW.plusMinutes(i + 60)));
+        }
+        // Пул держит сегменты через слабые ссылки: после сборки мусора записи удаляются
+        for (int attempt = 0; attempt < 50 && interner.getSegmentCount() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, interner.getSegmentCount());
+    }
+}
@@ -0,0 +1,66 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты форматирования и потокового вывода перелётов.
+
+public class FlightPrinterTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 5, 7, 9);
+
+    @Test
+    void testFormatFlight() {
+        Flight flight = new Flight(List.of(
+                new Segment(NOW, NOW.plusHours(2)),
+                new Segment(NOW.plusHours(3).plusMinutes(15), NOW.plusHours(5)),
+                new Segment(NOW.plusHours(4), NOW.plusHours(6))));
+
+        String expected = "Перелёт #7:\n" +
+                "  Сегмент 1: 2024-03-05T07:09 → 2024-03-05T09:09\n" +
+                "  Время на земле: 1ч 15м\n" +
+                "  Сегмент 2: 2024-03-05T10:24 → 2024-03-05T12:09\n" +
+                "  Сегмент 3: 2024-03-05T11:09 → 2024-03-05T13:09\n" +
+                "  Общее время на земле: 1ч 15м\n";
+        assertEquals(expected, FlightPrinter.formatFlight(flight, 7));
+        assertEquals("Перелёты не найдены.\n", FlightPrinter.formatFlights(List.of()));
+    }
+
+    @Test
+    void testSegmentToString() {
+        LocalDateTime seconds = LocalDateTime.of(987, 12, 31, 23, 59, 59, 999);
+        assertEquals("[0987-12-31T23:59|2024-03-05T07:09]", new Segment(seconds, NOW).toString());
+        // Годы вне 1..9999 форматируются запасным путём через DateTimeFormatter
+        assertEquals("[+10000-01-01T00:00|2024-03-05T07:09]",
+                new Segment(LocalDateTime.of(10000, 1, 1, 0, 0), NOW).toString());
+    }
+
+    @Test
+    void testStreamingOutputMatchesFormatFlights() throws Exception {
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            LocalDateTime departure = NOW.plusMinutes(i * 37L).plusSeconds(i % 60);
+            flights.add(new Flight(List.of(
+                    new Segment(departure, departure.plusMinutes(90)),
+                    new Segment(departure.plusMinutes(90 + i % 200), departure.plusMinutes(400)))));
+        }
+        String expected = FlightPrinter.formatFlights(flights);
+
+        StringWriter writer = new StringWriter();
+        FlightPrinter.print(flights, writer);
+        assertEquals(expected, writer.toString());
+
+        // Вывод больше буфера канала уходит в канал несколькими блоками
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FlightPrinter.print(flights, Channels.newChannel(bytes));
+        assertTrue(bytes.size() > 64 * 1024);
+        assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+    }
+}
\ No newline at end of file
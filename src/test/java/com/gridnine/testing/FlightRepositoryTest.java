@@ -0,0 +1,133 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты репозитория перелётов и материализованных представлений.
+
+public class FlightRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void testViewsFollowChanges() {
+        FlightRepository repository = new FlightRepository();
+        FlightBuilder generator = FlightBuilder.generator(11).withBaseTime(NOW);
+        for (int i = 0; i < 500; i++) {
+            repository.add("F" + i, generator.generateFlight(i));
+        }
+
+        FilterRule standard = FilterRules.createStandardFilter(NOW);
+        FilterRule valid = new ArrivalBeforeDepartureFilter();
+        MaterializedView standardView = repository.registerView(standard);
+        MaterializedView validView = repository.registerView(valid);
+
+        Random random = new Random(5);
+        for (int step = 0; step < 2_000; step++) {
+            String id = "F" + random.nextInt(700);
+            Flight flight = generator.generateFlight(1_000 + step);
+            switch (random.nextInt(3)) {
+                case 0:
+                    repository.add(id, flight);
+                    break;
+                case 1:
+                    repository.replace(id, flight);
+                    break;
+                default:
+                    repository.remove(id);
+                    break;
+            }
+        }
+
+        assertEquals(Set.copyOf(new FlightFilter().filter(repository.getFlights(), standard)),
+                Set.copyOf(standardView.getFlights()));
+        assertEquals(Set.copyOf(new FlightFilter().filter(repository.getFlights(), valid)),
+                Set.copyOf(validView.getFlights()));
+    }
+
+    @Test
+    void testListenersReceiveDeltas() {
+        FlightRepository repository = new FlightRepository();
+        Flight valid = new Flight(List.of(new Segment(NOW, NOW.plusHours(2))));
+        Flight invalid = new Flight(List.of(new Segment(NOW, NOW.minusHours(2))));
+        MaterializedView view = repository.registerView(new ArrivalBeforeDepartureFilter());
+
+        List<String> events = new ArrayList<>();
+        view.addListener(new FlightViewListener() {
+            @Override
+            public void onAdded(String id, Flight flight) {
+                events.add("+" + id);
+            }
+
+            @Override
+            public void onRemoved(String id, Flight flight) {
+                events.add("-" + id);
+            }
+        });
+
+        assertTrue(repository.add("A", valid));
+        assertTrue(repository.add("B", invalid));
+        assertFalse(repository.add("A", invalid));
+        assertEquals(valid, repository.replace("A", invalid));
+        assertEquals(invalid, repository.replace("B", valid));
+        assertNull(repository.replace("C", valid));
+        assertEquals(valid, repository.remove("B"));
+        assertNull(repository.remove("B"));
+
+        assertEquals(List.of("+A", "-A", "+B", "-B"), events);
+        assertEquals(0, view.size());
+        assertEquals(1, repository.size());
+
+        // Закрытое представление больше не обновляется
+        view.close();
+        assertEquals(0, repository.getViewCount());
+        repository.replace("A", valid);
+        assertEquals(List.of("+A", "-A", "+B", "-B"), events);
+        assertEquals(new HashSet<>(), view.getIds());
+    }
+
+    @Test
+    void testFailingListenerDoesNotDesyncViews() {
+        FlightRepository repository = new FlightRepository();
+        Flight valid = new Flight(List.of(new Segment(NOW, NOW.plusHours(2))));
+        MaterializedView first = repository.registerView(new ArrivalBeforeDepartureFilter());
+        MaterializedView second = repository.registerView(new ArrivalBeforeDepartureFilter());
+
+        first.addListener(new FlightViewListener() {
+            @Override
+            public void onAdded(String id, Flight flight) {
+                throw new IllegalStateException("сбой подписчика");
+            }
+        });
+        List<String> events = new ArrayList<>();
+        second.addListener(new FlightViewListener() {
+            @Override
+            public void onAdded(String id, Flight flight) {
+                events.add("+" + id);
+            }
+        });
+
+        // Изменение применено ко всем представлениям, второй подписчик уведомлён, сбой проброшен
+        assertThrows(IllegalStateException.class, () -> repository.add("A", valid));
+        assertEquals(valid, repository.get("A"));
+        assertEquals(Set.of("A"), first.getIds());
+        assertEquals(Set.of("A"), second.getIds());
+        assertEquals(List.of("+A"), events);
+
+        // Исключение правила оставляет репозиторий и представления неизменными
+        FlightRepository failing = new FlightRepository();
+        MaterializedView all = failing.registerView(flight -> true);
+        failing.registerView(flight -> {
+            throw new IllegalStateException("сбой правила");
+        });
+        assertThrows(IllegalStateException.class, () -> failing.add("B", valid));
+        assertNull(failing.get("B"));
+        assertEquals(0, all.size());
+    }
+}
\ No newline at end of file
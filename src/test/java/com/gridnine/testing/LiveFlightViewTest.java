@@ -0,0 +1,155 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты живого представления перелётов с удалением по времени вылета.
+
+public class LiveFlightViewTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0, 30);
+
+    // Часы, которые двигаются только вручную
+    private static final class ManualClock extends Clock {
+        private final ZoneId zone;
+        private Instant instant = START.toInstant(ZoneOffset.UTC);
+
+        ManualClock() {
+            this(ZoneOffset.UTC);
+        }
+
+        ManualClock(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    private static Flight departingAt(LocalDateTime departure) {
+        return new Flight(List.of(new Segment(departure, departure.plusHours(2))));
+    }
+
+    @Test
+    void testFlightsAreEvictedWhenTheyDepart() {
+        ManualClock clock = new ManualClock();
+        LiveFlightView view = new LiveFlightView(clock);
+
+        Flight departed = departingAt(START.minusMinutes(5));
+        Flight sameMinute = departingAt(START.plusSeconds(15));
+        Flight inTenMinutes = departingAt(START.plusMinutes(10));
+        Flight inThreeDays = departingAt(START.plusDays(3));
+        Flight inTwoYears = departingAt(START.plusYears(2));
+        Flight noSegments = new Flight(List.of());
+
+        assertFalse(view.add(departed));
+        assertEquals(5, view.addAll(List.of(sameMinute, inTenMinutes, inThreeDays, inTwoYears, noSegments)));
+        assertFalse(view.add(inTenMinutes)); // повторно не добавляется
+
+        // Вылет внутри текущей минуты: перелёт удаляется точно в момент вылета
+        clock.advance(Duration.ofSeconds(10));
+        assertTrue(view.contains(sameMinute));
+        clock.advance(Duration.ofSeconds(10));
+        assertFalse(view.contains(sameMinute));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals(List.of(inThreeDays, inTwoYears, noSegments), view.getFlights());
+
+        clock.advance(Duration.ofDays(3));
+        assertEquals(1, view.refresh());
+        assertEquals(List.of(inTwoYears, noSegments), view.getFlights());
+
+        // Перелёт с дальним вылетом опускается по уровням колеса и удаляется вовремя
+        clock.advance(Duration.ofDays(2 * 365 - 3));
+        assertTrue(view.contains(inTwoYears));
+        clock.advance(Duration.ofDays(2));
+        assertEquals(List.of(noSegments), view.getFlights());
+    }
+
+    @Test
+    void testRuleIsAppliedOnAdd() {
+        ManualClock clock = new ManualClock();
+        LiveFlightView view = new LiveFlightView(clock, new ArrivalBeforeDepartureFilter());
+
+        Flight valid = departingAt(START.plusHours(1));
+        Flight invalid = new Flight(List.of(new Segment(START.plusHours(2), START.plusHours(1))));
+
+        assertTrue(view.add(valid));
+        assertFalse(view.add(invalid));
+        assertTrue(view.remove(valid));
+        assertEquals(0, view.size());
+
+        // Удалённый перелёт не мешает работе колеса, когда наступает его срок
+        clock.advance(Duration.ofHours(2));
+        assertEquals(0, view.refresh());
+    }
+
+    @Test
+    void testClockZoneDoesNotShiftDepartures() {
+        // Вылеты заданы в UTC; зона часов не должна сдвигать "сейчас" ни вперёд, ни назад
+        for (ZoneId zone : List.of(ZoneOffset.ofHours(3), ZoneOffset.ofHours(-5))) {
+            ManualClock clock = new ManualClock(zone);
+            LiveFlightView view = new LiveFlightView(clock);
+
+            Flight inOneHour = departingAt(START.plusHours(1));
+            Flight hourAgo = departingAt(START.minusHours(1));
+            assertTrue(view.add(inOneHour), zone.toString());
+            assertFalse(view.add(hourAgo), zone.toString());
+            assertEquals(List.of(inOneHour), view.getFlights());
+
+            clock.advance(Duration.ofMinutes(59));
+            assertTrue(view.contains(inOneHour), zone.toString());
+            clock.advance(Duration.ofMinutes(2));
+            assertEquals(0, view.size(), zone.toString());
+        }
+    }
+
+    @Test
+    void testTimingWheelFiresEachItemOnItsTick() {
+        Random random = new Random(7);
+        long start = 1_000_000;
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+
+        for (int i = 0; i < 5_000; i++) {
+            long tick = start + 1 + random.nextInt(1 << 22);
+            wheel.schedule(tick, tick);
+        }
+
+        long now = start;
+        while (wheel.size() > 0) {
+            long target = now + random.nextInt(5_000);
+            List<Long> fired = new ArrayList<>();
+            wheel.advanceTo(target, fired::add);
+            for (long tick : fired) {
+                // Элемент выдаётся не раньше своего срока и не позже первого продвижения после него
+                assertTrue(tick <= target && tick > now, "тик " + tick);
+            }
+            now = target;
+        }
+    }
+}
\ No newline at end of file
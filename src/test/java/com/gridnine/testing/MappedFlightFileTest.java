@@ -0,0 +1,74 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static com.gridnine.testing.TestFlights.NOW;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты бинарного файла перелётов: проверка правил по байтам файла должна совпадать
+// с проверкой объектов Flight.
+
+public class MappedFlightFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Flight> sampleFlights() {
+        return TestFlights.sampleFlights(
+                // Стоянка на секунду короче трёх часов
+                new Flight(List.of(
+                        new Segment(NOW.plusHours(1), NOW.plusHours(2)),
+                        new Segment(NOW.plusHours(4).plusSeconds(59), NOW.plusHours(6)))),
+                new Flight(List.of()));
+    }
+
+    @Test
+    void testWriteAndReadBack() throws IOException {
+        Path file = tempDir.resolve("flights.bin");
+        FlightFileWriter.write(file, sampleFlights());
+
+        try (MappedFlightFile mapped = MappedFlightFile.open(file)) {
+            assertEquals(6, mapped.size());
+            assertEquals(sampleFlights(), mapped.readAll());
+        }
+    }
+
+    @Test
+    void testRulesEvaluatedOnMappedBuffer() throws IOException {
+        Path file = tempDir.resolve("flights.bin");
+        FlightFileWriter.write(file, sampleFlights());
+
+        List<FilterRule> rules = List.of(
+                new DepartureBeforeCurrentTimeFilter(NOW),
+                new DepartureBeforeCurrentTimeFilter(NOW.plusHours(1).plusNanos(1)),
+                new ArrivalBeforeDepartureFilter(),
+                new ExcessiveGroundTimeFilter(),
+                new ExcessiveGroundTimeFilter(180),
+                FilterRules.createCustomFilter(60),
+                FilterRules.combineRulesOr(new ArrivalBeforeDepartureFilter().negate(),
+                        new ExcessiveGroundTimeFilter(60)),
+                flight -> flight.getSegmentCount() == 2
+        );
+
+        FlightFilter filter = new FlightFilter();
+        try (MappedFlightFile mapped = MappedFlightFile.open(file)) {
+            for (FilterRule rule : rules) {
+                List<Flight> expected = filter.filter(sampleFlights(), rule);
+                assertEquals(expected, mapped.filter(rule), rule.toString());
+                assertEquals(expected.size(), mapped.count(rule), rule.toString());
+            }
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("foreign.bin");
+        Files.write(file, new byte[32]);
+
+        assertThrows(IOException.class, () -> MappedFlightFile.open(file));
+    }
+}
\ No newline at end of file
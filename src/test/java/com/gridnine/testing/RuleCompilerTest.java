@@ -0,0 +1,79 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты компиляции деревьев правил.
+
+public class RuleCompilerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private static List<Flight> randomFlights(int count) {
+        Random random = new Random(3);
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime departure = NOW.plusMinutes(random.nextInt(600) - 300);
+            List<Segment> segments = new ArrayList<>();
+            for (int s = 0, segmentCount = 1 + random.nextInt(3); s < segmentCount; s++) {
+                LocalDateTime arrival = departure.plusMinutes(random.nextInt(240) - 30);
+                segments.add(new Segment(departure, arrival));
+                departure = arrival.plusMinutes(random.nextInt(200) - 20);
+            }
+            flights.add(new Flight(segments));
+        }
+        return flights;
+    }
+
+    @Test
+    void testBuiltInConjunctionIsFused() {
+        FilterRule rule = FilterRules.combineRules(
+                new DepartureBeforeCurrentTimeFilter(NOW.minusHours(1)),
+                new ArrivalBeforeDepartureFilter(),
+                new ExcessiveGroundTimeFilter(120),
+                new DepartureBeforeCurrentTimeFilter(NOW),
+                new ExcessiveGroundTimeFilter(60));
+        FilterRule compiled = RuleCompiler.compile(rule);
+
+        // Параметры свёрнуты: самое позднее отсечение и самое строгое ограничение
+        assertEquals("FusedRule{departureCutoff=" + NOW + ", checkArrival=true, maxGroundTimeMinutes=60}",
+                compiled.toString());
+        assertEquals(rule.getKey(), compiled.getKey());
+
+        List<Flight> flights = randomFlights(2_000);
+        FlightFilter filter = new FlightFilter();
+        assertEquals(filter.filter(flights, rule), filter.filter(flights, compiled));
+        FlightBatch batch = FlightBatch.of(flights);
+        assertEquals(batch.evaluate(rule), batch.evaluate(compiled));
+    }
+
+    @Test
+    void testCompiledTreesMatchOriginal() {
+        FilterRule departure = new DepartureBeforeCurrentTimeFilter(NOW);
+        FilterRule arrival = new ArrivalBeforeDepartureFilter();
+        FilterRule groundTime = new ExcessiveGroundTimeFilter(90);
+        FilterRule custom = flight -> flight.getSegmentCount() > 1;
+
+        List<FilterRule> rules = List.of(
+                departure.or(groundTime.negate()),
+                arrival.and(custom).and(departure.negate()),
+                custom.negate().or(arrival.and(groundTime)),
+                FilterRules.combineRulesOr(),
+                FilterRules.combineRules(custom));
+
+        List<Flight> flights = randomFlights(2_000);
+        for (FilterRule rule : rules) {
+            FilterRule compiled = RuleCompiler.compile(rule);
+            // Цепочка MethodHandle - константа своего скрытого класса
+            assertTrue(compiled.getClass().isHidden(), rule.toString());
+            for (Flight flight : flights) {
+                assertEquals(rule.test(flight), compiled.test(flight), rule.toString());
+            }
+            assertEquals(rule.getKey(), compiled.getKey());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты шардированной фильтрации с двумя процессами-обработчиками.
+
+public class ShardCoordinatorTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+
+    @TempDir
+    static Path shardDirectory;
+
+    private static List<Flight> flights;
+    private static SortedMap<Long, Path> shards;
+    private static ShardCoordinator coordinator;
+
+    @BeforeAll
+    static void startWorkers() throws IOException {
+        flights = withExactTimes(FlightBuilder.generator(5).withBaseTime(BASE).withPastDepartureRate(0.3)
+                .generate(5_000));
+        shards = FlightShards.write(flights, shardDirectory);
+        coordinator = ShardCoordinator.launch(shardDirectory, 2);
+    }
+
+    @AfterAll
+    static void stopWorkers() {
+        coordinator.close();
+    }
+
+    @Test
+    void testShardsMatchSingleProcessFilter() throws IOException {
+        assertEquals(2, coordinator.getWorkerCount());
+        assertEquals(shards.size(), coordinator.getShardCount());
+        assertEquals(shards, FlightShards.list(shardDirectory));
+
+        String spec = "departure@" + BASE + ",arrival|!groundTime:60";
+        FlightFilter filter = new FlightFilter();
+        List<Flight> expected = filter.filter(FlightIndex.of(flights), RuleSpec.parse(spec));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, coordinator.filter(spec));
+        // Шарды и ответы обработчиков сохраняют секунды, доли секунды и зоны
+        assertTrue(expected.stream().anyMatch(flight -> flight.getEarliestDeparture().getSecond() != 0));
+        assertTrue(expected.stream().anyMatch(flight -> flight.getEarliestDeparture().getNano() != 0));
+        assertTrue(expected.stream().anyMatch(
+                flight -> flight.getSegments().get(0).getDepartureZoned().getZone().equals(MOSCOW)));
+
+        // Без отсечения по вылету запрашиваются все шарды, результат - тоже по времени вылета
+        assertEquals(filter.filter(FlightIndex.of(flights), RuleSpec.parse("arrival")),
+                coordinator.filter("arrival"));
+    }
+
+    @Test
+    void testDaysBeforeCutoffArePruned() {
+        TreeSet<Long> days = new TreeSet<>(shards.keySet());
+        long cutoffDay = FlightShards.dayOf(new Flight(List.of(new Segment(BASE, BASE))));
+
+        TreeSet<Long> selected = new TreeSet<>(ShardCoordinator.selectDays(
+                RuleSpec.parse("standard", BASE), days));
+        assertEquals(days.tailSet(cutoffDay), selected);
+        assertTrue(selected.size() < days.size());
+        assertEquals(days, ShardCoordinator.selectDays(RuleSpec.parse("arrival"), days));
+    }
+
+    @Test
+    void testInvalidSpecRejectedBeforeSending() {
+        assertThrows(IllegalArgumentException.class, () -> coordinator.filter("unknown"));
+        assertThrows(IllegalArgumentException.class, () -> coordinator.filter("arrival\tgroundTime"));
+    }
+
+    // Сдвигает времена каждого перелёта на несколько секунд (у части - с долями секунды), а часть
+    // перелётов переносит в зону Москвы, чтобы проверить передачу точных моментов и зон.
+
+    private static List<Flight> withExactTimes(List<Flight> flights) {
+        List<Flight> result = new ArrayList<>(flights.size());
+        for (int i = 0; i < flights.size(); i++) {
+            long nanos = i * 7L % 60 * 1_000_000_000L + (i % 3 == 0 ? 250_000_000L : 0);
+            ZoneId zone = i % 5 == 0 ? MOSCOW : null;
+            List<Segment> segments = new ArrayList<>();
+            for (Segment segment : flights.get(i).getSegments()) {
+                segments.add(new Segment(segment.getDepartureDate().plusNanos(nanos),
+                        segment.getArrivalDate().plusNanos(nanos), zone));
+            }
+            result.add(new Flight(segments));
+        }
+        return result;
+    }
+}
\ No newline at end of file
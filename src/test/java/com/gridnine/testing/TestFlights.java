@@ -0,0 +1,40 @@
+package com.gridnine.testing;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Общие перелёты для тестов: по одному перелёту на каждый случай стандартного фильтра.
+// Тесты дописывают к ним только перелёты, нужные для своего случая.
+
+final class TestFlights {
+
+    static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private TestFlights() {
+    }
+
+    // Общие перелёты, за которыми следуют extra.
+    // @param extra перелёты конкретного теста
+
+    static List<Flight> sampleFlights(Flight... extra) {
+        List<Flight> flights = new ArrayList<>(List.of(
+                // Нормальный перелёт
+                new Flight(List.of(new Segment(NOW.plusHours(1), NOW.plusHours(2)))),
+                // Вылет в прошлом
+                new Flight(List.of(new Segment(NOW.minusHours(1), NOW.plusHours(1)))),
+                // Прилёт раньше вылета во втором сегменте, час на земле
+                new Flight(List.of(
+                        new Segment(NOW.plusHours(1), NOW.plusHours(2)),
+                        new Segment(NOW.plusHours(3), NOW.plusHours(2)))),
+                // 3 часа на земле
+                new Flight(List.of(
+                        new Segment(NOW.plusHours(1), NOW.plusHours(2)),
+                        new Segment(NOW.plusHours(5), NOW.plusHours(6))))
+        ));
+        flights.addAll(Arrays.asList(extra));
+        return Collections.unmodifiableList(flights);
+    }
+}
\ No newline at end of file
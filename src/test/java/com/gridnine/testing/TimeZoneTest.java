@@ -0,0 +1,111 @@
+package com.gridnine.testing;
+
+import org.junit.jupiter.api.Test;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты сегментов во временных зонах: приведение к UTC, время на земле и отсечение по времени вылета.
+
+public class TimeZoneTest {
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    @Test
+    void testEpochSecondMatchesZonedDateTime() {
+        Random random = new Random(42);
+        List<ZoneId> zones = List.of(MOSCOW, BERLIN, NEW_YORK, ZoneId.of("Australia/Lord_Howe"),
+                ZoneId.of("Asia/Kolkata"), ZoneOffset.ofHours(3), ZoneId.of("UTC"));
+        for (ZoneId zone : zones) {
+            for (int i = 0; i < 2_000; i++) {
+                LocalDateTime local = LocalDateTime.ofEpochSecond(
+                        random.nextInt(200 * 365 * 86_400) - 70L * 365 * 86_400, 0, ZoneOffset.UTC);
+                assertEquals(local.atZone(zone).toEpochSecond(), ZoneOffsets.toEpochSecond(local, zone),
+                        zone + " " + local);
+            }
+        }
+    }
+
+    @Test
+    void testDaylightSavingGapAndOverlap() {
+        // 31.03.2024 в Берлине часы переводятся с 02:00 на 03:00, 27.10.2024 - с 03:00 на 02:00
+        LocalDateTime gap = LocalDateTime.of(2024, 3, 31, 2, 30);
+        LocalDateTime overlap = LocalDateTime.of(2024, 10, 27, 2, 30);
+        assertEquals(gap.atZone(BERLIN).toEpochSecond(), ZoneOffsets.toEpochSecond(gap, BERLIN));
+        assertEquals(overlap.atZone(BERLIN).toEpochSecond(), ZoneOffsets.toEpochSecond(overlap, BERLIN));
+
+        // Ночной рейс через переход на летнее время длится час, а не два
+        Segment segment = new Segment(LocalDateTime.of(2024, 3, 31, 1, 0), LocalDateTime.of(2024, 3, 31, 4, 0),
+                BERLIN);
+        assertEquals(2 * 3600, segment.getArrivalEpochSecond() - segment.getDepartureEpochSecond());
+    }
+
+    @Test
+    void testGroundTimeAcrossZones() {
+        // Москва 10:00 -> Берлин 11:00 (UTC 07:00 -> 10:00), Берлин 12:30 -> Нью-Йорк 15:00
+        Flight flight = new Flight(List.of(
+                new Segment(LocalDateTime.of(2024, 1, 15, 10, 0), LocalDateTime.of(2024, 1, 15, 11, 0),
+                        MOSCOW, BERLIN),
+                new Segment(LocalDateTime.of(2024, 1, 15, 12, 30), LocalDateTime.of(2024, 1, 15, 15, 0),
+                        BERLIN, NEW_YORK)));
+        assertEquals(90, flight.getTotalGroundTimeMinutes());
+        assertFalse(flight.hasInvalidSegments());
+        assertTrue(flight.getSegments().get(0).isValid());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 0), flight.getEarliestDeparture());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 15, 0), flight.getLatestArrival());
+        assertEquals(13 * 60, FlightRanking.TRIP_DURATION.score(flight));
+
+        // Без зон прилёт "раньше" вылета, а в UTC сегмент корректен: 10:00 MSK = 07:00 UTC
+        Segment westbound = new Segment(LocalDateTime.of(2024, 1, 15, 10, 0), LocalDateTime.of(2024, 1, 15, 9, 0),
+                MOSCOW, BERLIN);
+        assertTrue(westbound.isValid());
+        assertFalse(new Segment(westbound.getDepartureDate(), westbound.getArrivalDate()).isValid());
+
+        // Пакетная проверка видит те же моменты
+        FlightBatch batch = FlightBatch.of(List.of(flight));
+        assertEquals(flight, batch.getFlight(0));
+        assertTrue(batch.evaluate(new ExcessiveGroundTimeFilter(90)).get(0));
+        assertFalse(batch.evaluate(new ExcessiveGroundTimeFilter(89)).get(0));
+    }
+
+    @Test
+    void testDepartureCutoffByInstant() {
+        // Вылет в 10:00 по Москве - это 07:00 UTC
+        Flight flight = new Flight(List.of(new Segment(
+                LocalDateTime.of(2024, 1, 15, 10, 0), LocalDateTime.of(2024, 1, 15, 12, 0), MOSCOW)));
+        Instant before = Instant.parse("2024-01-15T06:59:00Z");
+        Instant after = Instant.parse("2024-01-15T07:01:00Z");
+
+        assertTrue(new DepartureBeforeCurrentTimeFilter(before).test(flight));
+        assertFalse(new DepartureBeforeCurrentTimeFilter(after).test(flight));
+        assertTrue(FlightBatch.of(List.of(flight)).evaluate(new DepartureBeforeCurrentTimeFilter(before)).get(0));
+        assertFalse(FlightBatch.of(List.of(flight)).evaluate(new DepartureBeforeCurrentTimeFilter(after)).get(0));
+
+        FlightIndex index = FlightIndex.of(List.of(flight));
+        assertEquals(1, index.departingNotBefore(LocalDateTime.ofInstant(before, ZoneOffset.UTC)).size());
+        assertEquals(0, index.departingNotBefore(LocalDateTime.ofInstant(after, ZoneOffset.UTC)).size());
+    }
+
+    @Test
+    void testDefaultCurrentTimeIsUtc() {
+        // "Сейчас" по умолчанию - время UTC, независимо от зоны системы
+        ZonedDateTime now = ZonedDateTime.now(MOSCOW);
+        Flight later = new Flight(List.of(new Segment(
+                now.plusHours(1).toLocalDateTime(), now.plusHours(3).toLocalDateTime(), MOSCOW)));
+        Flight earlier = new Flight(List.of(new Segment(
+                now.minusHours(1).toLocalDateTime(), now.plusHours(1).toLocalDateTime(), MOSCOW)));
+
+        assertTrue(new DepartureBeforeCurrentTimeFilter().test(later));
+        assertFalse(new DepartureBeforeCurrentTimeFilter().test(earlier));
+        assertTrue(FilterRules.createBasicFilter().test(later));
+        assertTrue(RuleSpec.parse("departure").test(later));
+        assertFalse(RuleSpec.parse("departure").test(earlier));
+    }
+}
\ No newline at end of file